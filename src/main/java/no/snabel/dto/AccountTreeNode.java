@@ -0,0 +1,37 @@
+package no.snabel.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * An account with the accounts below it. With balances, {@code balance} is the account's own
+ * balance and {@code totalBalance} includes every account below it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountTreeNode {
+    public Long id;
+    public String accountNumber;
+    public String accountName;
+    public String accountType;
+    public boolean active;
+    public BigDecimal balance;
+    public BigDecimal totalBalance;
+    public List<AccountTreeNode> children;
+
+    public AccountTreeNode() {
+    }
+
+    public AccountTreeNode(Long id, String accountNumber, String accountName, String accountType, boolean active,
+                           BigDecimal balance, BigDecimal totalBalance, List<AccountTreeNode> children) {
+        this.id = id;
+        this.accountNumber = accountNumber;
+        this.accountName = accountName;
+        this.accountType = accountType;
+        this.active = active;
+        this.balance = balance;
+        this.totalBalance = totalBalance;
+        this.children = children;
+    }
+}
@@ -0,0 +1,21 @@
+package no.snabel.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class EfakturaBatchRequest {
+    public LocalDate fromDate;  // Invoice date, inclusive
+    public LocalDate toDate;    // Invoice date, inclusive
+    public String status;
+    public List<Long> ids;      // Restrict to these invoices
+
+    public EfakturaBatchRequest() {
+    }
+
+    public EfakturaBatchRequest(LocalDate fromDate, LocalDate toDate, String status, List<Long> ids) {
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.status = status;
+        this.ids = ids;
+    }
+}
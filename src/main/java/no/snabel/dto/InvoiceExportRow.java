@@ -0,0 +1,28 @@
+package no.snabel.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Flat invoice row written by the NDJSON export, one per line
+ */
+public class InvoiceExportRow {
+    public Long id;
+    public String invoiceNumber;
+    public LocalDate invoiceDate;
+    public LocalDate dueDate;
+    public String clientName;
+    public String clientOrganizationNumber;
+    public BigDecimal subtotal;
+    public BigDecimal vatAmount;
+    public BigDecimal totalAmount;
+    public String currency;
+    public String status;
+    public String paymentReference;
+    public String buyerReference;
+    public String orderReference;
+    public LocalDateTime createdAt;
+    public LocalDateTime sentAt;
+    public LocalDateTime paidAt;
+}
@@ -0,0 +1,18 @@
+package no.snabel.dto;
+
+import no.snabel.model.Invoice;
+
+import java.util.List;
+
+public class InvoicePage {
+    public List<Invoice> items;
+    public String next;  // Opaque cursor for the following page, null on the last page
+
+    public InvoicePage() {
+    }
+
+    public InvoicePage(List<Invoice> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+}
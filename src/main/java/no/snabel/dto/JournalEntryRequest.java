@@ -0,0 +1,35 @@
+package no.snabel.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A voucher to post: header and at least two balanced lines
+ */
+public class JournalEntryRequest {
+    public LocalDate entryDate;
+    public String description;
+    public String reference;    // External reference (invoice number, etc.)
+    public String entryType;    // MANUAL (default), INVOICE, PAYMENT, AUTOMATED
+    public List<Line> lines = new ArrayList<>();
+
+    public static class Line {
+        public String accountNumber;
+        public String description;
+        public BigDecimal debitAmount;   // Exactly one of debit and credit is positive
+        public BigDecimal creditAmount;
+        public BigDecimal vatAmount;
+        public String vatCode;
+
+        public Line() {
+        }
+
+        public Line(String accountNumber, BigDecimal debitAmount, BigDecimal creditAmount) {
+            this.accountNumber = accountNumber;
+            this.debitAmount = debitAmount;
+            this.creditAmount = creditAmount;
+        }
+    }
+}
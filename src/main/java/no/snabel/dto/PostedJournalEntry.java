@@ -0,0 +1,17 @@
+package no.snabel.dto;
+
+/**
+ * Id and assigned voucher number of a posted journal entry
+ */
+public class PostedJournalEntry {
+    public Long id;
+    public String entryNumber;
+
+    public PostedJournalEntry() {
+    }
+
+    public PostedJournalEntry(Long id, String entryNumber) {
+        this.id = id;
+        this.entryNumber = entryNumber;
+    }
+}
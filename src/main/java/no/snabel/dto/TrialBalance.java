@@ -0,0 +1,52 @@
+package no.snabel.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Account balances as of a date. Each balance is shown in the debit or the credit column;
+ * the column totals are equal when the ledger balances.
+ */
+public class TrialBalance {
+    public LocalDate asOf;
+    public List<Line> accounts;
+    public BigDecimal totalDebit = BigDecimal.ZERO;
+    public BigDecimal totalCredit = BigDecimal.ZERO;
+
+    public TrialBalance() {
+    }
+
+    public TrialBalance(LocalDate asOf, List<Line> accounts) {
+        this.asOf = asOf;
+        this.accounts = accounts;
+        for (Line line : accounts) {
+            totalDebit = totalDebit.add(line.debit);
+            totalCredit = totalCredit.add(line.credit);
+        }
+    }
+
+    public static class Line {
+        public Long accountId;
+        public String accountNumber;
+        public String accountName;
+        public String accountType;
+        public BigDecimal debit;
+        public BigDecimal credit;
+
+        public Line() {
+        }
+
+        /**
+         * @param balance Debit minus credit
+         */
+        public Line(Long accountId, String accountNumber, String accountName, String accountType, BigDecimal balance) {
+            this.accountId = accountId;
+            this.accountNumber = accountNumber;
+            this.accountName = accountName;
+            this.accountType = accountType;
+            this.debit = balance.signum() > 0 ? balance : BigDecimal.ZERO;
+            this.credit = balance.signum() < 0 ? balance.negate() : BigDecimal.ZERO;
+        }
+    }
+}
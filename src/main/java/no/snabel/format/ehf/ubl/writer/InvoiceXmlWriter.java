@@ -0,0 +1,25 @@
+package no.snabel.format.ehf.ubl.writer;
+
+import no.snabel.format.ehf.ubl.InvoiceType;
+
+import java.io.OutputStream;
+
+/**
+ * InvoiceXmlWriter - Serializes InvoiceType objects to UBL 2.1 XML.
+ *
+ * Implementations must produce byte-identical UTF-8 output so they can be
+ * swapped through configuration without affecting what receivers see.
+ */
+public interface InvoiceXmlWriter {
+
+    /**
+     * Writes the invoice as UTF-8 encoded XML to the given stream.
+     * The stream is flushed but not closed.
+     */
+    void write(InvoiceType invoice, OutputStream out) throws Exception;
+
+    /**
+     * Converts an InvoiceType to UBL XML string.
+     */
+    String writeToString(InvoiceType invoice) throws Exception;
+}
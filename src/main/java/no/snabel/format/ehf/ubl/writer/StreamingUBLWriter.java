@@ -0,0 +1,644 @@
+package no.snabel.format.ehf.ubl.writer;
+
+import no.snabel.format.ehf.ubl.InvoiceType;
+import no.snabel.format.ehf.ubl.cac.*;
+import no.snabel.format.ehf.ubl.types.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * StreamingUBLWriter - Writes InvoiceType objects as UBL 2.1 XML directly to a stream.
+ *
+ * Produces the same bytes as {@link UBLWriter} without building a DOM tree or
+ * going through a Transformer: elements are written in document order with the
+ * same indentation, escaping and empty-element rules as the JDK serializer.
+ * The writer holds no per-document state and can be shared between threads.
+ */
+public class StreamingUBLWriter implements InvoiceXmlWriter {
+
+    private static final String NS_INVOICE = "urn:oasis:names:specification:ubl:schema:xsd:Invoice-2";
+    private static final String NS_CAC = "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2";
+    private static final String NS_CBC = "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2";
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public void write(InvoiceType invoice, OutputStream out) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writeDocument(invoice, new XmlOutput(writer));
+        writer.flush();
+    }
+
+    @Override
+    public String writeToString(InvoiceType invoice) throws Exception {
+        StringWriter writer = new StringWriter(BUFFER_SIZE);
+        writeDocument(invoice, new XmlOutput(writer));
+        return writer.toString();
+    }
+
+    private void writeDocument(InvoiceType invoice, XmlOutput out) throws IOException {
+        out.declaration();
+        out.start("Invoice");
+        out.attribute("xmlns", NS_INVOICE);
+        out.attribute("xmlns:cac", NS_CAC);
+        out.attribute("xmlns:cbc", NS_CBC);
+
+        // Core metadata
+        writeCbcIdentifier(out, "CustomizationID", invoice.getCustomizationID());
+        writeCbcIdentifier(out, "ProfileID", invoice.getProfileID());
+        writeCbcIdentifier(out, "ID", invoice.getId());
+        writeCbcDate(out, "IssueDate", invoice.getIssueDate());
+        writeCbcCode(out, "InvoiceTypeCode", invoice.getInvoiceTypeCode());
+        writeCbcCode(out, "DocumentCurrencyCode", invoice.getDocumentCurrencyCode());
+
+        // Optional headers
+        if (invoice.getDueDate() != null) {
+            writeCbcDate(out, "DueDate", invoice.getDueDate());
+        }
+        if (invoice.getNote() != null) {
+            writeCbcText(out, "Note", invoice.getNote());
+        }
+        if (invoice.getTaxPointDate() != null) {
+            writeCbcDate(out, "TaxPointDate", invoice.getTaxPointDate());
+        }
+        if (invoice.getTaxCurrencyCode() != null) {
+            writeCbcCode(out, "TaxCurrencyCode", invoice.getTaxCurrencyCode());
+        }
+        if (invoice.getAccountingCost() != null) {
+            writeCbcText(out, "AccountingCost", invoice.getAccountingCost());
+        }
+        if (invoice.getBuyerReference() != null) {
+            writeCbcText(out, "BuyerReference", invoice.getBuyerReference());
+        }
+
+        // Period
+        if (invoice.getInvoicePeriod() != null) {
+            writePeriod(out, "InvoicePeriod", invoice.getInvoicePeriod());
+        }
+
+        // References
+        if (invoice.getOrderReference() != null) {
+            writeOrderReference(out, invoice.getOrderReference());
+        }
+        if (invoice.getContractDocumentReference() != null) {
+            writeDocumentReference(out, "ContractDocumentReference", invoice.getContractDocumentReference());
+        }
+        for (DocumentReferenceType docRef : invoice.getAdditionalDocumentReferences()) {
+            writeDocumentReference(out, "AdditionalDocumentReference", docRef);
+        }
+
+        // Parties
+        out.start("cac:AccountingSupplierParty");
+        writeParty(out, invoice.getAccountingSupplierParty().getParty());
+        out.end();
+        out.start("cac:AccountingCustomerParty");
+        writeParty(out, invoice.getAccountingCustomerParty().getParty());
+        out.end();
+
+        // Payment
+        for (PaymentMeansType pm : invoice.getPaymentMeans()) {
+            writePaymentMeans(out, pm);
+        }
+
+        // Allowances/Charges
+        for (AllowanceChargeType ac : invoice.getAllowanceCharges()) {
+            writeAllowanceCharge(out, ac);
+        }
+
+        // Tax
+        for (TaxTotalType tt : invoice.getTaxTotals()) {
+            writeTaxTotal(out, tt);
+        }
+
+        // Monetary total
+        writeMonetaryTotal(out, invoice.getLegalMonetaryTotal());
+
+        // Lines
+        for (InvoiceLineType line : invoice.getInvoiceLines()) {
+            writeInvoiceLine(out, line);
+        }
+
+        out.end();
+        out.finish();
+    }
+
+    // === Helper Methods ===
+
+    private void writeCbcIdentifier(XmlOutput out, String name, IdentifierType id) throws IOException {
+        if (id == null || id.getValue() == null) return;
+        out.start("cbc:" + name);
+        // The DOM serializer emits attributes sorted by name
+        if (id.getSchemeAgencyID() != null) {
+            out.attribute("schemeAgencyID", id.getSchemeAgencyID());
+        }
+        if (id.getSchemeID() != null) {
+            out.attribute("schemeID", id.getSchemeID());
+        }
+        out.text(id.getValue());
+        out.end();
+    }
+
+    private void writeCbcCode(XmlOutput out, String name, CodeType code) throws IOException {
+        if (code == null || code.getValue() == null) return;
+        out.start("cbc:" + name);
+        if (code.getListID() != null) {
+            out.attribute("listID", code.getListID());
+        }
+        if (code.getName() != null) {
+            out.attribute("name", code.getName());
+        }
+        out.text(code.getValue());
+        out.end();
+    }
+
+    private void writeCbcText(XmlOutput out, String name, TextType text) throws IOException {
+        if (text == null || text.getValue() == null) return;
+        out.start("cbc:" + name);
+        if (text.getLanguageID() != null) {
+            out.attribute("languageID", text.getLanguageID());
+        }
+        out.text(text.getValue());
+        out.end();
+    }
+
+    private void writeCbcAmount(XmlOutput out, String name, AmountType amount) throws IOException {
+        if (amount == null || amount.getValue() == null) return;
+        out.start("cbc:" + name);
+        out.attribute("currencyID", amount.getCurrencyID());
+        out.text(formatDecimal(amount.getValue()));
+        out.end();
+    }
+
+    private void writeCbcQuantity(XmlOutput out, String name, QuantityType qty) throws IOException {
+        if (qty == null || qty.getValue() == null) return;
+        out.start("cbc:" + name);
+        out.attribute("unitCode", qty.getUnitCode());
+        out.text(formatDecimal(qty.getValue()));
+        out.end();
+    }
+
+    private void writeCbcNumeric(XmlOutput out, String name, NumericType num) throws IOException {
+        if (num == null || num.getValue() == null) return;
+        out.start("cbc:" + name);
+        out.text(formatDecimal(num.getValue()));
+        out.end();
+    }
+
+    private void writeCbcDate(XmlOutput out, String name, DateType date) throws IOException {
+        if (date == null || date.getValue() == null) return;
+        out.start("cbc:" + name);
+        out.text(date.getValue().format(DateTimeFormatter.ISO_LOCAL_DATE));
+        out.end();
+    }
+
+    private void writeCbcIndicator(XmlOutput out, String name, IndicatorType indicator) throws IOException {
+        if (indicator == null || indicator.getValue() == null) return;
+        out.start("cbc:" + name);
+        out.text(indicator.getValue().toString().toLowerCase());
+        out.end();
+    }
+
+    private void writePeriod(XmlOutput out, String name, PeriodType period) throws IOException {
+        out.start("cac:" + name);
+        if (period.getStartDate() != null) {
+            writeCbcDate(out, "StartDate", period.getStartDate());
+        }
+        if (period.getEndDate() != null) {
+            writeCbcDate(out, "EndDate", period.getEndDate());
+        }
+        if (period.getDescriptionCode() != null) {
+            writeCbcCode(out, "DescriptionCode", period.getDescriptionCode());
+        }
+        out.end();
+    }
+
+    private void writeOrderReference(XmlOutput out, OrderReferenceType orderRef) throws IOException {
+        out.start("cac:OrderReference");
+        writeCbcIdentifier(out, "ID", orderRef.getId());
+        if (orderRef.getSalesOrderID() != null) {
+            writeCbcIdentifier(out, "SalesOrderID", orderRef.getSalesOrderID());
+        }
+        out.end();
+    }
+
+    private void writeDocumentReference(XmlOutput out, String name, DocumentReferenceType docRef) throws IOException {
+        out.start("cac:" + name);
+        writeCbcIdentifier(out, "ID", docRef.getId());
+        if (docRef.getIssueDate() != null) {
+            writeCbcDate(out, "IssueDate", docRef.getIssueDate());
+        }
+        if (docRef.getDocumentTypeCode() != null) {
+            writeCbcIdentifier(out, "DocumentTypeCode", docRef.getDocumentTypeCode());
+        }
+        out.end();
+    }
+
+    private void writeParty(XmlOutput out, PartyType party) throws IOException {
+        out.start("cac:Party");
+
+        // EndpointID
+        writeCbcIdentifier(out, "EndpointID", party.getEndpointID());
+
+        // PartyIdentification
+        for (PartyIdentificationType partyId : party.getPartyIdentifications()) {
+            out.start("cac:PartyIdentification");
+            writeCbcIdentifier(out, "ID", partyId.getId());
+            out.end();
+        }
+
+        // PartyName
+        if (party.getPartyName() != null) {
+            out.start("cac:PartyName");
+            writeCbcText(out, "Name", party.getPartyName().getName());
+            out.end();
+        }
+
+        // PostalAddress
+        if (party.getPostalAddress() != null) {
+            writeAddress(out, party.getPostalAddress());
+        }
+
+        // PartyTaxScheme
+        for (PartyTaxSchemeType pts : party.getPartyTaxSchemes()) {
+            out.start("cac:PartyTaxScheme");
+            writeCbcIdentifier(out, "CompanyID", pts.getCompanyID());
+            if (pts.getTaxScheme() != null) {
+                out.start("cac:TaxScheme");
+                writeCbcIdentifier(out, "ID", pts.getTaxScheme().getId());
+                out.end();
+            }
+            out.end();
+        }
+
+        // PartyLegalEntity
+        if (party.getPartyLegalEntity() != null) {
+            out.start("cac:PartyLegalEntity");
+            writeCbcText(out, "RegistrationName", party.getPartyLegalEntity().getRegistrationName());
+            writeCbcIdentifier(out, "CompanyID", party.getPartyLegalEntity().getCompanyID());
+            if (party.getPartyLegalEntity().getCompanyLegalForm() != null) {
+                writeCbcText(out, "CompanyLegalForm", party.getPartyLegalEntity().getCompanyLegalForm());
+            }
+            out.end();
+        }
+
+        // Contact
+        if (party.getContact() != null) {
+            out.start("cac:Contact");
+            writeCbcText(out, "Name", party.getContact().getName());
+            writeCbcText(out, "Telephone", party.getContact().getTelephone());
+            writeCbcText(out, "ElectronicMail", party.getContact().getElectronicMail());
+            out.end();
+        }
+
+        out.end();
+    }
+
+    private void writeAddress(XmlOutput out, AddressType address) throws IOException {
+        out.start("cac:PostalAddress");
+        writeCbcText(out, "StreetName", address.getStreetName());
+        writeCbcText(out, "AdditionalStreetName", address.getAdditionalStreetName());
+        writeCbcText(out, "CityName", address.getCityName());
+        writeCbcText(out, "PostalZone", address.getPostalZone());
+        writeCbcText(out, "CountrySubentity", address.getCountrySubentity());
+
+        for (AddressLineType al : address.getAddressLines()) {
+            out.start("cac:AddressLine");
+            writeCbcText(out, "Line", al.getLine());
+            out.end();
+        }
+
+        if (address.getCountry() != null) {
+            out.start("cac:Country");
+            writeCbcCode(out, "IdentificationCode", address.getCountry().getIdentificationCode());
+            out.end();
+        }
+
+        out.end();
+    }
+
+    private void writePaymentMeans(XmlOutput out, PaymentMeansType pm) throws IOException {
+        out.start("cac:PaymentMeans");
+        writeCbcCode(out, "PaymentMeansCode", pm.getPaymentMeansCode());
+        writeCbcIdentifier(out, "PaymentID", pm.getPaymentID());
+
+        if (pm.getPayeeFinancialAccount() != null) {
+            out.start("cac:PayeeFinancialAccount");
+            writeCbcIdentifier(out, "ID", pm.getPayeeFinancialAccount().getId());
+            writeCbcIdentifier(out, "Name", pm.getPayeeFinancialAccount().getName());
+            if (pm.getPayeeFinancialAccount().getFinancialInstitutionBranchID() != null) {
+                out.start("cac:FinancialInstitutionBranch");
+                writeCbcIdentifier(out, "ID", pm.getPayeeFinancialAccount().getFinancialInstitutionBranchID());
+                out.end();
+            }
+            out.end();
+        }
+
+        out.end();
+    }
+
+    private void writeAllowanceCharge(XmlOutput out, AllowanceChargeType ac) throws IOException {
+        out.start("cac:AllowanceCharge");
+        writeCbcIndicator(out, "ChargeIndicator", ac.getChargeIndicator());
+        writeCbcCode(out, "AllowanceChargeReasonCode", ac.getAllowanceChargeReasonCode());
+        writeCbcText(out, "AllowanceChargeReason", ac.getAllowanceChargeReason());
+        writeCbcNumeric(out, "MultiplierFactorNumeric", ac.getMultiplierFactorNumeric());
+        writeCbcAmount(out, "Amount", ac.getAmount());
+        writeCbcAmount(out, "BaseAmount", ac.getBaseAmount());
+
+        if (ac.getTaxCategory() != null) {
+            writeTaxCategory(out, ac.getTaxCategory());
+        }
+
+        out.end();
+    }
+
+    private void writeTaxTotal(XmlOutput out, TaxTotalType tt) throws IOException {
+        out.start("cac:TaxTotal");
+        writeCbcAmount(out, "TaxAmount", tt.getTaxAmount());
+
+        for (TaxSubtotalType ts : tt.getTaxSubtotals()) {
+            out.start("cac:TaxSubtotal");
+            writeCbcAmount(out, "TaxableAmount", ts.getTaxableAmount());
+            writeCbcAmount(out, "TaxAmount", ts.getTaxAmount());
+            if (ts.getTaxCategory() != null) {
+                writeTaxCategory(out, ts.getTaxCategory());
+            }
+            out.end();
+        }
+
+        out.end();
+    }
+
+    private void writeTaxCategory(XmlOutput out, TaxCategoryType tc) throws IOException {
+        out.start("cac:TaxCategory");
+        writeCbcCode(out, "ID", tc.getId());
+        writeCbcNumeric(out, "Percent", tc.getPercent());
+        writeCbcCode(out, "TaxExemptionReasonCode", tc.getTaxExemptionReasonCode());
+        writeCbcText(out, "TaxExemptionReason", tc.getTaxExemptionReason());
+
+        if (tc.getTaxScheme() != null) {
+            out.start("cac:TaxScheme");
+            writeCbcIdentifier(out, "ID", tc.getTaxScheme().getId());
+            out.end();
+        }
+
+        out.end();
+    }
+
+    private void writeMonetaryTotal(XmlOutput out, MonetaryTotalType mt) throws IOException {
+        out.start("cac:LegalMonetaryTotal");
+        writeCbcAmount(out, "LineExtensionAmount", mt.getLineExtensionAmount());
+        writeCbcAmount(out, "TaxExclusiveAmount", mt.getTaxExclusiveAmount());
+        writeCbcAmount(out, "TaxInclusiveAmount", mt.getTaxInclusiveAmount());
+        writeCbcAmount(out, "AllowanceTotalAmount", mt.getAllowanceTotalAmount());
+        writeCbcAmount(out, "ChargeTotalAmount", mt.getChargeTotalAmount());
+        writeCbcAmount(out, "PrepaidAmount", mt.getPrepaidAmount());
+        writeCbcAmount(out, "PayableRoundingAmount", mt.getPayableRoundingAmount());
+        writeCbcAmount(out, "PayableAmount", mt.getPayableAmount());
+        out.end();
+    }
+
+    private void writeInvoiceLine(XmlOutput out, InvoiceLineType line) throws IOException {
+        out.start("cac:InvoiceLine");
+
+        writeCbcIdentifier(out, "ID", line.getId());
+        writeCbcText(out, "Note", line.getNote());
+        writeCbcQuantity(out, "InvoicedQuantity", line.getInvoicedQuantity());
+        writeCbcAmount(out, "LineExtensionAmount", line.getLineExtensionAmount());
+        writeCbcText(out, "AccountingCost", line.getAccountingCost());
+
+        if (line.getInvoicePeriod() != null) {
+            writePeriod(out, "InvoicePeriod", line.getInvoicePeriod());
+        }
+
+        if (line.getOrderLineReference() != null) {
+            out.start("cac:OrderLineReference");
+            writeCbcIdentifier(out, "LineID", line.getOrderLineReference().getLineID());
+            out.end();
+        }
+
+        if (line.getDocumentReference() != null) {
+            writeDocumentReference(out, "DocumentReference", line.getDocumentReference());
+        }
+
+        for (AllowanceChargeType ac : line.getAllowanceCharges()) {
+            writeAllowanceCharge(out, ac);
+        }
+
+        if (line.getItem() != null) {
+            writeItem(out, line.getItem());
+        }
+
+        if (line.getPrice() != null) {
+            writePrice(out, line.getPrice());
+        }
+
+        out.end();
+    }
+
+    private void writeItem(XmlOutput out, ItemType item) throws IOException {
+        out.start("cac:Item");
+
+        writeCbcText(out, "Description", item.getDescription());
+        writeCbcText(out, "Name", item.getName());
+
+        if (item.getBuyersItemIdentification() != null) {
+            out.start("cac:BuyersItemIdentification");
+            writeCbcIdentifier(out, "ID", item.getBuyersItemIdentification().getId());
+            out.end();
+        }
+
+        if (item.getSellersItemIdentification() != null) {
+            out.start("cac:SellersItemIdentification");
+            writeCbcIdentifier(out, "ID", item.getSellersItemIdentification().getId());
+            out.end();
+        }
+
+        if (item.getStandardItemIdentification() != null) {
+            out.start("cac:StandardItemIdentification");
+            writeCbcIdentifier(out, "ID", item.getStandardItemIdentification().getId());
+            out.end();
+        }
+
+        if (item.getOriginCountry() != null) {
+            out.start("cac:OriginCountry");
+            writeCbcCode(out, "IdentificationCode", item.getOriginCountry().getIdentificationCode());
+            out.end();
+        }
+
+        for (CommodityClassificationType cc : item.getCommodityClassifications()) {
+            out.start("cac:CommodityClassification");
+            writeCbcCode(out, "ItemClassificationCode", cc.getItemClassificationCode());
+            out.end();
+        }
+
+        if (item.getClassifiedTaxCategory() != null) {
+            writeTaxCategory(out, item.getClassifiedTaxCategory());
+        }
+
+        for (ItemPropertyType prop : item.getAdditionalItemProperties()) {
+            out.start("cac:AdditionalItemProperty");
+            writeCbcText(out, "Name", prop.getName());
+            writeCbcText(out, "Value", prop.getValue());
+            out.end();
+        }
+
+        out.end();
+    }
+
+    private void writePrice(XmlOutput out, PriceType price) throws IOException {
+        out.start("cac:Price");
+        writeCbcAmount(out, "PriceAmount", price.getPriceAmount());
+        writeCbcQuantity(out, "BaseQuantity", price.getBaseQuantity());
+
+        if (price.getAllowanceCharge() != null) {
+            writeAllowanceCharge(out, price.getAllowanceCharge());
+        }
+
+        out.end();
+    }
+
+    private String formatDecimal(BigDecimal value) {
+        return value.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Minimal indenting XML emitter that mirrors the JDK serializer's output:
+     * two-space indentation, text-only elements on one line, childless
+     * elements self-closed, and the same character escaping rules.
+     * Callers write attributes in name order, as the DOM keeps them sorted.
+     */
+    private static final class XmlOutput {
+
+        private static final String LINE_SEPARATOR = System.lineSeparator();
+        private static final int MAX_DEPTH = 32;
+
+        private final Writer writer;
+        private final String[] names = new String[MAX_DEPTH];
+        private final boolean[] hasChildren = new boolean[MAX_DEPTH];
+        private int depth;
+        private boolean startTagOpen;
+
+        XmlOutput(Writer writer) {
+            this.writer = writer;
+        }
+
+        void declaration() throws IOException {
+            writer.write(XML_DECLARATION);
+        }
+
+        void start(String name) throws IOException {
+            if (startTagOpen) {
+                writer.write('>');
+            }
+            if (depth > 0) {
+                hasChildren[depth - 1] = true;
+            }
+            newLine(depth);
+            writer.write('<');
+            writer.write(name);
+            names[depth] = name;
+            hasChildren[depth] = false;
+            depth++;
+            startTagOpen = true;
+        }
+
+        void attribute(String name, String value) throws IOException {
+            writer.write(' ');
+            writer.write(name);
+            writer.write("=\"");
+            if (value != null) {
+                escape(value, true);
+            }
+            writer.write('"');
+        }
+
+        void text(String value) throws IOException {
+            if (value.isEmpty()) return;
+            if (startTagOpen) {
+                writer.write('>');
+                startTagOpen = false;
+            }
+            escape(value, false);
+        }
+
+        void end() throws IOException {
+            depth--;
+            if (startTagOpen) {
+                writer.write("/>");
+                startTagOpen = false;
+                return;
+            }
+            if (hasChildren[depth]) {
+                newLine(depth);
+            }
+            writer.write("</");
+            writer.write(names[depth]);
+            writer.write('>');
+        }
+
+        void finish() throws IOException {
+            writer.write(LINE_SEPARATOR);
+        }
+
+        private void newLine(int level) throws IOException {
+            writer.write(LINE_SEPARATOR);
+            for (int i = 0; i < level; i++) {
+                writer.write("  ");
+            }
+        }
+
+        private void escape(String value, boolean inAttribute) throws IOException {
+            int length = value.length();
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                String replacement = null;
+                int consumed = 1;
+                if (c == '&') {
+                    replacement = "&amp;";
+                } else if (c == '<') {
+                    replacement = "&lt;";
+                } else if (c == '>') {
+                    replacement = "&gt;";
+                } else if (c == '"' && inAttribute) {
+                    replacement = "&quot;";
+                } else if (c == '\r' || (inAttribute ? (c == '\n' || c == '\t') : (c >= 0x7F && c <= 0x9F))) {
+                    replacement = "&#" + (int) c + ";";
+                } else if (Character.isHighSurrogate(c)) {
+                    if (i + 1 >= length || !Character.isLowSurrogate(value.charAt(i + 1))) {
+                        throw invalidCharacter(c);
+                    }
+                    replacement = "&#" + Character.toCodePoint(c, value.charAt(i + 1)) + ";";
+                    consumed = 2;
+                } else if (!isXmlChar(c)) {
+                    throw invalidCharacter(c);
+                }
+                if (replacement != null) {
+                    writer.write(value, start, i - start);
+                    writer.write(replacement);
+                    i += consumed - 1;
+                    start = i + 1;
+                }
+            }
+            writer.write(value, start, length - start);
+        }
+
+        private static boolean isXmlChar(char c) {
+            return c >= 0x20 ? (c <= 0xD7FF || c >= 0xE000) : (c == '\t' || c == '\n' || c == '\r');
+        }
+
+        private static IOException invalidCharacter(char c) {
+            return new IOException("Invalid XML character (Unicode: 0x" + Integer.toHexString(c) + ")");
+        }
+    }
+}
@@ -8,11 +8,14 @@ import org.w3c.dom.Element;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -22,26 +25,49 @@ import java.time.format.DateTimeFormatter;
  * UBLWriter - Converts InvoiceType objects to UBL 2.1 XML format.
  *
  * Generates PEPPOL BIS Billing 3.0 / EHF 3.0 compliant XML with proper namespaces.
+ * Safe for concurrent use: DocumentBuilder and Transformer are not thread-safe,
+ * so each thread gets its own instances, created from shared factories.
  */
-public class UBLWriter {
+public class UBLWriter implements InvoiceXmlWriter {
 
     private static final String NS_INVOICE = "urn:oasis:names:specification:ubl:schema:xsd:Invoice-2";
     private static final String NS_CAC = "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2";
     private static final String NS_CBC = "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2";
 
-    private final DocumentBuilder documentBuilder;
+    private final DocumentBuilderFactory documentBuilderFactory;
+    private final TransformerFactory transformerFactory;
+    private final ThreadLocal<DocumentBuilder> documentBuilder;
+    private final ThreadLocal<Transformer> transformer;
 
     public UBLWriter() throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
-        this.documentBuilder = factory.newDocumentBuilder();
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        transformerFactory = TransformerFactory.newInstance();
+
+        // Fail fast on misconfiguration, and reuse the instances on this thread
+        DocumentBuilder initialBuilder = newDocumentBuilder();
+        Transformer initialTransformer = newTransformer();
+        documentBuilder = ThreadLocal.withInitial(this::newDocumentBuilderUnchecked);
+        documentBuilder.set(initialBuilder);
+        transformer = ThreadLocal.withInitial(this::newTransformerUnchecked);
+        transformer.set(initialTransformer);
     }
 
-    /**
-     * Converts an InvoiceType to UBL XML string.
-     */
+    @Override
+    public void write(InvoiceType invoice, OutputStream out) throws Exception {
+        transform(buildDocument(invoice), new StreamResult(out));
+        out.flush();
+    }
+
+    @Override
     public String writeToString(InvoiceType invoice) throws Exception {
-        Document doc = documentBuilder.newDocument();
+        StringWriter writer = new StringWriter();
+        transform(buildDocument(invoice), new StreamResult(writer));
+        return writer.toString();
+    }
+
+    private Document buildDocument(InvoiceType invoice) {
+        Document doc = documentBuilder.get().newDocument();
 
         Element root = doc.createElementNS(NS_INVOICE, "Invoice");
         root.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns", NS_INVOICE);
@@ -120,7 +146,7 @@ public class UBLWriter {
             appendInvoiceLine(doc, root, line);
         }
 
-        return documentToString(doc);
+        return doc;
     }
 
     // === Helper Methods ===
@@ -514,15 +540,42 @@ public class UBLWriter {
         return value.stripTrailingZeros().toPlainString();
     }
 
-    private String documentToString(Document doc) throws Exception {
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer transformer = tf.newTransformer();
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+    private void transform(Document doc, StreamResult result) throws Exception {
+        transformer.get().transform(new DOMSource(doc), result);
+    }
 
-        StringWriter writer = new StringWriter();
-        transformer.transform(new DOMSource(doc), new StreamResult(writer));
-        return writer.toString();
+    // The factories are not guaranteed to be thread-safe, so creation is serialized
+
+    private DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+        synchronized (documentBuilderFactory) {
+            return documentBuilderFactory.newDocumentBuilder();
+        }
+    }
+
+    private Transformer newTransformer() throws TransformerConfigurationException {
+        Transformer t;
+        synchronized (transformerFactory) {
+            t = transformerFactory.newTransformer();
+        }
+        t.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        t.setOutputProperty(OutputKeys.INDENT, "yes");
+        t.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+        return t;
+    }
+
+    private DocumentBuilder newDocumentBuilderUnchecked() {
+        try {
+            return newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Failed to create DocumentBuilder", e);
+        }
+    }
+
+    private Transformer newTransformerUnchecked() {
+        try {
+            return newTransformer();
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException("Failed to create Transformer", e);
+        }
     }
 }
@@ -0,0 +1,39 @@
+package no.snabel.health;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.service.OxalisBootstrap;
+import no.snabel.service.OxalisBootstrap.State;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
+import org.eclipse.microprofile.health.Readiness;
+
+/**
+ * Reports the Oxalis initialization state under /q/health/ready.
+ *
+ * Only a failed initialization is DOWN. While Oxalis is disabled, not yet started or still
+ * starting the instance serves everything else, and invoices wait in the delivery outbox.
+ */
+@Readiness
+@ApplicationScoped
+public class OxalisReadinessCheck implements HealthCheck {
+
+    @Inject
+    OxalisBootstrap oxalis;
+
+    @Override
+    public HealthCheckResponse call() {
+        State state = oxalis.state();
+        HealthCheckResponseBuilder response = HealthCheckResponse.named("oxalis")
+                .status(state != State.FAILED)
+                .withData("state", state.name());
+        if (oxalis.initTime() != null) {
+            response.withData("initMillis", oxalis.initTime().toMillis());
+        }
+        if (oxalis.failure() != null) {
+            response.withData("error", String.valueOf(oxalis.failure().getMessage()));
+        }
+        return response.build();
+    }
+}
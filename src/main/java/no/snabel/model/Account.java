@@ -36,7 +36,8 @@ public class Account extends PanacheEntityBase {
     @Column(name = "vat_code", length = 10)
     public String vatCode;
 
-    @Column(precision = 19, scale = 2)
+    // Written only by the posting SQL, see JournalPostingService
+    @Column(precision = 19, scale = 2, insertable = false, updatable = false)
     public BigDecimal balance = BigDecimal.ZERO;
 
     @Column(length = 3)
@@ -0,0 +1,59 @@
+package no.snabel.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "invoice_deliveries")
+public class InvoiceDelivery extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "invoice_id", nullable = false)
+    public Invoice invoice;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_id", nullable = false)
+    public Customer customer;
+
+    @Column(length = 20, nullable = false)
+    public String channel = "EHF"; // EHF
+
+    @Column(length = 20, nullable = false)
+    public String status = "PENDING"; // PENDING, IN_PROGRESS, DELIVERED, DEAD
+
+    @Column(nullable = false)
+    public Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    public LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    @JsonIgnore
+    @Column(name = "locked_until")
+    public LocalDateTime lockedUntil;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    public String lastError;
+
+    @Column(name = "message_id")
+    public String messageId;
+
+    @Column(name = "transmission_id")
+    public String transmissionId;
+
+    @Column(name = "created_at", nullable = false)
+    public LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at", nullable = false)
+    public LocalDateTime updatedAt = LocalDateTime.now();
+
+    @Column(name = "delivered_at")
+    public LocalDateTime deliveredAt;
+}
@@ -0,0 +1,56 @@
+package no.snabel.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "journal_entry_lines")
+public class JournalEntryLine extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "journal_entry_id", nullable = false)
+    public JournalEntry journalEntry;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    public Account account;
+
+    @Column(name = "account_id", insertable = false, updatable = false)
+    public Long accountId;
+
+    @Column(columnDefinition = "TEXT")
+    public String description;
+
+    @Column(name = "debit_amount", precision = 19, scale = 2)
+    public BigDecimal debitAmount = BigDecimal.ZERO;
+
+    @Column(name = "credit_amount", precision = 19, scale = 2)
+    public BigDecimal creditAmount = BigDecimal.ZERO;
+
+    @Column(name = "vat_amount", precision = 19, scale = 2)
+    public BigDecimal vatAmount = BigDecimal.ZERO;
+
+    @Column(name = "vat_code", length = 10)
+    public String vatCode;
+
+    @Column(length = 3)
+    public String currency = "NOK";
+
+    @Column(name = "exchange_rate", precision = 10, scale = 6)
+    public BigDecimal exchangeRate = BigDecimal.ONE;
+
+    @Column(name = "line_number")
+    public Integer lineNumber;
+
+    @Column(name = "created_at", nullable = false)
+    public LocalDateTime createdAt = LocalDateTime.now();
+}
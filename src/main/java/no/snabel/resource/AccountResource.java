@@ -2,28 +2,57 @@ package no.snabel.resource;
 
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import no.snabel.dto.AccountTreeNode;
 import no.snabel.model.Account;
+import no.snabel.security.RequiresScope;
+import no.snabel.security.Scope;
+import no.snabel.service.AccountCache;
+import no.snabel.service.AccountTreeService;
+import no.snabel.service.StandardAccountService;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 @Path("/api/accounts")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
-@RolesAllowed({"USER", "ADMIN", "ACCOUNTANT"})
+@RolesAllowed({"USER", "ADMIN", "ACCOUNTANT", "CLIENT"})
 public class AccountResource extends SecureResource {
 
+    @Inject
+    AccountCache accountCache;
+
+    @Inject
+    AccountTreeService accountTree;
+
+    @Inject
+    StandardAccountService standardAccountService;
+
     @GET
+    @RequiresScope(Scope.READ_ACCOUNTS)
     public Uni<List<Account>> listAccounts() {
         Long customerId = getCustomerId();
-        return Account.<Account>find("customer.id = ?1 and active = true", customerId)
-                .list();
+        return accountCache.accounts(customerId);
+    }
+
+    /**
+     * All accounts nested under their parent accounts, optionally with rolled-up balances
+     */
+    @GET
+    @Path("/tree")
+    @RequiresScope(Scope.READ_ACCOUNTS)
+    public Uni<List<AccountTreeNode>> getAccountTree(@QueryParam("withBalances") boolean withBalances) {
+        return accountTree.tree(getCustomerId(), withBalances);
     }
 
     @GET
     @Path("/{id}")
+    @RequiresScope(Scope.READ_ACCOUNTS)
     public Uni<Response> getAccount(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
         return Account.<Account>find("id = ?1 and customer.id = ?2", id, customerId)
@@ -39,11 +68,25 @@ public class AccountResource extends SecureResource {
         Long customerId = getCustomerId();
         account.customer = new no.snabel.model.Customer();
         account.customer.id = customerId;
+        account.balance = BigDecimal.ZERO;  // Not insertable; starts at the column default
 
         return account.persistAndFlush()
+                .invoke(() -> accountCache.invalidate(customerId))
                 .map(a -> Response.status(Response.Status.CREATED).entity(a).build());
     }
 
+    /**
+     * Copy the NS 4102 standard chart into the customer's accounts, skipping account numbers
+     * the customer already has. Safe to repeat.
+     */
+    @POST
+    @Path("/provision")
+    @RolesAllowed("ADMIN")
+    public Uni<Map<String, Integer>> provisionStandardChart() {
+        return standardAccountService.provision(getCustomerId())
+                .map(created -> Map.of("created", created));
+    }
+
     @PUT
     @Path("/{id}")
     @RolesAllowed({"ADMIN", "ACCOUNTANT"})
@@ -59,6 +102,7 @@ public class AccountResource extends SecureResource {
                     account.description = updatedAccount.description;
                     account.vatCode = updatedAccount.vatCode;
                     return account.persistAndFlush()
+                            .invoke(() -> accountCache.invalidate(customerId))
                             .map(a -> Response.ok(a).build());
                 });
     }
@@ -76,6 +120,7 @@ public class AccountResource extends SecureResource {
                     }
                     account.active = false;
                     return account.persistAndFlush()
+                            .invoke(() -> accountCache.invalidate(customerId))
                             .map(a -> Response.noContent().build());
                 });
     }
@@ -11,6 +11,8 @@ import no.snabel.dto.LoginResponse;
 import no.snabel.dto.TokenRequest;
 import no.snabel.service.AuthService;
 
+import java.util.concurrent.RejectedExecutionException;
+
 @Path("/api/auth")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
@@ -29,6 +31,8 @@ public class AuthResource {
                 .recoverWithItem(e -> Response.status(Response.Status.UNAUTHORIZED)
                         .entity(new ErrorResponse(e.getMessage()))
                         .build())
+                .onFailure(RejectedExecutionException.class)
+                .recoverWithItem(e -> busy("Too many logins in progress, try again shortly"))
                 .onFailure()
                 .recoverWithItem(e -> Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                         .entity(new ErrorResponse("An error occurred during login"))
@@ -58,12 +62,24 @@ public class AuthResource {
                 .recoverWithItem(e -> Response.status(Response.Status.UNAUTHORIZED)
                         .entity(new ErrorResponse("invalid_client"))
                         .build())
+                .onFailure(RejectedExecutionException.class)
+                .recoverWithItem(e -> busy("temporarily_unavailable"))
                 .onFailure()
                 .recoverWithItem(e -> Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                         .entity(new ErrorResponse("server_error"))
                         .build());
     }
 
+    /**
+     * Credential checks are queued on a bounded pool; when it is full the client should come back
+     */
+    private static Response busy(String error) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .entity(new ErrorResponse(error))
+                .build();
+    }
+
     public static class ErrorResponse {
         public String error;
 
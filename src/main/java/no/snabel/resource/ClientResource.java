@@ -1,6 +1,6 @@
 package no.snabel.resource;
 
-import io.quarkus.elytron.security.common.BcryptUtil;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
@@ -13,10 +13,13 @@ import no.snabel.dto.CreateClientResponse;
 import no.snabel.model.ApiClient;
 import no.snabel.model.Customer;
 import no.snabel.model.User;
+import no.snabel.service.ClientCredentialCache;
+import no.snabel.service.PasswordHasher;
 import org.hibernate.reactive.mutiny.Mutiny;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @Path("/api/clients")
 @Produces(MediaType.APPLICATION_JSON)
@@ -26,6 +29,12 @@ public class ClientResource extends SecureResource {
     @Inject
     Mutiny.SessionFactory sessionFactory;
 
+    @Inject
+    PasswordHasher passwordHasher;
+
+    @Inject
+    ClientCredentialCache clientCredentials;
+
     @GET
     @RolesAllowed({"ADMIN"})
     @WithTransaction
@@ -64,10 +73,13 @@ public class ClientResource extends SecureResource {
         client.name = request.name;
         client.description = request.description;
         client.scopes = request.scopes;
-        client.clientSecretHash = BcryptUtil.bcryptHash(clientSecret);
         client.createdBy = user;
 
-        return client.persist()
+        return passwordHasher.hash(clientSecret)
+                .chain(hash -> {
+                    client.clientSecretHash = hash;
+                    return client.persist();
+                })
                 .map(v -> {
                     CreateClientResponse response = new CreateClientResponse(
                             client.id,
@@ -77,25 +89,38 @@ public class ClientResource extends SecureResource {
                             client.scopes
                     );
                     return Response.status(Response.Status.CREATED).entity(response).build();
-                });
+                })
+                .onFailure(RejectedExecutionException.class).recoverWithItem(e -> Response
+                        .status(Response.Status.SERVICE_UNAVAILABLE)
+                        .header("Retry-After", "1")
+                        .build());
     }
 
+    /**
+     * Deactivate a client. Its cached credentials are dropped once the deactivation is committed,
+     * so a token request that read the client before the commit cannot cache it again.
+     */
     @DELETE
     @Path("/{id}")
     @RolesAllowed({"ADMIN"})
-    @WithTransaction
     public Uni<Response> deleteClient(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
-        return ApiClient.<ApiClient>find("id = ?1 and customer.id = ?2", id, customerId)
-                .firstResult()
-                .chain(client -> {
-                    if (client == null) {
-                        return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
+        return Panache.withTransaction(() -> ApiClient.<ApiClient>find("id = ?1 and customer.id = ?2", id, customerId)
+                        .firstResult()
+                        .chain(client -> {
+                            if (client == null) {
+                                return Uni.createFrom().nullItem();
+                            }
+                            // Soft delete
+                            client.active = false;
+                            return client.persistAndFlush().replaceWith(client.clientId);
+                        }))
+                .map(clientId -> {
+                    if (clientId == null) {
+                        return Response.status(Response.Status.NOT_FOUND).build();
                     }
-                    // Soft delete
-                    client.active = false;
-                    return client.persistAndFlush()
-                            .map(c -> Response.noContent().build());
+                    clientCredentials.invalidate(clientId);
+                    return Response.noContent().build();
                 });
     }
 }
@@ -1,19 +1,48 @@
 package no.snabel.resource;
 
+import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
+import io.quarkus.panache.common.Sort;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import no.snabel.dto.EfakturaBatchRequest;
+import no.snabel.dto.InvoiceExportRow;
+import no.snabel.dto.InvoicePage;
 import no.snabel.model.Customer;
 import no.snabel.model.Invoice;
+import no.snabel.model.InvoiceDelivery;
+import no.snabel.security.RequiresScope;
+import no.snabel.security.Scope;
+import no.snabel.service.DocumentCacheService.DocumentType;
+import no.snabel.service.DocumentCacheService;
+import no.snabel.service.DocumentWorkerPool;
 import no.snabel.service.EHFInvoiceService;
+import no.snabel.service.EfakturaBatchService;
+import no.snabel.service.InvoiceExportService;
 import no.snabel.service.InvoicePdfService;
 import org.hibernate.Hibernate;
+import org.jboss.resteasy.reactive.ResponseHeader;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Path("/api/invoices")
 @Produces(MediaType.APPLICATION_JSON)
@@ -21,33 +50,116 @@ import java.util.List;
 @RolesAllowed({"USER", "ADMIN", "ACCOUNTANT", "CLIENT"})
 public class InvoiceResource extends SecureResource {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Inject
     EHFInvoiceService eFakturaService;
 
     @Inject
     InvoicePdfService invoicePdfService;
 
+    @Inject
+    InvoiceExportService invoiceExportService;
+
+    @Inject
+    EfakturaBatchService efakturaBatchService;
+
+    @Inject
+    DocumentCacheService documentCacheService;
+
+    @Inject
+    DocumentWorkerPool documentWorkerPool;
+
     @GET
-    public Uni<List<Invoice>> listInvoices(
+    @RequiresScope(Scope.READ_INVOICES)
+    public Uni<Response> listInvoices(
             @QueryParam("status") String status,
-            @QueryParam("limit") @DefaultValue("50") int limit) {
+            @QueryParam("limit") @DefaultValue("50") int limit,
+            @QueryParam("cursor") String cursor) {
         Long customerId = getCustomerId();
 
+        if (cursor != null) {
+            return listInvoicePage(customerId, status, limit, cursor);
+        }
+
         String query = "customer.id = ?1";
         if (status != null && !status.isEmpty()) {
             query += " and status = ?2";
             return Invoice.<Invoice>find(query, customerId, status)
                     .page(0, limit)
-                    .list();
+                    .list()
+                    .map(invoices -> Response.ok(invoices).build());
         }
 
         return Invoice.<Invoice>find(query, customerId)
                 .page(0, limit)
-                .list();
+                .list()
+                .map(invoices -> Response.ok(invoices).build());
+    }
+
+    /**
+     * Keyset pagination over (invoiceDate, id), newest first.
+     * An empty cursor requests the first page; every following page seeks past the
+     * last row of the previous one, so the cost is the same regardless of depth.
+     */
+    private Uni<Response> listInvoicePage(Long customerId, String status, int limit, String cursor) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        StringBuilder query = new StringBuilder("customer.id = ?1");
+        List<Object> params = new ArrayList<>();
+        params.add(customerId);
+
+        if (status != null && !status.isEmpty()) {
+            params.add(status);
+            query.append(" and status = ?").append(params.size());
+        }
+
+        if (!cursor.isEmpty()) {
+            InvoiceCursor position;
+            try {
+                position = InvoiceCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Invalid cursor\"}")
+                        .build());
+            }
+            params.add(position.invoiceDate());
+            int dateParam = params.size();
+            params.add(position.id());
+            int idParam = params.size();
+            // The redundant leading bound lets PostgreSQL turn the seek into an index range scan
+            query.append(" and invoiceDate <= ?").append(dateParam)
+                    .append(" and (invoiceDate < ?").append(dateParam)
+                    .append(" or id < ?").append(idParam).append(")");
+        }
+
+        return Invoice.<Invoice>find(query.toString(), Sort.descending("invoiceDate", "id"), params.toArray())
+                .page(0, pageSize + 1)
+                .list()
+                .map(invoices -> {
+                    String next = null;
+                    if (invoices.size() > pageSize) {
+                        invoices = invoices.subList(0, pageSize);
+                        Invoice last = invoices.get(pageSize - 1);
+                        next = new InvoiceCursor(last.invoiceDate, last.id).encode();
+                    }
+                    return Response.ok(new InvoicePage(invoices, next)).build();
+                });
+    }
+
+    @GET
+    @Path("/export")
+    @Produces("application/x-ndjson")
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    @RequiresScope(Scope.READ_INVOICES)
+    public Multi<InvoiceExportRow> exportInvoices() {
+        Long customerId = getCustomerId();
+        return invoiceExportService.exportInvoices(customerId);
     }
 
     @GET
     @Path("/{id}")
+    @RequiresScope(Scope.READ_INVOICES)
     public Uni<Response> getInvoice(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
         return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
@@ -103,26 +215,101 @@ public class InvoiceResource extends SecureResource {
                 });
     }
 
+    /**
+     * Mark the invoice as sent. Invoices with a PEPPOL receiver also get an EHF delivery queued in the
+     * same transaction; the transmission itself is done later by InvoiceDeliveryDispatcher.
+     *
+     * The invoice row is locked for the transaction, so concurrent sends are serialized. Sending an
+     * invoice that is already sent or paid is answered with 409 and queues nothing, so a retry or
+     * double click never transmits it twice. The one exception is a sent invoice whose latest delivery
+     * is DEAD: sending it again queues a new delivery, which is how dead-lettered invoices are redriven.
+     */
     @PUT
     @Path("/{id}/send")
     @RolesAllowed({"ADMIN", "ACCOUNTANT"})
+    @WithTransaction
     public Uni<Response> sendInvoice(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
         return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
                 .firstResult()
                 .chain(invoice -> {
                     if (invoice == null) {
                         return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
                     }
-                    invoice.status = "SENT";
-                    invoice.sentAt = LocalDateTime.now();
-                    invoice.updatedAt = LocalDateTime.now();
-
-                    return invoice.persistAndFlush()
-                            .map(inv -> Response.ok(inv).build());
+                    if (!"SENT".equals(invoice.status) && !"PAID".equals(invoice.status)) {
+                        return markSent(invoice);
+                    }
+                    return InvoiceDelivery.<InvoiceDelivery>find(
+                                    "invoice.id = ?1", Sort.descending("createdAt", "id"), invoice.id)
+                            .firstResult()
+                            .chain(latest -> {
+                                if ("SENT".equals(invoice.status) && latest != null && "DEAD".equals(latest.status)
+                                        && hasPeppolReceiver(invoice)) {
+                                    return requeue(invoice);
+                                }
+                                return Uni.createFrom().item(conflict(
+                                        "Invoice is already " + invoice.status, latest != null ? latest.id : null));
+                            });
                 });
     }
 
+    private Uni<Response> markSent(Invoice invoice) {
+        invoice.status = "SENT";
+        invoice.sentAt = LocalDateTime.now();
+        invoice.updatedAt = LocalDateTime.now();
+
+        Uni<Void> queued = Uni.createFrom().voidItem();
+        if (hasPeppolReceiver(invoice)) {
+            queued = queueDelivery(invoice);
+        }
+
+        return queued
+                .chain(() -> invoice.persistAndFlush())
+                .map(inv -> Response.ok(inv).build());
+    }
+
+    /**
+     * Queue a new delivery for a sent invoice whose last delivery was dead-lettered. The dead
+     * delivery is kept as history; sentAt still records when the invoice was first sent.
+     */
+    private Uni<Response> requeue(Invoice invoice) {
+        invoice.updatedAt = LocalDateTime.now();
+        return queueDelivery(invoice)
+                .chain(() -> invoice.persistAndFlush())
+                .map(inv -> Response.ok(inv).build());
+    }
+
+    private static Uni<Void> queueDelivery(Invoice invoice) {
+        InvoiceDelivery delivery = new InvoiceDelivery();
+        delivery.invoice = invoice;
+        delivery.customer = invoice.customer;
+        return delivery.persist().replaceWithVoid();
+    }
+
+    private static Response conflict(String error, Long deliveryId) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", error);
+        if (deliveryId != null) {
+            body.put("deliveryId", deliveryId);
+        }
+        return Response.status(Response.Status.CONFLICT).entity(body).build();
+    }
+
+    /**
+     * Delivery attempts for an invoice, newest first
+     */
+    @GET
+    @Path("/{id}/deliveries")
+    @RequiresScope(Scope.READ_INVOICES)
+    public Uni<Response> listDeliveries(@PathParam("id") Long id) {
+        Long customerId = getCustomerId();
+        return InvoiceDelivery.<InvoiceDelivery>find(
+                        "invoice.id = ?1 and customer.id = ?2", Sort.descending("createdAt", "id"), id, customerId)
+                .list()
+                .map(deliveries -> Response.ok(deliveries).build());
+    }
+
     @PUT
     @Path("/{id}/pay")
     @RolesAllowed({"ADMIN", "ACCOUNTANT"})
@@ -146,65 +333,127 @@ public class InvoiceResource extends SecureResource {
     @GET
     @Path("/{id}/pdf")
     @Produces("application/pdf")
-    public Uni<Response> downloadInvoicePdf(@PathParam("id") Long id) {
-        Long customerId = getCustomerId();
-        return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
-                .firstResult()
-                .chain(invoice -> {
-                    if (invoice == null) {
-                        return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
-                    }
-
-                    // Fetch related entities
-                    return fetchInvoiceWithRelations(invoice)
-                            .map(inv -> {
-                                try {
-                                    byte[] pdfBytes = invoicePdfService.generatePdf(inv);
-                                    return Response.ok(pdfBytes)
-                                            .header("Content-Disposition",
-                                                    "attachment; filename=\"faktura-" + inv.invoiceNumber + ".pdf\"")
-                                            .build();
-                                } catch (Exception e) {
-                                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                                            .entity("{\"error\": \"Failed to generate PDF: " + e.getMessage() + "\"}")
-                                            .type(MediaType.APPLICATION_JSON)
-                                            .build();
-                                }
-                            });
-                });
+    @RequiresScope(Scope.READ_INVOICES)
+    public Uni<Response> downloadInvoicePdf(@PathParam("id") Long id, @Context Request request) {
+        return downloadDocument(id, DocumentType.PDF, request);
     }
 
     @GET
     @Path("/{id}/efaktura")
     @Produces(MediaType.APPLICATION_XML)
-    public Uni<Response> downloadInvoiceEfaktura(@PathParam("id") Long id) {
+    @RequiresScope(Scope.READ_INVOICES)
+    public Uni<Response> downloadInvoiceEfaktura(@PathParam("id") Long id, @Context Request request) {
+        return downloadDocument(id, DocumentType.EHF, request);
+    }
+
+    /**
+     * EHF XML for every invoice matching the filter, streamed as a ZIP archive
+     */
+    @POST
+    @Path("/efaktura/batch")
+    @Produces("application/zip")
+    @ResponseHeader(name = "Content-Disposition", value = "attachment; filename=\"efaktura.zip\"")
+    @RequiresScope(Scope.READ_INVOICES)
+    public Multi<byte[]> downloadEfakturaBatch(EfakturaBatchRequest request) {
+        EfakturaBatchRequest filter = request != null ? request : new EfakturaBatchRequest();
+        if (filter.fromDate != null && filter.toDate != null && filter.fromDate.isAfter(filter.toDate)) {
+            throw new BadRequestException(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"fromDate must not be after toDate\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build());
+        }
+        return efakturaBatchService.generateZip(getCustomerId(), filter);
+    }
+
+    /**
+     * Opaque keyset position: the (invoiceDate, id) of the last invoice on a page
+     */
+    record InvoiceCursor(LocalDate invoiceDate, Long id) {
+
+        String encode() {
+            String raw = invoiceDate + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static InvoiceCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Malformed cursor");
+                }
+                return new InvoiceCursor(
+                        LocalDate.parse(raw.substring(0, separator)),
+                        Long.valueOf(raw.substring(separator + 1)));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed cursor", e);
+            }
+        }
+    }
+
+    private boolean hasPeppolReceiver(Invoice invoice) {
+        return (invoice.clientEndpointId != null && !invoice.clientEndpointId.isBlank())
+                || (invoice.clientOrganizationNumber != null && !invoice.clientOrganizationNumber.isBlank());
+    }
+
+    /**
+     * Serve a rendered PDF or EHF document from the document cache, rendering it on first download.
+     * The cache key is sent as a strong ETag, so unchanged documents are answered with 304.
+     */
+    private Uni<Response> downloadDocument(Long id, DocumentType type, Request request) {
         Long customerId = getCustomerId();
-        return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
+        return Invoice.<Invoice>find("from Invoice i join fetch i.customer where i.id = ?1 and i.customer.id = ?2", id, customerId)
                 .firstResult()
                 .chain(invoice -> {
                     if (invoice == null) {
                         return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
                     }
 
-                    // Fetch related entities
-                    return fetchInvoiceWithRelations(invoice)
-                            .map(inv -> {
-                                try {
-                                    String ehfXml = eFakturaService.generateEHF(inv);
-                                    return Response.ok(ehfXml)
-                                            .header("Content-Disposition",
-                                                    "attachment; filename=\"efaktura-" + inv.invoiceNumber + ".xml\"")
-                                            .build();
-                                } catch (Exception e) {
-                                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                                            .entity("{\"error\": \"Failed to generate eFaktura: " + e.getMessage() + "\"}")
-                                            .type(MediaType.APPLICATION_JSON)
-                                            .build();
-                                }
-                            });
+                    String key = documentCacheService.key(invoice, type);
+                    EntityTag etag = new EntityTag(key);
+                    Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+                    if (notModified != null) {
+                        return Uni.createFrom().item(notModified.header("Cache-Control", "private, no-cache").build());
+                    }
+
+                    Uni<java.nio.file.Path> document = documentCacheService.find(invoice, key, type)
+                            .map(file -> Uni.createFrom().item(file))
+                            // Fetch related entities and render into the cache on the document worker pool
+                            .orElseGet(() -> fetchInvoiceWithRelations(invoice)
+                                    .chain(inv -> documentWorkerPool.submit(
+                                            () -> documentCacheService.store(inv, key, type, out -> renderDocument(inv, type, out)))));
+
+                    String filename = type == DocumentType.PDF
+                            ? "faktura-" + invoice.invoiceNumber + ".pdf"
+                            : "efaktura-" + invoice.invoiceNumber + ".xml";
+                    return document
+                            .map(file -> Response.ok(file)
+                                    .tag(etag)
+                                    .header("Cache-Control", "private, no-cache")
+                                    .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
+                                    .build())
+                            .onFailure(RejectedExecutionException.class).recoverWithItem(e -> Response
+                                    .status(Response.Status.SERVICE_UNAVAILABLE)
+                                    .header("Retry-After", "1")
+                                    .entity("{\"error\": \"Too many documents being generated, try again shortly\"}")
+                                    .type(MediaType.APPLICATION_JSON)
+                                    .build())
+                            .onFailure().recoverWithItem(e -> Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                                    .entity("{\"error\": \"Failed to generate " + (type == DocumentType.PDF ? "PDF" : "eFaktura")
+                                            + ": " + e.getMessage() + "\"}")
+                                    .type(MediaType.APPLICATION_JSON)
+                                    .build());
                 });
     }
 
+    private void renderDocument(Invoice invoice, DocumentType type, OutputStream out) {
+        if (type == DocumentType.PDF) {
+            invoicePdfService.generatePdf(invoice, out);
+        } else {
+            eFakturaService.writeEHF(invoice, out);
+        }
+    }
+
     /**
      * Fetch invoice with all related entities needed for document generation
      */
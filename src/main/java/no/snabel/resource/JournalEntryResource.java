@@ -0,0 +1,73 @@
+package no.snabel.resource;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import no.snabel.dto.JournalEntryRequest;
+import no.snabel.dto.PostedJournalEntry;
+import no.snabel.model.JournalEntry;
+import no.snabel.security.RequiresScope;
+import no.snabel.security.Scope;
+import no.snabel.service.JournalPostingService;
+
+import java.util.List;
+import java.util.Map;
+
+@Path("/api/journal-entries")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+@RolesAllowed({"USER", "ADMIN", "ACCOUNTANT", "CLIENT"})
+public class JournalEntryResource extends SecureResource {
+
+    @Inject
+    JournalPostingService postingService;
+
+    @GET
+    @Path("/{id}")
+    @RequiresScope(Scope.READ_JOURNAL_ENTRIES)
+    public Uni<Response> getJournalEntry(@PathParam("id") Long id) {
+        Long customerId = getCustomerId();
+        return JournalEntry.<JournalEntry>find(
+                        "from JournalEntry e left join fetch e.lines where e.id = ?1 and e.customer.id = ?2", id, customerId)
+                .firstResult()
+                .map(entry -> entry == null
+                    ? Response.status(Response.Status.NOT_FOUND).build()
+                    : Response.ok(entry).build());
+    }
+
+    /**
+     * Post a single voucher
+     */
+    @POST
+    @RolesAllowed({"ADMIN", "ACCOUNTANT"})
+    public Uni<Response> postJournalEntry(JournalEntryRequest request) {
+        return post(request != null ? List.of(request) : List.of())
+                .map(posted -> Response.status(Response.Status.CREATED).entity(posted.get(0)).build())
+                .onFailure(IllegalArgumentException.class).recoverWithItem(this::badRequest);
+    }
+
+    /**
+     * Post many vouchers at once, e.g. from an import. Either all are posted or none.
+     */
+    @POST
+    @Path("/batch")
+    @RolesAllowed({"ADMIN", "ACCOUNTANT"})
+    public Uni<Response> postJournalEntries(List<JournalEntryRequest> requests) {
+        return post(requests != null ? requests : List.of())
+                .map(posted -> Response.status(Response.Status.CREATED).entity(posted).build())
+                .onFailure(IllegalArgumentException.class).recoverWithItem(this::badRequest);
+    }
+
+    private Uni<List<PostedJournalEntry>> post(List<JournalEntryRequest> entries) {
+        return postingService.post(getCustomerId(), getUserId(), entries);
+    }
+
+    private Response badRequest(Throwable error) {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity(Map.of("error", error.getMessage()))
+                .build();
+    }
+}
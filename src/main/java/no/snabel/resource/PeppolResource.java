@@ -0,0 +1,38 @@
+package no.snabel.resource;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import no.snabel.service.PeppolAccessPointService;
+import no.snabel.service.PeppolEndpointCache;
+
+@Path("/api/peppol")
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed({"ADMIN"})
+public class PeppolResource extends SecureResource {
+
+    @Inject
+    PeppolEndpointCache endpointCache;
+
+    /**
+     * Forget the cached access point of a receiver, e.g. 0192:987654321, so the next invoice looks it up again
+     */
+    @DELETE
+    @Path("/endpoints/{participantId}")
+    public Response invalidateEndpoint(@PathParam("participantId") String participantId) {
+        endpointCache.invalidate(PeppolAccessPointService.parseParticipantId(participantId, null));
+        return Response.noContent().build();
+    }
+
+    /**
+     * Forget all cached receiver access points
+     */
+    @DELETE
+    @Path("/endpoints")
+    public Response invalidateAllEndpoints() {
+        endpointCache.invalidateAll();
+        return Response.noContent().build();
+    }
+}
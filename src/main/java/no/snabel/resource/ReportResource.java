@@ -0,0 +1,122 @@
+package no.snabel.resource;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import no.snabel.security.RequiresScope;
+import no.snabel.security.Scope;
+import no.snabel.service.GeneralLedgerService;
+import no.snabel.service.GeneralLedgerWriter.Format;
+import no.snabel.service.PeriodBalanceService;
+import org.jboss.resteasy.reactive.RestMulti;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+@Path("/api/reports")
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed({"USER", "ADMIN", "ACCOUNTANT", "CLIENT"})
+public class ReportResource extends SecureResource {
+
+    @Inject
+    PeriodBalanceService periodBalances;
+
+    @Inject
+    GeneralLedgerService generalLedgerService;
+
+    /**
+     * Balance of every account with activity, as of the end of the given date (default today)
+     */
+    @GET
+    @Path("/trial-balance")
+    @RequiresScope(Scope.READ_REPORTS)
+    public Uni<Response> getTrialBalance(@QueryParam("asOf") String asOf) {
+        LocalDate date;
+        try {
+            date = asOf == null || asOf.isEmpty() ? LocalDate.now() : LocalDate.parse(asOf);
+        } catch (DateTimeParseException e) {
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"asOf must be a date (YYYY-MM-DD)\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build());
+        }
+        return periodBalances.trialBalance(getCustomerId(), date)
+                .map(trialBalance -> Response.ok(trialBalance).build());
+    }
+
+    /**
+     * Recompute the customer's balance snapshots from the ledger
+     */
+    @POST
+    @Path("/trial-balance/rebuild")
+    @RolesAllowed({"ADMIN"})
+    public Uni<Response> rebuildSnapshots() {
+        return periodBalances.rebuild(getCustomerId())
+                .map(count -> Response.noContent().build());
+    }
+
+    /**
+     * General ledger with running balance per account as CSV.
+     * The period defaults to the start of the year up to today.
+     */
+    @GET
+    @Path("/general-ledger")
+    @Produces("text/csv")
+    @RequiresScope(Scope.READ_REPORTS)
+    public Multi<byte[]> getGeneralLedgerCsv(@QueryParam("from") String from,
+                                             @QueryParam("to") String to,
+                                             @QueryParam("account") String account) {
+        LedgerPeriod period = LedgerPeriod.parse(from, to);
+        return RestMulti.fromMultiData(generalLedger(period, account, Format.CSV))
+                .header("Content-Disposition",
+                        "attachment; filename=\"hovedbok-" + period.from() + "-" + period.to() + ".csv\"")
+                .build();
+    }
+
+    /**
+     * The general ledger as NDJSON, one line per object
+     */
+    @GET
+    @Path("/general-ledger")
+    @Produces("application/x-ndjson")
+    @RequiresScope(Scope.READ_REPORTS)
+    public Multi<byte[]> getGeneralLedgerNdjson(@QueryParam("from") String from,
+                                                @QueryParam("to") String to,
+                                                @QueryParam("account") String account) {
+        return generalLedger(LedgerPeriod.parse(from, to), account, Format.NDJSON);
+    }
+
+    private Multi<byte[]> generalLedger(LedgerPeriod period, String account, Format format) {
+        return generalLedgerService.stream(getCustomerId(), period.from(), period.to(),
+                account == null || account.isEmpty() ? null : account, format);
+    }
+
+    private static BadRequestException badRequest(String message) {
+        return new BadRequestException(Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\": \"" + message + "\"}")
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+    }
+
+    private record LedgerPeriod(LocalDate from, LocalDate to) {
+
+        static LedgerPeriod parse(String from, String to) {
+            LedgerPeriod period;
+            try {
+                LocalDate toDate = to == null || to.isEmpty() ? LocalDate.now() : LocalDate.parse(to);
+                LocalDate fromDate = from == null || from.isEmpty() ? toDate.withDayOfYear(1) : LocalDate.parse(from);
+                period = new LedgerPeriod(fromDate, toDate);
+            } catch (DateTimeParseException e) {
+                throw badRequest("from and to must be dates (YYYY-MM-DD)");
+            }
+            if (period.from().isAfter(period.to())) {
+                throw badRequest("from must not be after to");
+            }
+            return period;
+        }
+    }
+}
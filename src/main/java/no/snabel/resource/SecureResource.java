@@ -1,40 +1,31 @@
 package no.snabel.resource;
 
 import jakarta.inject.Inject;
-import org.eclipse.microprofile.jwt.JsonWebToken;
+import no.snabel.security.Scope;
+import no.snabel.security.TenantContext;
 
 public abstract class SecureResource {
 
     @Inject
-    JsonWebToken jwt;
+    TenantContext tenant;
 
     protected Long getCustomerId() {
-        Object claim = jwt.getClaim("customerId");
-        if (claim instanceof Number) {
-            return ((Number) claim).longValue();
-        }
-        if (claim != null) {
-            return Long.valueOf(claim.toString());
-        }
-        return null;
+        return tenant.customerId();
     }
 
     protected Long getUserId() {
-        Object claim = jwt.getClaim("userId");
-        if (claim instanceof Number) {
-            return ((Number) claim).longValue();
-        }
-        if (claim != null) {
-            return Long.valueOf(claim.toString());
-        }
-        return null;
+        return tenant.userId();
     }
 
     protected String getRole() {
-        return jwt.getClaim("role");
+        return tenant.role();
     }
 
     protected String getUsername() {
-        return jwt.getName();
+        return tenant.username();
+    }
+
+    protected boolean hasScope(Scope scope) {
+        return tenant.hasScope(scope);
     }
 }
@@ -0,0 +1,74 @@
+package no.snabel.resource;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.Response;
+import no.snabel.security.RequiresScope;
+import no.snabel.security.Scope;
+import no.snabel.service.StandardAccountService;
+import no.snabel.service.StandardChart;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The NS 4102 standard chart of accounts, read-only and served from memory.
+ * Every response carries the chart version as a strong ETag, so clients revalidate with 304.
+ */
+@Path("/api/standard-accounts")
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed({"USER", "ADMIN", "ACCOUNTANT", "CLIENT"})
+public class StandardAccountResource extends SecureResource {
+
+    @Inject
+    StandardAccountService standardAccountService;
+
+    @GET
+    @RequiresScope(Scope.READ_ACCOUNTS)
+    public Uni<Response> listStandardAccounts(@QueryParam("class") String accountClass,
+                                              @QueryParam("type") String accountType,
+                                              @Context Request request) {
+        return standardAccountService.chart().map(chart -> cached(chart, request, () -> {
+            if (accountClass == null && accountType == null) {
+                return chart.json();
+            }
+            List<StandardChart.Account> accounts = accountClass != null ? chart.byClass(accountClass) : chart.byType(accountType);
+            if (accountClass != null && accountType != null) {
+                accounts = accounts.stream().filter(account -> accountType.equals(account.accountType())).toList();
+            }
+            return accounts;
+        }));
+    }
+
+    @GET
+    @Path("/{accountNumber}")
+    @RequiresScope(Scope.READ_ACCOUNTS)
+    public Uni<Response> getStandardAccount(@PathParam("accountNumber") String accountNumber,
+                                            @Context Request request) {
+        return standardAccountService.chart().map(chart -> {
+            StandardChart.Account account = chart.byNumber(accountNumber);
+            if (account == null) {
+                return Response.status(Response.Status.NOT_FOUND).build();
+            }
+            return cached(chart, request, () -> account);
+        });
+    }
+
+    private static Response cached(StandardChart chart, Request request, Supplier<Object> entity) {
+        EntityTag etag = new EntityTag(chart.version());
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.header("Cache-Control", "private, no-cache").build();
+        }
+        return Response.ok(entity.get())
+                .tag(etag)
+                .header("Cache-Control", "private, no-cache")
+                .build();
+    }
+}
@@ -0,0 +1,20 @@
+package no.snabel.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Scopes an API client token must have to call the endpoint; all of them are required.
+ *
+ * Placed on a resource method, or on the resource class for all its methods. Only client tokens
+ * are checked, users are authorized by role alone. A client calling an endpoint that declares no
+ * scopes is refused, so opening an endpoint to the CLIENT role takes a deliberate annotation.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface RequiresScope {
+
+    Scope[] value();
+}
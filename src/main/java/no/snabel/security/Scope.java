@@ -0,0 +1,110 @@
+package no.snabel.security;
+
+/**
+ * Scopes an API client can be granted, as written in api_clients.scopes, e.g.
+ * "read:invoices,write:invoices".
+ *
+ * A set of scopes is held as a bitmask with one bit per scope, so checking a scope is a single
+ * AND. Scope names this version does not know are ignored. Client tokens carry the bitmask, so
+ * the bits must stay stable: add new scopes at the end and never reorder or remove one.
+ */
+public enum Scope {
+    READ_ACCOUNTS("read:accounts"),
+    WRITE_ACCOUNTS("write:accounts"),
+    READ_INVOICES("read:invoices"),
+    WRITE_INVOICES("write:invoices"),
+    READ_JOURNAL_ENTRIES("read:journal-entries"),
+    WRITE_JOURNAL_ENTRIES("write:journal-entries"),
+    READ_REPORTS("read:reports");
+
+    private static final Scope[] SCOPES = values();
+
+    private final String value;
+    private final long bit;
+
+    Scope(String value) {
+        this.value = value;
+        this.bit = 1L << ordinal();
+    }
+
+    /**
+     * Name as granted to clients
+     */
+    public String value() {
+        return value;
+    }
+
+    public long bit() {
+        return bit;
+    }
+
+    /**
+     * Whether the bitmask includes this scope
+     */
+    public boolean in(long scopes) {
+        return (scopes & bit) != 0;
+    }
+
+    /**
+     * Bitmask of all the given scopes
+     */
+    public static long mask(Scope... scopes) {
+        long mask = 0;
+        for (Scope scope : scopes) {
+            mask |= scope.bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Names of the scopes in the bitmask, space separated
+     */
+    public static String names(long scopes) {
+        StringBuilder names = new StringBuilder();
+        for (Scope scope : SCOPES) {
+            if (scope.in(scopes)) {
+                if (!names.isEmpty()) {
+                    names.append(' ');
+                }
+                names.append(scope.value);
+            }
+        }
+        return names.toString();
+    }
+
+    /**
+     * Bitmask of the scopes in a comma or space separated list
+     */
+    public static long parse(String scopes) {
+        if (scopes == null) {
+            return 0;
+        }
+        long mask = 0;
+        int start = 0;
+        int length = scopes.length();
+        while (start < length) {
+            int end = start;
+            while (end < length && !isSeparator(scopes.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                mask |= bitOf(scopes, start, end);
+            }
+            start = end + 1;
+        }
+        return mask;
+    }
+
+    private static long bitOf(String scopes, int start, int end) {
+        for (Scope scope : SCOPES) {
+            if (scope.value.length() == end - start && scopes.startsWith(scope.value, start)) {
+                return scope.bit;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ',' || Character.isWhitespace(c);
+    }
+}
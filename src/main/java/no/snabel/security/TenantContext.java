@@ -0,0 +1,84 @@
+package no.snabel.security;
+
+import jakarta.enterprise.context.RequestScoped;
+
+/**
+ * Who the current request is made for: customer, user, role and client scopes, read from the
+ * JWT once per request by {@link TenantContextFilter}. Client tokens carry their scopes as the
+ * bitmask compiled when the token was issued (scopeMask); the scopes claim is only parsed for
+ * tokens without one.
+ *
+ * Resources read these fields instead of looking up and converting the token's claims on every
+ * call. The context is filled once and cannot be changed afterwards. Values are null (and the
+ * scopes empty) for unauthenticated requests and for claims the token does not carry, e.g.
+ * userId in client tokens and scopes in user tokens.
+ */
+@RequestScoped
+public class TenantContext {
+
+    private boolean populated;
+    private Long customerId;
+    private Long userId;
+    private String role;
+    private String username;
+    private boolean client;
+    private long scopes;
+
+    void populate(Object customerId, Object userId, String role, String username, String tokenType,
+                  Object scopeMask, String scopes) {
+        if (populated) {
+            throw new IllegalStateException("Tenant context is already set for this request");
+        }
+        this.customerId = toLong(customerId);
+        this.userId = toLong(userId);
+        this.role = role;
+        this.username = username;
+        this.client = "client".equals(tokenType);
+        this.scopes = scopeMask != null ? toLong(scopeMask) : Scope.parse(scopes);
+        this.populated = true;
+    }
+
+    public Long customerId() {
+        return customerId;
+    }
+
+    public Long userId() {
+        return userId;
+    }
+
+    public String role() {
+        return role;
+    }
+
+    public String username() {
+        return username;
+    }
+
+    /**
+     * Whether the request is made with an API client token
+     */
+    public boolean isClient() {
+        return client;
+    }
+
+    /**
+     * Bitmask of the client's scopes, see {@link Scope}
+     */
+    public long scopes() {
+        return scopes;
+    }
+
+    public boolean hasScope(Scope scope) {
+        return scope.in(scopes);
+    }
+
+    static Long toLong(Object claim) {
+        if (claim instanceof Number) {
+            return ((Number) claim).longValue();
+        }
+        if (claim != null) {
+            return Long.valueOf(claim.toString());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package no.snabel.security;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fills the {@link TenantContext} from the request's JWT before the resource method runs, and
+ * refuses API client tokens lacking the scopes the method declares with {@link RequiresScope}.
+ *
+ * The scopes an endpoint requires are looked up once per method and kept as a bitmask, so the
+ * check per request is one AND against the token's compiled scopes. A refused client gets 403
+ * with error insufficient_scope and a WWW-Authenticate header naming the scopes needed.
+ */
+public class TenantContextFilter {
+
+    @Inject
+    JsonWebToken jwt;
+
+    @Inject
+    TenantContext tenant;
+
+    private final Map<Method, RequiredScopes> requiredScopes = new ConcurrentHashMap<>();
+
+    @ServerRequestFilter
+    public Response populateTenant(ResourceInfo resourceInfo) {
+        tenant.populate(
+                jwt.getClaim("customerId"),
+                jwt.getClaim("userId"),
+                jwt.getClaim("role"),
+                jwt.getName(),
+                jwt.getClaim("tokenType"),
+                jwt.getClaim("scopeMask"),
+                jwt.getClaim("scopes"));
+
+        Method method = resourceInfo.getResourceMethod();
+        if (!tenant.isClient() || method == null) {
+            return null;
+        }
+        RequiredScopes required = requiredScopes.computeIfAbsent(method,
+                m -> RequiredScopes.of(resourceInfo.getResourceClass(), m));
+        if ((tenant.scopes() & required.mask()) == required.mask()) {
+            return null;
+        }
+        return Response.status(Response.Status.FORBIDDEN)
+                .header("WWW-Authenticate", required.challenge())
+                .entity(Map.of("error", "insufficient_scope"))
+                .build();
+    }
+
+    /**
+     * Scopes a resource method requires, from its own annotation or else its class's
+     */
+    record RequiredScopes(long mask, String challenge) {
+
+        /**
+         * Required for methods without {@link RequiresScope}: more bits than any client can hold
+         */
+        static final long UNDECLARED = -1L;
+
+        static RequiredScopes of(Class<?> resourceClass, Method method) {
+            RequiresScope annotation = method.getAnnotation(RequiresScope.class);
+            if (annotation == null && resourceClass != null) {
+                annotation = resourceClass.getAnnotation(RequiresScope.class);
+            }
+            if (annotation == null) {
+                return new RequiredScopes(UNDECLARED, "Bearer error=\"insufficient_scope\"");
+            }
+            long mask = Scope.mask(annotation.value());
+            return new RequiredScopes(mask,
+                    "Bearer error=\"insufficient_scope\", scope=\"" + Scope.names(mask) + "\"");
+        }
+    }
+}
@@ -1,15 +1,37 @@
 package no.snabel.security;
 
-import io.smallrye.jwt.build.Jwt;
+import io.smallrye.jwt.util.KeyUtils;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import no.snabel.util.JsonText;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import java.time.Duration;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Issues the RS256 signed JWTs for users and API clients.
+ *
+ * Tokens carry the same claims the SmallRye JWT builder would produce, but are put together
+ * directly: the signing key is read from {@code smallrye.jwt.sign.key.location} once, on the
+ * first token, the header and the claims that only depend on configuration or role are
+ * serialized up front, and each thread signs with its own initialized {@link Signature}.
+ */
 @ApplicationScoped
 public class TokenService {
 
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private static final String HEADER = BASE64URL.encodeToString(
+            "{\"typ\":\"JWT\",\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8));
+
     @ConfigProperty(name = "snabel.jwt.duration.web", defaultValue = "86400")
     Long webTokenDuration;
 
@@ -22,31 +44,71 @@ public class TokenService {
     @ConfigProperty(name = "mp.jwt.verify.issuer", defaultValue = "https://snabel.no")
     String issuer;
 
+    @ConfigProperty(name = "smallrye.jwt.sign.key.location", defaultValue = "/privateKey.pem")
+    String keyLocation;
+
+    private final Map<String, String> roleClaims = new ConcurrentHashMap<>();
+    private String issuerClaim;
+    private volatile PrivateKey signingKey;
+    private ThreadLocal<Signature> signatures;
+
+    public TokenService() {
+    }
+
+    /**
+     * Token service signing with the given key, for use outside CDI
+     */
+    public TokenService(String issuer, long webTokenDuration, long appTokenDuration, long clientTokenDuration,
+                        PrivateKey signingKey) {
+        this.issuer = issuer;
+        this.webTokenDuration = webTokenDuration;
+        this.appTokenDuration = appTokenDuration;
+        this.clientTokenDuration = clientTokenDuration;
+        this.signingKey = signingKey;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        StringBuilder claim = new StringBuilder("{\"iss\":");
+        JsonText.append(claim, issuer);
+        issuerClaim = claim.append(",\"upn\":").toString();
+        signatures = ThreadLocal.withInitial(() -> {
+            try {
+                Signature signature = Signature.getInstance("SHA256withRSA");
+                signature.initSign(signingKey());
+                return signature;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Could not initialize JWT signing", e);
+            }
+        });
+    }
+
     public String generateToken(Long userId, String username, Long customerId, String role, String deviceType) {
         long duration = "app".equalsIgnoreCase(deviceType) ? appTokenDuration : webTokenDuration;
 
-        return Jwt.issuer(issuer)
-                .upn(username)
-                .claim("userId", userId)
-                .claim("customerId", customerId)
-                .claim("role", role)
-                .claim("deviceType", deviceType)
-                .claim("tokenType", "user")
-                .groups(Set.of(role))
-                .expiresIn(Duration.ofSeconds(duration))
-                .sign();
+        StringBuilder claims = new StringBuilder(320).append(issuerClaim);
+        JsonText.append(claims, username);
+        claims.append(",\"userId\":").append(userId)
+                .append(",\"customerId\":").append(customerId)
+                .append(roleClaims.computeIfAbsent(role, TokenService::roleClaims))
+                .append(",\"deviceType\":");
+        JsonText.append(claims, deviceType);
+        claims.append(",\"tokenType\":\"user\"");
+        return sign(claims, duration);
     }
 
     public String generateClientToken(String clientId, Long customerId, String scopes) {
-        return Jwt.issuer(issuer)
-                .upn(clientId)  // Use clientId as principal
-                .claim("clientId", clientId)
-                .claim("customerId", customerId)
-                .claim("scopes", scopes)
-                .claim("tokenType", "client")
-                .groups(Set.of("CLIENT"))  // Special group for client tokens
-                .expiresIn(Duration.ofSeconds(clientTokenDuration))
-                .sign();
+        StringBuilder claims = new StringBuilder(320).append(issuerClaim);
+        JsonText.append(claims, clientId);  // Use clientId as principal
+        claims.append(",\"clientId\":");
+        JsonText.append(claims, clientId);
+        claims.append(",\"customerId\":").append(customerId)
+                .append(",\"scopes\":");
+        JsonText.append(claims, scopes);
+        claims.append(",\"scopeMask\":").append(Scope.parse(scopes));  // Checked per request, see TenantContextFilter
+        claims.append(",\"tokenType\":\"client\",\"groups\":[\"CLIENT\"]");  // Special group for client tokens
+        return sign(claims, clientTokenDuration);
     }
 
     public Long getTokenDuration(String deviceType) {
@@ -56,4 +118,49 @@ public class TokenService {
     public Long getClientTokenDuration() {
         return clientTokenDuration;
     }
+
+    /**
+     * Add the time claims and a token id, and sign
+     */
+    private String sign(StringBuilder claims, long duration) {
+        long now = System.currentTimeMillis() / 1000;
+        claims.append(",\"iat\":").append(now)
+                .append(",\"exp\":").append(now + duration)
+                .append(",\"jti\":\"").append(UUID.randomUUID()).append("\"}");
+
+        String content = HEADER + '.' + BASE64URL.encodeToString(claims.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            Signature signature = signatures.get();
+            signature.update(content.getBytes(StandardCharsets.US_ASCII));
+            return content + '.' + BASE64URL.encodeToString(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign JWT", e);
+        }
+    }
+
+    private PrivateKey signingKey() {
+        PrivateKey key = signingKey;
+        if (key == null) {
+            synchronized (this) {
+                key = signingKey;
+                if (key == null) {
+                    try {
+                        key = KeyUtils.readPrivateKey(keyLocation);
+                    } catch (IOException | GeneralSecurityException e) {
+                        throw new IllegalStateException("Could not read the JWT signing key from " + keyLocation, e);
+                    }
+                    signingKey = key;
+                }
+            }
+        }
+        return key;
+    }
+
+    private static String roleClaims(String role) {
+        StringBuilder claims = new StringBuilder(",\"role\":");
+        JsonText.append(claims, role);
+        claims.append(",\"groups\":[");
+        JsonText.append(claims, role);
+        return claims.append(']').toString();
+    }
 }
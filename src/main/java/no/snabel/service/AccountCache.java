@@ -0,0 +1,99 @@
+package no.snabel.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.model.Account;
+import no.snabel.util.Unis;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-customer cache of active accounts: the account list and the account number to id map.
+ *
+ * Both are bounded to {@code snabel.accounts.cache.max-size} customers and evicted by
+ * Caffeine's frequency-based policy, so busy customers stay cached. Account changes invalidate
+ * both ({@link #invalidate}); postings only change balances, so they invalidate just the list
+ * ({@link #invalidateBalances}). A load that is invalidated while in flight is not cached.
+ * Hits and misses are published as cache.gets{cache=account-lists} and
+ * cache.gets{cache=account-numbers}.
+ */
+@ApplicationScoped
+public class AccountCache {
+
+    private static final String NUMBERS_SQL = """
+            SELECT id, account_number FROM accounts WHERE customer_id = $1 AND active = true
+            """;
+
+    @Inject
+    Pool pool;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    AccountTreeService accountTree;
+
+    @ConfigProperty(name = "snabel.accounts.cache.max-size", defaultValue = "1000")
+    long maxSize;
+
+    private AsyncCache<Long, List<Account>> lists;
+    private AsyncCache<Long, Map<String, Long>> numbers;
+
+    @PostConstruct
+    void init() {
+        lists = Caffeine.newBuilder().maximumSize(maxSize).recordStats().buildAsync();
+        numbers = Caffeine.newBuilder().maximumSize(maxSize).recordStats().buildAsync();
+        CaffeineCacheMetrics.monitor(registry, lists, "account-lists");
+        CaffeineCacheMetrics.monitor(registry, numbers, "account-numbers");
+    }
+
+    /**
+     * The customer's active accounts. The entities are shared between requests and must not be modified.
+     */
+    public Uni<List<Account>> accounts(Long customerId) {
+        return Unis.cached(lists, customerId, key -> Account.<Account>find("customer.id = ?1 and active = true", key)
+                .list());
+    }
+
+    /**
+     * Ids of the customer's active accounts by account number
+     */
+    public Uni<Map<String, Long>> accountIds(Long customerId) {
+        return Unis.cached(numbers, customerId, key -> pool.preparedQuery(NUMBERS_SQL).execute(Tuple.of(key))
+                .map(rows -> {
+                    Map<String, Long> ids = new HashMap<>(rows.size() * 2);
+                    for (Row row : rows) {
+                        ids.put(row.getString("account_number"), row.getLong("id"));
+                    }
+                    return Map.copyOf(ids);
+                }));
+    }
+
+    /**
+     * Forget the customer's accounts after one has been created, changed or deactivated
+     */
+    public void invalidate(Long customerId) {
+        lists.synchronous().invalidate(customerId);
+        numbers.synchronous().invalidate(customerId);
+        accountTree.invalidate(customerId);
+    }
+
+    /**
+     * Forget the customer's account list after balances have changed
+     */
+    public void invalidateBalances(Long customerId) {
+        lists.synchronous().invalidate(customerId);
+    }
+}
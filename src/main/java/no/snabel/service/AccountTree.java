@@ -0,0 +1,181 @@
+package no.snabel.service;
+
+import no.snabel.dto.AccountTreeNode;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A customer's chart of accounts arranged by parent_account_id.
+ *
+ * Immutable once built, so one instance is shared by all requests until the accounts change.
+ * Accounts are kept in depth-first order, which lets {@link #rollUp} total every subtree in a
+ * single backwards pass: each account is added to its parent after all of its descendants have
+ * been added to it. An account whose parent is missing, or whose parent chain loops back on
+ * itself, is placed at the top level.
+ */
+public final class AccountTree {
+
+    private final Account[] accounts;
+    private final int[] parent;
+    private final int[][] children;
+    private final int[] roots;
+
+    private AccountTree(Account[] accounts, int[] parent, int[][] children, int[] roots) {
+        this.accounts = accounts;
+        this.parent = parent;
+        this.children = children;
+        this.roots = roots;
+    }
+
+    /**
+     * Arrange the accounts; siblings keep the order they are given in
+     */
+    public static AccountTree build(List<Account> chart) {
+        int count = chart.size();
+        Map<Long, Integer> position = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            position.put(chart.get(i).id(), i);
+        }
+
+        int[] parentOf = new int[count];
+        for (int i = 0; i < count; i++) {
+            Long parentId = chart.get(i).parentId();
+            Integer p = parentId != null ? position.get(parentId) : null;
+            parentOf[i] = p != null ? p : -1;
+        }
+        breakCycles(parentOf);
+
+        int[] childCount = new int[count];
+        for (int p : parentOf) {
+            if (p >= 0) {
+                childCount[p]++;
+            }
+        }
+        int[][] childrenOf = new int[count][];
+        for (int i = 0; i < count; i++) {
+            childrenOf[i] = new int[childCount[i]];
+        }
+        int[] filled = new int[count];
+        List<Integer> topLevel = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (parentOf[i] >= 0) {
+                childrenOf[parentOf[i]][filled[parentOf[i]]++] = i;
+            } else {
+                topLevel.add(i);
+            }
+        }
+
+        // Renumber in depth-first order so that descendants follow their ancestors
+        int[] order = new int[count];
+        int next = 0;
+        int[] stack = new int[count];
+        int top = 0;
+        for (int r = topLevel.size() - 1; r >= 0; r--) {
+            stack[top++] = topLevel.get(r);
+        }
+        while (top > 0) {
+            int node = stack[--top];
+            order[next++] = node;
+            for (int c = childrenOf[node].length - 1; c >= 0; c--) {
+                stack[top++] = childrenOf[node][c];
+            }
+        }
+        int[] renumbered = new int[count];
+        for (int i = 0; i < count; i++) {
+            renumbered[order[i]] = i;
+        }
+
+        Account[] accounts = new Account[count];
+        int[] parent = new int[count];
+        int[][] children = new int[count][];
+        for (int i = 0; i < count; i++) {
+            int old = order[i];
+            accounts[i] = chart.get(old);
+            parent[i] = parentOf[old] >= 0 ? renumbered[parentOf[old]] : -1;
+            children[i] = Arrays.stream(childrenOf[old]).map(c -> renumbered[c]).toArray();
+        }
+        int[] roots = topLevel.stream().mapToInt(r -> renumbered[r]).toArray();
+        return new AccountTree(accounts, parent, children, roots);
+    }
+
+    /**
+     * Subtree totals: each account's own balance plus the balances of all its descendants.
+     *
+     * @param balances Own balance per account id; accounts not in the map count as zero
+     * @return Totals in tree order, for {@link #toNodes}
+     */
+    public BigDecimal[] rollUp(Map<Long, BigDecimal> balances) {
+        BigDecimal[] totals = new BigDecimal[accounts.length];
+        for (int i = 0; i < accounts.length; i++) {
+            totals[i] = balances.getOrDefault(accounts[i].id(), BigDecimal.ZERO);
+        }
+        for (int i = accounts.length - 1; i >= 0; i--) {
+            if (parent[i] >= 0) {
+                totals[parent[i]] = totals[parent[i]].add(totals[i]);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * The tree as nested nodes
+     *
+     * @param balances Own balance per account id, or null to leave out balances
+     */
+    public List<AccountTreeNode> toNodes(Map<Long, BigDecimal> balances) {
+        BigDecimal[] totals = balances != null ? rollUp(balances) : null;
+        AccountTreeNode[] nodes = new AccountTreeNode[accounts.length];
+        for (int i = accounts.length - 1; i >= 0; i--) {
+            Account account = accounts[i];
+            List<AccountTreeNode> nested = new ArrayList<>(children[i].length);
+            for (int child : children[i]) {
+                nested.add(nodes[child]);
+            }
+            nodes[i] = new AccountTreeNode(account.id(), account.accountNumber(), account.accountName(),
+                    account.accountType(), account.active(),
+                    balances != null ? balances.getOrDefault(account.id(), BigDecimal.ZERO) : null,
+                    totals != null ? totals[i] : null,
+                    nested);
+        }
+        List<AccountTreeNode> result = new ArrayList<>(roots.length);
+        for (int root : roots) {
+            result.add(nodes[root]);
+        }
+        return result;
+    }
+
+    /**
+     * Detach one account on each parent loop, so that every chain ends at the top level
+     */
+    private static void breakCycles(int[] parentOf) {
+        // 0 = not seen, 1 = on the chain being walked, 2 = known to reach the top
+        byte[] state = new byte[parentOf.length];
+        for (int i = 0; i < parentOf.length; i++) {
+            int node = i;
+            while (node >= 0 && state[node] == 0) {
+                state[node] = 1;
+                int p = parentOf[node];
+                if (p >= 0 && state[p] == 1) {
+                    parentOf[node] = -1;
+                    break;
+                }
+                node = p;
+            }
+            for (node = i; node >= 0 && state[node] == 1; node = parentOf[node]) {
+                state[node] = 2;
+            }
+        }
+    }
+
+    /**
+     * The account fields the tree is built from
+     */
+    public record Account(Long id, Long parentId, String accountNumber, String accountName,
+                          String accountType, boolean active) {
+    }
+}
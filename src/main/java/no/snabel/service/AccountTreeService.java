@@ -0,0 +1,119 @@
+package no.snabel.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.dto.AccountTreeNode;
+import no.snabel.util.Unis;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The chart of accounts as a tree, with balances rolled up from the accounts below.
+ *
+ * The tree of each customer is built once from a single query and cached until one of the
+ * customer's accounts is created, changed or deactivated ({@link #invalidate}). Balances change
+ * with every posting and are not cached: a tree with balances costs one query for the current
+ * balances and one pass over the cached tree, however deep the hierarchy. Hits and misses are
+ * published as cache.gets{cache=account-trees}.
+ */
+@ApplicationScoped
+public class AccountTreeService {
+
+    private static final String TREE_SQL = """
+            SELECT id, parent_account_id, account_number, account_name, account_type, active
+            FROM accounts
+            WHERE customer_id = $1
+            ORDER BY account_number
+            """;
+
+    private static final String BALANCES_SQL = """
+            SELECT id, balance FROM accounts WHERE customer_id = $1
+            """;
+
+    @Inject
+    Pool pool;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "snabel.accounts.tree-cache.max-size", defaultValue = "1000")
+    long maxSize;
+
+    private AsyncCache<Long, AccountTree> trees;
+
+    @PostConstruct
+    void init() {
+        trees = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(registry, trees, "account-trees");
+    }
+
+    /**
+     * The customer's accounts as nested nodes, ordered by account number within each level
+     *
+     * @param withBalances Include own and rolled-up balances
+     */
+    public Uni<List<AccountTreeNode>> tree(Long customerId, boolean withBalances) {
+        if (!withBalances) {
+            return cached(customerId).map(tree -> tree.toNodes(null));
+        }
+        return Uni.combine().all()
+                .unis(cached(customerId), pool.preparedQuery(BALANCES_SQL).execute(Tuple.of(customerId)))
+                .with((tree, rows) -> {
+                    Map<Long, BigDecimal> balances = new HashMap<>(rows.size() * 2);
+                    for (Row row : rows) {
+                        BigDecimal balance = row.getBigDecimal("balance");
+                        balances.put(row.getLong("id"), balance != null ? balance : BigDecimal.ZERO);
+                    }
+                    return tree.toNodes(balances);
+                });
+    }
+
+    /**
+     * Drop the cached tree after the customer's accounts have changed
+     */
+    public void invalidate(Long customerId) {
+        trees.synchronous().invalidate(customerId);
+    }
+
+    /**
+     * The cached tree, loaded if missing
+     */
+    private Uni<AccountTree> cached(Long customerId) {
+        return Unis.cached(trees, customerId, this::load);
+    }
+
+    private Uni<AccountTree> load(Long customerId) {
+        return pool.preparedQuery(TREE_SQL).execute(Tuple.of(customerId))
+                .map(rows -> {
+                    List<AccountTree.Account> chart = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        Boolean active = row.getBoolean("active");
+                        chart.add(new AccountTree.Account(
+                                row.getLong("id"),
+                                row.getLong("parent_account_id"),
+                                row.getString("account_number"),
+                                row.getString("account_name"),
+                                row.getString("account_type"),
+                                active == null || active));
+                    }
+                    return AccountTree.build(chart);
+                });
+    }
+}
@@ -1,8 +1,6 @@
 package no.snabel.service;
 
-import io.quarkus.elytron.security.common.BcryptUtil;
-import io.quarkus.hibernate.reactive.panache.common.WithSession;
-import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -12,6 +10,7 @@ import no.snabel.dto.TokenRequest;
 import no.snabel.model.ApiClient;
 import no.snabel.model.User;
 import no.snabel.security.TokenService;
+import no.snabel.service.ClientCredentialCache.VerifiedClient;
 
 import java.time.LocalDateTime;
 
@@ -21,85 +20,139 @@ public class AuthService {
     @Inject
     TokenService tokenService;
 
-    @WithTransaction
+    @Inject
+    PasswordHasher passwordHasher;
+
+    @Inject
+    ClientCredentialCache clientCredentials;
+
+    @Inject
+    LastLoginRecorder lastLogins;
+
+    /**
+     * Log a user in. Only reads: the last login time is written later by the {@link LastLoginRecorder}.
+     * The user is read in a session of its own that is closed before the password is checked, so
+     * logins waiting for a bcrypt worker do not hold database connections.
+     */
     public Uni<LoginResponse> login(LoginRequest request) {
-        return User.findByUsername(request.username)
+        return Panache.withSession(() -> User.findByUsername(request.username)
+                        .map(user -> user == null ? null : new UserCredentials(user.id, user.username,
+                                user.customer.id, user.role, Boolean.TRUE.equals(user.active), user.passwordHash)))
                 .onItem().ifNull().failWith(() -> new SecurityException("Invalid username or password"))
                 .onItem().transformToUni(user -> {
-                    if (!user.active) {
+                    if (!user.active()) {
                         return Uni.createFrom().failure(new SecurityException("User account is not active"));
                     }
 
-                    if (!BcryptUtil.matches(request.password, user.passwordHash)) {
-                        return Uni.createFrom().failure(new SecurityException("Invalid username or password"));
-                    }
-
-                    String deviceType = request.deviceType != null ? request.deviceType : "web";
-                    String token = tokenService.generateToken(
-                            user.id,
-                            user.username,
-                            user.customer.id,
-                            user.role,
-                            deviceType
-                    );
-
-                    Long expiresIn = tokenService.getTokenDuration(deviceType);
-
-                    // Update last login
-                    user.lastLogin = LocalDateTime.now();
-                    return user.persistAndFlush()
-                            .map(u -> new LoginResponse(
-                                    token,
-                                    user.id,
-                                    user.username,
-                                    user.customer.id,
-                                    user.role,
-                                    expiresIn
-                            ));
+                    return passwordHasher.matches(request.password, user.passwordHash())
+                            .chain(matches -> {
+                                if (!matches) {
+                                    return Uni.createFrom().failure(new SecurityException("Invalid username or password"));
+                                }
+                                return Uni.createFrom().item(issueToken(user, request));
+                            });
                 });
     }
 
-    @WithTransaction
+    private LoginResponse issueToken(UserCredentials user, LoginRequest request) {
+        String deviceType = request.deviceType != null ? request.deviceType : "web";
+        String token = tokenService.generateToken(
+                user.id(),
+                user.username(),
+                user.customerId(),
+                user.role(),
+                deviceType
+        );
+
+        Long expiresIn = tokenService.getTokenDuration(deviceType);
+
+        lastLogins.record(user.id(), LocalDateTime.now());
+        return new LoginResponse(
+                token,
+                user.id(),
+                user.username(),
+                user.customerId(),
+                user.role(),
+                expiresIn
+        );
+    }
+
+    /**
+     * Save a new user. The password is hashed before the transaction starts.
+     */
     public Uni<User> registerUser(User user, String plainPassword) {
-        user.passwordHash = BcryptUtil.bcryptHash(plainPassword);
-        user.createdAt = LocalDateTime.now();
-        user.updatedAt = LocalDateTime.now();
-        return user.persistAndFlush();
+        return passwordHasher.hash(plainPassword)
+                .chain(hash -> Panache.withTransaction(() -> {
+                    user.passwordHash = hash;
+                    user.createdAt = LocalDateTime.now();
+                    user.updatedAt = LocalDateTime.now();
+                    return user.persistAndFlush();
+                }));
     }
 
-    @WithTransaction
+    /**
+     * Token for an API client. Secrets verified within the last few minutes are checked against
+     * the {@link ClientCredentialCache} instead of the database and bcrypt. Otherwise the client
+     * is read in a session that is closed before the secret is checked with bcrypt.
+     */
     public Uni<LoginResponse> clientCredentialsLogin(TokenRequest request) {
-        return ApiClient.<ApiClient>find("clientId = ?1 and active = true", request.clientId)
-                .firstResult()
+        VerifiedClient verified = clientCredentials.find(request.clientId, request.clientSecret);
+        if (verified != null) {
+            return Uni.createFrom().item(clientToken(verified.clientId(), verified.customerId(), verified.scopes()));
+        }
+
+        long version = clientCredentials.version();
+        return Panache.withSession(() -> ApiClient.<ApiClient>find("clientId = ?1 and active = true", request.clientId)
+                        .firstResult()
+                        .map(client -> client == null ? null : new ClientCredentials(client.clientId,
+                                client.clientSecretHash, client.customer.id, client.scopes, client.expiresAt)))
                 .onItem().ifNull().failWith(() -> new SecurityException("Invalid client credentials"))
-                .onItem().transformToUni(client -> {
-                    // Verify client secret
-                    if (!BcryptUtil.matches(request.clientSecret, client.clientSecretHash)) {
-                        return Uni.createFrom().failure(new SecurityException("Invalid client credentials"));
-                    }
+                .onItem().transformToUni(client -> passwordHasher.matches(request.clientSecret, client.secretHash())
+                        .chain(matches -> {
+                            // Verify client secret
+                            if (!matches) {
+                                return Uni.createFrom().failure(new SecurityException("Invalid client credentials"));
+                            }
 
-                    // Check expiration
-                    if (client.expiresAt != null && client.expiresAt.isBefore(LocalDateTime.now())) {
-                        return Uni.createFrom().failure(new SecurityException("Client credentials expired"));
-                    }
+                            // Check expiration
+                            if (client.expiresAt() != null && client.expiresAt().isBefore(LocalDateTime.now())) {
+                                return Uni.createFrom().failure(new SecurityException("Client credentials expired"));
+                            }
 
-                    // Generate client token
-                    String token = tokenService.generateClientToken(
-                            client.clientId,
-                            client.customer.id,
-                            client.scopes != null ? client.scopes : ""
-                    );
-
-                    Long expiresIn = tokenService.getClientTokenDuration();
-
-                    return Uni.createFrom().item(new LoginResponse(
-                            token,
-                            null,  // No userId for client tokens
-                            client.clientId,
-                            client.customer.id,
-                            "CLIENT",
-                            expiresIn
-                    ));
-                });
+                            String scopes = client.scopes() != null ? client.scopes() : "";
+                            clientCredentials.put(version, client.clientId(), request.clientSecret,
+                                    client.customerId(), scopes, client.expiresAt());
+                            return Uni.createFrom().item(clientToken(client.clientId(), client.customerId(), scopes));
+                        }));
+    }
+
+    private LoginResponse clientToken(String clientId, Long customerId, String scopes) {
+        // Generate client token
+        String token = tokenService.generateClientToken(clientId, customerId, scopes);
+
+        Long expiresIn = tokenService.getClientTokenDuration();
+
+        return new LoginResponse(
+                token,
+                null,  // No userId for client tokens
+                clientId,
+                customerId,
+                "CLIENT",
+                expiresIn
+        );
+    }
+
+    /**
+     * What a login needs from the user row, read before the session is closed
+     */
+    private record UserCredentials(Long id, String username, Long customerId, String role, boolean active,
+                                   String passwordHash) {
+    }
+
+    /**
+     * What a token request needs from the client row, read before the session is closed
+     */
+    private record ClientCredentials(String clientId, String secretHash, Long customerId, String scopes,
+                                     LocalDateTime expiresAt) {
     }
 }
@@ -0,0 +1,46 @@
+package no.snabel.service;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.quarkus.arc.Arc;
+import network.oxalis.api.lang.OxalisTransmissionException;
+import network.oxalis.api.lookup.LookupService;
+import network.oxalis.api.util.Type;
+import network.oxalis.vefa.peppol.common.model.Endpoint;
+import network.oxalis.vefa.peppol.common.model.Header;
+import no.snabel.service.PeppolEndpointCache.EndpointNotFoundException;
+
+/**
+ * Oxalis lookup service answering from the {@link PeppolEndpointCache}, with Oxalis' uncached
+ * SMP lookup behind it. Oxalis resolves every transmission's endpoint through this, so the
+ * configured TTLs, negative caching and invalidation apply without overriding the endpoint.
+ */
+@Singleton
+@Type("snabel")
+class CachedEndpointLookupService implements LookupService {
+
+    private final LookupService smp;
+    private final PeppolEndpointCache cache;
+
+    @Inject
+    CachedEndpointLookupService(@Named("default") LookupService smp) {
+        // Created by Oxalis' Guice injector, so the cache is taken from CDI
+        this(smp, Arc.container().instance(PeppolEndpointCache.class).get());
+    }
+
+    CachedEndpointLookupService(LookupService smp, PeppolEndpointCache cache) {
+        this.smp = smp;
+        this.cache = cache;
+    }
+
+    @Override
+    public Endpoint lookup(Header header) throws OxalisTransmissionException {
+        try {
+            return cache.resolve(header.getReceiver(), header.getDocumentType(), header.getProcess(),
+                    (receiver, documentType, process) -> smp.lookup(header));
+        } catch (EndpointNotFoundException e) {
+            throw new OxalisTransmissionException(e.getMessage(), e);
+        }
+    }
+}
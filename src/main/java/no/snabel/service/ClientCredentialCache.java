@@ -0,0 +1,136 @@
+package no.snabel.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived cache of API client credentials that passed bcrypt verification, so machine
+ * integrations asking for tokens again and again skip the database and the bcrypt check.
+ *
+ * Entries are keyed by client id and hold an HMAC-SHA256 of the verified secret, under a key
+ * generated at startup that never leaves the process; the plain secret is not kept. A repeat
+ * call matches only with the same secret, compared in constant time. Entries live for
+ * {@code snabel.auth.client-cache.ttl} and at most {@code snabel.auth.client-cache.max-size}
+ * are kept. Deactivating a client drops its entry at once; on other instances it stays usable
+ * for at most the TTL. Hits and misses are published as cache.gets{cache=client-credentials}.
+ */
+@ApplicationScoped
+public class ClientCredentialCache {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "snabel.auth.client-cache.ttl", defaultValue = "PT5M")
+    Duration ttl;
+
+    @ConfigProperty(name = "snabel.auth.client-cache.max-size", defaultValue = "10000")
+    long maxSize;
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private SecretKeySpec key;
+    private Cache<String, VerifiedClient> cache;
+
+    public ClientCredentialCache() {
+    }
+
+    ClientCredentialCache(MeterRegistry registry, Duration ttl, long maxSize) {
+        this.registry = registry;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        key = new SecretKeySpec(secret, "HmacSHA256");
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "client-credentials");
+    }
+
+    /**
+     * The client, if this secret was verified for it within the TTL and the client has not expired since
+     */
+    public VerifiedClient find(String clientId, String clientSecret) {
+        if (clientId == null || clientSecret == null) {
+            return null;
+        }
+        VerifiedClient client = cache.getIfPresent(clientId);
+        if (client == null || !MessageDigest.isEqual(client.secretDigest(), digest(clientSecret))) {
+            return null;
+        }
+        if (client.expiresAt() != null && client.expiresAt().isBefore(LocalDateTime.now())) {
+            cache.invalidate(clientId);
+            return null;
+        }
+        return client;
+    }
+
+    /**
+     * Marker to take before reading a client from the database and pass to {@link #put}
+     */
+    public long version() {
+        return invalidations.get();
+    }
+
+    /**
+     * Remember a successful verification, unless a client has been invalidated since {@code version}
+     * was taken: the client read may predate its deactivation.
+     */
+    public void put(long version, String clientId, String clientSecret, Long customerId, String scopes,
+                    LocalDateTime expiresAt) {
+        if (invalidations.get() != version) {
+            return;
+        }
+        cache.put(clientId, new VerifiedClient(clientId, digest(clientSecret), customerId, scopes, expiresAt));
+        if (invalidations.get() != version) {
+            cache.invalidate(clientId);
+        }
+    }
+
+    /**
+     * Forget a client, e.g. when it is deactivated
+     */
+    public void invalidate(String clientId) {
+        invalidations.incrementAndGet();
+        cache.invalidate(clientId);
+    }
+
+    private byte[] digest(String clientSecret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac.doFinal(clientSecret.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    /**
+     * What a token is issued from
+     */
+    public record VerifiedClient(String clientId, byte[] secretDigest, Long customerId, String scopes,
+                                 LocalDateTime expiresAt) {
+    }
+}
@@ -0,0 +1,141 @@
+package no.snabel.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import no.snabel.model.Invoice;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Filesystem store for rendered invoice documents (PDF and EHF XML).
+ *
+ * Documents are addressed by a SHA-256 key over the invoice id and the updatedAt
+ * timestamps of the invoice and its supplier, so any change to the invoice yields a
+ * new key and stale renderings are never served. The key doubles as a strong ETag.
+ * Files live in {@code {cache-dir}/{customerId}/{invoiceId}/{key}.{ext}} and are
+ * served from disk with sendfile, without being read into the heap.
+ */
+@ApplicationScoped
+public class DocumentCacheService {
+
+    private static final Logger LOG = Logger.getLogger(DocumentCacheService.class);
+
+    // Bump when the PDF layout or EHF mapping changes so existing files are re-rendered
+    private static final int RENDER_VERSION = 1;
+
+    public enum DocumentType {
+        PDF("pdf"),
+        EHF("xml");
+
+        final String extension;
+
+        DocumentType(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Renders a document into the given stream
+     */
+    @FunctionalInterface
+    public interface DocumentRenderer {
+        void render(OutputStream out) throws IOException;
+    }
+
+    @ConfigProperty(name = "snabel.documents.cache-dir", defaultValue = "data/documents")
+    String cacheDir;
+
+    public DocumentCacheService() {
+    }
+
+    DocumentCacheService(String cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Cache key and ETag value for a document. The invoice must have its supplier loaded.
+     */
+    public String key(Invoice invoice, DocumentType type) {
+        String source = RENDER_VERSION + "|" + type + "|" + invoice.id + "|" + invoice.updatedAt
+                + "|" + invoice.customer.id + "|" + invoice.customer.updatedAt;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * The stored document, if it has been rendered before
+     */
+    public Optional<Path> find(Invoice invoice, String key, DocumentType type) {
+        Path file = file(invoice, key, type);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Render a document into the store and return its file. The file is written under a
+     * temporary name and moved into place, so concurrent readers never see a partial
+     * document. Older renderings of the same invoice and type are removed.
+     */
+    public Path store(Invoice invoice, String key, DocumentType type, DocumentRenderer renderer) {
+        Path file = file(invoice, key, type);
+        try {
+            Path directory = Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                    renderer.render(out);
+                }
+                moveIntoPlace(temp, file);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            removeStale(directory, file, type);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store " + type + " for invoice " + invoice.id, e);
+        }
+    }
+
+    private Path file(Invoice invoice, String key, DocumentType type) {
+        return Paths.get(cacheDir, String.valueOf(invoice.customer.id), String.valueOf(invoice.id),
+                key + "." + type.extension);
+    }
+
+    private void moveIntoPlace(Path temp, Path file) throws IOException {
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void removeStale(Path directory, Path current, DocumentType type) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*." + type.extension)) {
+            for (Path file : files) {
+                if (!file.equals(current)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            LOG.debugf(e, "Failed to remove stale documents in %s", directory);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.util.BoundedWorkerPool;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Bounded worker pool for blocking document work: PDF rendering, EHF serialization
+ * and PEPPOL transmission. Keeps that work off the Vert.x event loop.
+ *
+ * At most {@code snabel.documents.workers} tasks run at once and up to
+ * {@code snabel.documents.queue-size} wait; beyond that new tasks fail with
+ * {@link RejectedExecutionException} instead of queueing without bound.
+ * Pool and queue depth are published as executor.* metrics tagged name=documents.
+ */
+@ApplicationScoped
+public class DocumentWorkerPool {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "snabel.documents.workers", defaultValue = "4")
+    int workers;
+
+    @ConfigProperty(name = "snabel.documents.queue-size", defaultValue = "64")
+    int queueSize;
+
+    private BoundedWorkerPool pool;
+
+    public DocumentWorkerPool() {
+    }
+
+    DocumentWorkerPool(MeterRegistry registry, int workers, int queueSize) {
+        this.registry = registry;
+        this.workers = workers;
+        this.queueSize = queueSize;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        pool = new BoundedWorkerPool(registry, "documents", workers, queueSize, "snabel.documents");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Run a blocking task on the pool, see {@link BoundedWorkerPool#submit}
+     */
+    public <T> Uni<T> submit(Supplier<T> task) {
+        return pool.submit(task);
+    }
+
+    /**
+     * Tasks waiting for a free worker
+     */
+    public int queueDepth() {
+        return pool.queueDepth();
+    }
+}
@@ -1,14 +1,20 @@
 package no.snabel.service;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import no.snabel.format.ehf.ubl.InvoiceType;
 import no.snabel.format.ehf.ubl.cac.*;
 import no.snabel.format.ehf.ubl.types.*;
+import no.snabel.format.ehf.ubl.writer.InvoiceXmlWriter;
+import no.snabel.format.ehf.ubl.writer.StreamingUBLWriter;
 import no.snabel.format.ehf.ubl.writer.UBLWriter;
 import no.snabel.model.Customer;
 import no.snabel.model.Invoice;
 import no.snabel.model.InvoiceLine;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.HashMap;
@@ -22,14 +28,41 @@ import java.util.Map;
 @ApplicationScoped
 public class EHFInvoiceService {
 
-    private final UBLWriter ublWriter;
+    private static final Logger LOG = Logger.getLogger(EHFInvoiceService.class);
+
+    /**
+     * XML writer implementation: "streaming" writes directly to the output,
+     * "dom" builds a DOM tree and serializes it with a Transformer.
+     * Both produce identical bytes; "dom" is kept as a fallback.
+     */
+    @ConfigProperty(name = "snabel.ehf.writer", defaultValue = "streaming")
+    String writerType;
+
+    // Both writers are thread-safe, so one instance serves all concurrent requests
+    private InvoiceXmlWriter ublWriter;
 
     public EHFInvoiceService() {
-        try {
-            this.ublWriter = new UBLWriter();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize UBLWriter", e);
+        this(new StreamingUBLWriter());
+    }
+
+    EHFInvoiceService(InvoiceXmlWriter ublWriter) {
+        this.ublWriter = ublWriter;
+    }
+
+    @PostConstruct
+    void selectWriter() {
+        switch (writerType) {
+            case "streaming" -> ublWriter = new StreamingUBLWriter();
+            case "dom" -> {
+                try {
+                    ublWriter = new UBLWriter();
+                } catch (Exception e) {
+                    throw new RuntimeException("Failed to initialize UBLWriter", e);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown snabel.ehf.writer: " + writerType);
         }
+        LOG.infof("Using %s EHF XML writer", writerType);
     }
 
     /**
@@ -37,49 +70,67 @@ public class EHFInvoiceService {
      */
     public String generateEHF(Invoice invoice) {
         try {
-            InvoiceType ublInvoice = new InvoiceType();
+            return ublWriter.writeToString(toUblInvoice(invoice));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to generate EHF XML", e);
+        }
+    }
 
-            // Core metadata
-            setInvoiceMetadata(ublInvoice, invoice);
+    /**
+     * Write EHF 3.0 XML for an invoice as UTF-8 directly to the given stream.
+     * The stream is flushed but not closed.
+     */
+    public void writeEHF(Invoice invoice, OutputStream out) {
+        try {
+            ublWriter.write(toUblInvoice(invoice), out);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to generate EHF XML", e);
+        }
+    }
 
-            // Buyer reference or Order reference (at least one is mandatory per PEPPOL-EN16931-R003)
-            setBuyerReferenceOrOrderReference(ublInvoice, invoice);
+    /**
+     * Map an invoice and its lines to the UBL object model
+     */
+    InvoiceType toUblInvoice(Invoice invoice) {
+        InvoiceType ublInvoice = new InvoiceType();
 
-            // Contract reference (if available)
-            if (invoice.contractReference != null && !invoice.contractReference.isEmpty()) {
-                DocumentReferenceType contractRef = new DocumentReferenceType(invoice.contractReference);
-                ublInvoice.setContractDocumentReference(contractRef);
-            }
+        // Core metadata
+        setInvoiceMetadata(ublInvoice, invoice);
 
-            // Parties
-            ublInvoice.setAccountingSupplierParty(createSupplierParty(invoice.customer));
-            ublInvoice.setAccountingCustomerParty(createCustomerParty(invoice));
+        // Buyer reference or Order reference (at least one is mandatory per PEPPOL-EN16931-R003)
+        setBuyerReferenceOrOrderReference(ublInvoice, invoice);
 
-            // Payment
-            ublInvoice.getPaymentMeans().add(createPaymentMeans(invoice));
+        // Contract reference (if available)
+        if (invoice.contractReference != null && !invoice.contractReference.isEmpty()) {
+            DocumentReferenceType contractRef = new DocumentReferenceType(invoice.contractReference);
+            ublInvoice.setContractDocumentReference(contractRef);
+        }
 
-            // Payment terms
-            if (invoice.paymentTerms != null && !invoice.paymentTerms.isEmpty()) {
-                ublInvoice.setPaymentTerms(new TextType(invoice.paymentTerms));
-            }
+        // Parties
+        ublInvoice.setAccountingSupplierParty(createSupplierParty(invoice.customer));
+        ublInvoice.setAccountingCustomerParty(createCustomerParty(invoice));
 
-            // Tax total
-            ublInvoice.getTaxTotals().add(createTaxTotal(invoice));
+        // Payment
+        ublInvoice.getPaymentMeans().add(createPaymentMeans(invoice));
 
-            // Legal monetary total
-            ublInvoice.setLegalMonetaryTotal(createLegalMonetaryTotal(invoice));
+        // Payment terms
+        if (invoice.paymentTerms != null && !invoice.paymentTerms.isEmpty()) {
+            ublInvoice.setPaymentTerms(new TextType(invoice.paymentTerms));
+        }
 
-            // Invoice lines
-            int lineNumber = 1;
-            for (InvoiceLine line : invoice.lines) {
-                ublInvoice.getInvoiceLines().add(createInvoiceLine(line, lineNumber++, invoice.currency));
-            }
+        // Tax total
+        ublInvoice.getTaxTotals().add(createTaxTotal(invoice));
 
-            return ublWriter.writeToString(ublInvoice);
+        // Legal monetary total
+        ublInvoice.setLegalMonetaryTotal(createLegalMonetaryTotal(invoice));
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate EHF XML", e);
+        // Invoice lines
+        int lineNumber = 1;
+        for (InvoiceLine line : invoice.lines) {
+            ublInvoice.getInvoiceLines().add(createInvoiceLine(line, lineNumber++, invoice.currency));
         }
+
+        return ublInvoice;
     }
 
     private void setInvoiceMetadata(InvoiceType ublInvoice, Invoice invoice) {
@@ -0,0 +1,213 @@
+package no.snabel.service;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.dto.EfakturaBatchRequest;
+import no.snabel.model.Invoice;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates EHF XML for many invoices at once and streams them as a ZIP archive.
+ *
+ * Invoices are read in keyset chunks of {@code snabel.ehf.batch.chunk-size}, each chunk
+ * with its lines and supplier in a single fetch-join query. The XML for a chunk is
+ * rendered on the {@link DocumentWorkerPool}, at most {@code snabel.ehf.batch.in-flight}
+ * invoices at a time so one download cannot fill the shared queue, and appended to the
+ * archive, which is emitted chunk by chunk, so memory use depends on the chunk size and
+ * not on how many invoices match the filter.
+ */
+@ApplicationScoped
+public class EfakturaBatchService {
+
+    private static final Logger LOG = Logger.getLogger(EfakturaBatchService.class);
+
+    private static final Pattern UNSAFE_NAME_CHARS = Pattern.compile("[^A-Za-z0-9._-]");
+
+    @Inject
+    EHFInvoiceService ehfInvoiceService;
+
+    @Inject
+    DocumentWorkerPool documentWorkers;
+
+    @ConfigProperty(name = "snabel.ehf.batch.chunk-size", defaultValue = "100")
+    int chunkSize;
+
+    @ConfigProperty(name = "snabel.ehf.batch.in-flight", defaultValue = "4")
+    int inFlight;
+
+    /**
+     * Stream a ZIP archive with one efaktura-{invoiceNumber}.xml entry per matching invoice,
+     * named as described in {@link #entryStem(Invoice)}.
+     * Must be subscribed on a Vert.x context, as the database reads go through Hibernate Reactive.
+     */
+    public Multi<byte[]> generateZip(Long customerId, EfakturaBatchRequest filter) {
+        ZipChunkWriter zip = new ZipChunkWriter();
+
+        return Multi.createBy().repeating()
+                .uni(() -> new long[] {0L}, lastId -> fetchChunk(customerId, filter, lastId))
+                .whilst(chunk -> !chunk.last())
+                .filter(chunk -> !chunk.invoices().isEmpty())
+                // The worker pool emits back on the request context, so the next chunk can be read
+                .onItem().transformToUniAndConcatenate(chunk -> renderChunk(chunk.invoices(), zip))
+                .onCompletion().continueWith(() -> List.of(zip.finish()))
+                .onTermination().invoke(zip::close);
+    }
+
+    private Uni<InvoiceChunk> fetchChunk(Long customerId, EfakturaBatchRequest filter, long[] lastId) {
+        List<Object> params = new ArrayList<>();
+        params.add(customerId);
+        params.add(lastId[0]);
+        StringBuilder where = new StringBuilder("i.customer.id = ?1 and i.id > ?2");
+        if (filter.fromDate != null) {
+            params.add(filter.fromDate);
+            where.append(" and i.invoiceDate >= ?").append(params.size());
+        }
+        if (filter.toDate != null) {
+            params.add(filter.toDate);
+            where.append(" and i.invoiceDate <= ?").append(params.size());
+        }
+        if (filter.status != null && !filter.status.isEmpty()) {
+            params.add(filter.status);
+            where.append(" and i.status = ?").append(params.size());
+        }
+        if (filter.ids != null && !filter.ids.isEmpty()) {
+            params.add(filter.ids);
+            where.append(" and i.id in ?").append(params.size());
+        }
+
+        return Panache.withSession(() -> Panache.getSession().chain(session -> {
+            var idQuery = session.createSelectionQuery(
+                    "select i.id from Invoice i where " + where + " order by i.id", Long.class);
+            for (int i = 0; i < params.size(); i++) {
+                idQuery.setParameter(i + 1, params.get(i));
+            }
+            return idQuery.setMaxResults(chunkSize).getResultList()
+                    .chain(ids -> {
+                        boolean last = ids.size() < chunkSize;
+                        if (ids.isEmpty()) {
+                            return Uni.createFrom().item(new InvoiceChunk(List.of(), true));
+                        }
+                        lastId[0] = ids.get(ids.size() - 1);
+                        return session.createSelectionQuery(
+                                        "select i from Invoice i join fetch i.customer left join fetch i.lines l "
+                                                + "where i.id in ?1 order by i.id, l.lineNumber", Invoice.class)
+                                .setParameter(1, ids)
+                                .getResultList()
+                                .map(invoices -> new InvoiceChunk(invoices, last));
+                    });
+        }));
+    }
+
+    private Uni<byte[]> renderChunk(List<Invoice> chunk, ZipChunkWriter zip) {
+        return Multi.createFrom().range(0, chunk.size())
+                .onItem().transformToUni(i -> documentWorkers.submit(() -> render(i, chunk.get(i))))
+                .merge(inFlight)
+                .collect().asList()
+                .map(entries -> {
+                    // Renders complete out of order; the archive keeps chunk order
+                    entries.sort(Comparator.comparingInt(EhfEntry::position));
+                    return zip.write(entries);
+                });
+    }
+
+    private EhfEntry render(int position, Invoice invoice) {
+        ByteArrayOutputStream xml = new ByteArrayOutputStream(16 * 1024);
+        ehfInvoiceService.writeEHF(invoice, xml);
+        return new EhfEntry(position, invoice.id, entryStem(invoice), xml.toByteArray());
+    }
+
+    /**
+     * Entry name without the .xml suffix. Invoice numbers are free text, so every character
+     * outside {@code [A-Za-z0-9._-]} is replaced with an underscore; that keeps separators and
+     * other path syntax out of the archive. A number with no letters or digits left falls back
+     * to the invoice id.
+     */
+    static String entryStem(Invoice invoice) {
+        String number = invoice.invoiceNumber == null
+                ? ""
+                : UNSAFE_NAME_CHARS.matcher(invoice.invoiceNumber).replaceAll("_");
+        if (number.chars().noneMatch(Character::isLetterOrDigit)) {
+            number = String.valueOf(invoice.id);
+        }
+        return "efaktura-" + number;
+    }
+
+    private record InvoiceChunk(List<Invoice> invoices, boolean last) {
+    }
+
+    private record EhfEntry(int position, Long invoiceId, String stem, byte[] xml) {
+    }
+
+    /**
+     * ZIP archive written into a reusable buffer that is drained after every chunk.
+     * Two invoice numbers can sanitize to the same name; the later entry gets the
+     * invoice id appended instead of failing the archive as a duplicate.
+     */
+    private static final class ZipChunkWriter {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 * 1024);
+        private final ZipOutputStream zip = new ZipOutputStream(buffer);
+        private final Set<String> names = new HashSet<>();
+
+        synchronized byte[] write(List<EhfEntry> entries) {
+            try {
+                for (EhfEntry entry : entries) {
+                    zip.putNextEntry(new ZipEntry(uniqueName(entry)));
+                    zip.write(entry.xml());
+                    zip.closeEntry();
+                }
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        synchronized byte[] finish() {
+            try {
+                zip.finish();
+                return drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        synchronized void close() {
+            try {
+                zip.close();
+            } catch (IOException e) {
+                LOG.debug("Failed to close ZIP stream", e);
+            }
+        }
+
+        private String uniqueName(EhfEntry entry) {
+            String name = entry.stem() + ".xml";
+            String stem = entry.stem() + "-" + entry.invoiceId();
+            for (int n = 2; !names.add(name); n++) {
+                name = (n == 2 ? stem : stem + "-" + n) + ".xml";
+            }
+            return name;
+        }
+
+        private byte[] drain() {
+            byte[] bytes = buffer.toByteArray();
+            buffer.reset();
+            return bytes;
+        }
+    }
+}
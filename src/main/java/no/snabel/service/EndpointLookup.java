@@ -0,0 +1,20 @@
+package no.snabel.service;
+
+import network.oxalis.vefa.peppol.common.model.DocumentTypeIdentifier;
+import network.oxalis.vefa.peppol.common.model.Endpoint;
+import network.oxalis.vefa.peppol.common.model.ParticipantIdentifier;
+import network.oxalis.vefa.peppol.common.model.ProcessIdentifier;
+
+/**
+ * Resolves where a PEPPOL receiver accepts a document type: access point URL,
+ * transport profile and certificate. In production this is an SMP lookup through Oxalis.
+ */
+@FunctionalInterface
+public interface EndpointLookup {
+
+    /**
+     * @throws Exception if the receiver is unknown or the SMP cannot be reached
+     */
+    Endpoint lookup(ParticipantIdentifier receiver, DocumentTypeIdentifier documentType, ProcessIdentifier process)
+            throws Exception;
+}
@@ -0,0 +1,102 @@
+package no.snabel.service;
+
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.service.GeneralLedgerWriter.Format;
+import no.snabel.util.RowStreams;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static no.snabel.service.GeneralLedgerWriter.cents;
+
+/**
+ * General ledger (hovedbok): every posted line in a period per account, with running balance.
+ *
+ * Lines are read through a server-side cursor ordered by account, date and entry, and written
+ * straight from the rows into CSV or NDJSON without building entities, one chunk of output per
+ * fetched batch. Each account starts from its balance at the beginning of the period, taken
+ * from the monthly snapshots plus the part of the month before the period starts.
+ */
+@ApplicationScoped
+public class GeneralLedgerService {
+
+    private static final String LEDGER_SQL = """
+            WITH snapshot AS (
+                SELECT a.id AS account_id, s.closing
+                FROM accounts a
+                    CROSS JOIN LATERAL (
+                        SELECT closing FROM account_period_balances p
+                        WHERE p.account_id = a.id AND p.period < $4
+                        ORDER BY p.period DESC LIMIT 1) s
+                WHERE a.customer_id = $1
+            ),
+            month_start AS (
+                SELECT l.account_id, SUM(l.debit_amount - l.credit_amount) AS movement
+                FROM journal_entries e
+                JOIN journal_entry_lines l ON l.journal_entry_id = e.id
+                WHERE e.customer_id = $1 AND e.posted = true AND e.entry_date >= $4 AND e.entry_date < $2
+                GROUP BY l.account_id
+            )
+            SELECT a.account_number, a.account_name,
+                   COALESCE(s.closing, 0) + COALESCE(m.movement, 0) AS opening,
+                   e.entry_date, e.entry_number, COALESCE(l.description, e.description) AS description,
+                   l.debit_amount, l.credit_amount
+            FROM journal_entries e
+                JOIN journal_entry_lines l ON l.journal_entry_id = e.id
+                JOIN accounts a ON a.id = l.account_id
+                LEFT JOIN snapshot s ON s.account_id = a.id
+                LEFT JOIN month_start m ON m.account_id = a.id
+            WHERE e.customer_id = $1 AND e.posted = true AND e.entry_date >= $2 AND e.entry_date <= $3
+              AND ($5::TEXT IS NULL OR a.account_number = $5)
+            ORDER BY a.account_number, e.entry_date, e.id, l.line_number
+            """;
+
+    @Inject
+    Pool pool;
+
+    @ConfigProperty(name = "snabel.export.fetch-size", defaultValue = "500")
+    int fetchSize;
+
+    /**
+     * Stream the ledger for the period, both dates inclusive
+     *
+     * @param accountNumber Only this account, or null for all
+     */
+    public Multi<byte[]> stream(Long customerId, LocalDate from, LocalDate to, String accountNumber, Format format) {
+        Tuple args = Tuple.of(customerId, from, to, from.withDayOfMonth(1), accountNumber);
+        return Multi.createFrom().deferred(() -> {
+            GeneralLedgerWriter writer = new GeneralLedgerWriter(format);
+            Multi<byte[]> body = RowStreams.stream(pool, LEDGER_SQL, args, fetchSize)
+                    .group().intoLists().of(fetchSize)
+                    .map(rows -> write(writer, rows, from));
+            if (format == Format.NDJSON) {
+                return body;
+            }
+            byte[] header = GeneralLedgerWriter.CSV_HEADER.getBytes(StandardCharsets.UTF_8);
+            return Multi.createBy().concatenating().streams(Multi.createFrom().item(header), body);
+        });
+    }
+
+    private static byte[] write(GeneralLedgerWriter writer, List<Row> rows, LocalDate from) {
+        for (Row row : rows) {
+            writer.line(
+                    row.getString("account_number"),
+                    row.getString("account_name"),
+                    cents(row.getBigDecimal("opening")),
+                    from,
+                    row.getLocalDate("entry_date"),
+                    row.getString("entry_number"),
+                    row.getString("description"),
+                    cents(row.getBigDecimal("debit_amount")),
+                    cents(row.getBigDecimal("credit_amount")));
+        }
+        return writer.drain();
+    }
+}
@@ -0,0 +1,128 @@
+package no.snabel.service;
+
+import no.snabel.util.JsonText;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Formats general ledger lines as CSV or NDJSON, keeping the running balance per account.
+ *
+ * One writer serves one stream. Lines are appended to a reused buffer and taken out in
+ * batches with {@link #drain()}; amounts are handled as øre in longs, so formatting a line
+ * allocates nothing beyond the buffer growing.
+ */
+public final class GeneralLedgerWriter {
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    static final String CSV_HEADER =
+            "account_number,account_name,entry_date,entry_number,description,debit,credit,balance\n";
+
+    private final Format format;
+    private final StringBuilder buffer = new StringBuilder(64 * 1024);
+    private String account;
+    private long balance;
+
+    GeneralLedgerWriter(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Append a ledger line. Lines must arrive ordered by account; the first line of an
+     * account is preceded by an opening balance line dated {@code from}.
+     */
+    void line(String accountNumber, String accountName, long openingCents, LocalDate from,
+              LocalDate entryDate, String entryNumber, String description, long debitCents, long creditCents) {
+        if (!accountNumber.equals(account)) {
+            account = accountNumber;
+            balance = openingCents;
+            write(accountNumber, accountName, from, null, "Opening balance", 0, 0);
+        }
+        balance += debitCents - creditCents;
+        write(accountNumber, accountName, entryDate, entryNumber, description, debitCents, creditCents);
+    }
+
+    /**
+     * Bytes written since the previous drain
+     */
+    byte[] drain() {
+        // Quarkus REST terminates every item of an NDJSON stream with a newline itself
+        if (format == Format.NDJSON && !buffer.isEmpty()) {
+            buffer.setLength(buffer.length() - 1);
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.setLength(0);
+        return bytes;
+    }
+
+    static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).longValueExact();
+    }
+
+    private void write(String accountNumber, String accountName, LocalDate date, String entryNumber,
+                       String description, long debitCents, long creditCents) {
+        if (format == Format.CSV) {
+            csv(accountNumber).append(',');
+            csv(accountName).append(',');
+            buffer.append(date).append(',');
+            csv(entryNumber).append(',');
+            csv(description).append(',');
+            amount(debitCents).append(',');
+            amount(creditCents).append(',');
+            amount(balance).append('\n');
+        } else {
+            buffer.append("{\"accountNumber\":");
+            json(accountNumber).append(",\"accountName\":");
+            json(accountName).append(",\"entryDate\":\"").append(date).append("\",\"entryNumber\":");
+            json(entryNumber).append(",\"description\":");
+            json(description).append(",\"debit\":");
+            amount(debitCents).append(",\"credit\":");
+            amount(creditCents).append(",\"balance\":");
+            amount(balance).append("}\n");
+        }
+    }
+
+    private StringBuilder amount(long cents) {
+        long abs = Math.abs(cents);
+        if (cents < 0) {
+            buffer.append('-');
+        }
+        buffer.append(abs / 100).append('.');
+        long fraction = abs % 100;
+        if (fraction < 10) {
+            buffer.append('0');
+        }
+        return buffer.append(fraction);
+    }
+
+    private StringBuilder csv(String value) {
+        if (value == null) {
+            return buffer;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return buffer.append(value);
+        }
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        return buffer.append('"');
+    }
+
+    private StringBuilder json(String value) {
+        return JsonText.append(buffer, value);
+    }
+}
@@ -0,0 +1,206 @@
+package no.snabel.service;
+
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.model.Invoice;
+import no.snabel.service.PeppolAccessPointService.PeppolSendResult;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the invoice_deliveries outbox.
+ *
+ * Every poll claims up to {@code snabel.delivery.batch-size} due deliveries with
+ * FOR UPDATE SKIP LOCKED, so several instances can dispatch side by side, and transmits
+ * up to {@code snabel.delivery.concurrency} of them at a time. A claim is a lease: if the
+ * process dies mid-transmission the delivery is picked up again once the lease expires, or
+ * marked DEAD if it has used all its attempts. Only the holder of the current lease can record
+ * the outcome, so a worker whose lease expired cannot overwrite the result of the next one.
+ * Failed attempts are retried with exponential backoff and marked DEAD after
+ * {@code snabel.delivery.max-attempts}.
+ */
+@ApplicationScoped
+public class InvoiceDeliveryDispatcher {
+
+    private static final Logger LOG = Logger.getLogger(InvoiceDeliveryDispatcher.class);
+
+    private static final String EXPIRE_SQL = """
+            UPDATE invoice_deliveries
+            SET status = 'DEAD', locked_until = NULL, updated_at = $2,
+                last_error = 'Lease expired during attempt ' || attempts || ': ' || COALESCE(last_error, 'no result recorded')
+            WHERE status = 'IN_PROGRESS' AND locked_until < $2 AND attempts >= $1
+            """;
+
+    private static final String CLAIM_SQL = """
+            UPDATE invoice_deliveries d
+            SET status = 'IN_PROGRESS', attempts = d.attempts + 1, locked_until = $3, updated_at = $2
+            WHERE d.id IN (
+                SELECT id FROM invoice_deliveries
+                WHERE (status = 'PENDING' AND next_attempt_at <= $2)
+                   OR (status = 'IN_PROGRESS' AND locked_until < $2 AND attempts < $4)
+                ORDER BY next_attempt_at, id
+                LIMIT $1
+                FOR UPDATE SKIP LOCKED)
+            RETURNING d.id, d.invoice_id, d.attempts, d.locked_until
+            """;
+
+    private static final String DELIVERED_SQL = """
+            UPDATE invoice_deliveries
+            SET status = 'DELIVERED', message_id = $2, transmission_id = $3, delivered_at = $4,
+                updated_at = $4, locked_until = NULL, last_error = NULL
+            WHERE id = $1 AND status = 'IN_PROGRESS' AND locked_until = $5
+            """;
+
+    private static final String FAILED_SQL = """
+            UPDATE invoice_deliveries
+            SET status = $2, next_attempt_at = $3, last_error = $4, updated_at = $5, locked_until = NULL
+            WHERE id = $1 AND status = 'IN_PROGRESS' AND locked_until = $6
+            """;
+
+    @Inject
+    Pool pool;
+
+    @Inject
+    InvoiceTransmitter transmitter;
+
+    @ConfigProperty(name = "snabel.delivery.batch-size", defaultValue = "20")
+    int batchSize;
+
+    @ConfigProperty(name = "snabel.delivery.concurrency", defaultValue = "4")
+    int concurrency;
+
+    @ConfigProperty(name = "snabel.delivery.max-attempts", defaultValue = "8")
+    int maxAttempts;
+
+    @ConfigProperty(name = "snabel.delivery.initial-backoff", defaultValue = "PT30S")
+    Duration initialBackoff;
+
+    @ConfigProperty(name = "snabel.delivery.max-backoff", defaultValue = "PT1H")
+    Duration maxBackoff;
+
+    @ConfigProperty(name = "snabel.delivery.lease", defaultValue = "PT5M")
+    Duration lease;
+
+    @Scheduled(every = "${snabel.delivery.poll-interval:5s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> poll() {
+        if (!transmitter.isReady()) {
+            // Leave deliveries pending until transmission is configured
+            return Uni.createFrom().voidItem();
+        }
+        return dispatchDue()
+                .onFailure().invoke(e -> LOG.errorf(e, "Invoice delivery dispatch failed"))
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    /**
+     * Claim and process the deliveries that are due now
+     *
+     * @return Number of deliveries attempted
+     */
+    public Uni<Integer> dispatchDue() {
+        LocalDateTime now = LocalDateTime.now();
+        return pool.preparedQuery(EXPIRE_SQL)
+                .execute(Tuple.of(maxAttempts, now))
+                .invoke(expired -> {
+                    if (expired.rowCount() > 0) {
+                        LOG.errorf("Gave up on %d deliveries whose last attempt never finished", expired.rowCount());
+                    }
+                })
+                .chain(() -> pool.preparedQuery(CLAIM_SQL)
+                        .execute(Tuple.of(batchSize, now, now.plus(lease), maxAttempts)))
+                .chain(rows -> {
+                    List<ClaimedDelivery> claimed = new ArrayList<>();
+                    for (Row row : rows) {
+                        claimed.add(new ClaimedDelivery(row.getLong("id"), row.getLong("invoice_id"),
+                                row.getInteger("attempts"), row.getLocalDateTime("locked_until")));
+                    }
+                    if (claimed.isEmpty()) {
+                        return Uni.createFrom().item(0);
+                    }
+                    return Multi.createFrom().iterable(claimed)
+                            .onItem().transformToUni(this::deliver).merge(concurrency)
+                            .collect().last()
+                            .replaceWith(claimed.size());
+                });
+    }
+
+    private Uni<Void> deliver(ClaimedDelivery delivery) {
+        return loadInvoice(delivery.invoiceId())
+                .chain(transmitter::sendInvoice)
+                .chain(result -> markDelivered(delivery, result))
+                .onFailure().recoverWithUni(e -> markFailed(delivery, e));
+    }
+
+    private Uni<Invoice> loadInvoice(Long invoiceId) {
+        return Panache.withSession(() -> Invoice.<Invoice>find(
+                        "from Invoice i join fetch i.customer left join fetch i.lines where i.id = ?1", invoiceId)
+                .firstResult())
+                .onItem().ifNull().failWith(() -> new IllegalStateException("Invoice " + invoiceId + " no longer exists"));
+    }
+
+    Uni<Void> markDelivered(ClaimedDelivery delivery, PeppolSendResult result) {
+        LOG.infof("Delivered invoice %d (delivery %d, attempt %d)", delivery.invoiceId(), delivery.id(), delivery.attempts());
+        return pool.preparedQuery(DELIVERED_SQL)
+                .execute(Tuple.of(delivery.id(), result.messageId, result.transmissionId, LocalDateTime.now(),
+                        delivery.lease()))
+                .invoke(rows -> warnIfLeaseLost(delivery, rows.rowCount()))
+                .replaceWithVoid();
+    }
+
+    Uni<Void> markFailed(ClaimedDelivery delivery, Throwable error) {
+        LocalDateTime now = LocalDateTime.now();
+        boolean dead = delivery.attempts() >= maxAttempts;
+        if (dead) {
+            LOG.errorf(error, "Giving up on invoice %d after %d attempts (delivery %d)",
+                    delivery.invoiceId(), delivery.attempts(), delivery.id());
+        } else {
+            LOG.warnf("Delivery %d of invoice %d failed (attempt %d): %s",
+                    delivery.id(), delivery.invoiceId(), delivery.attempts(), error.getMessage());
+        }
+        return pool.preparedQuery(FAILED_SQL)
+                .execute(Tuple.from(List.of(
+                        delivery.id(),
+                        dead ? "DEAD" : "PENDING",
+                        now.plus(backoff(delivery.attempts(), initialBackoff, maxBackoff)),
+                        String.valueOf(error.getMessage()),
+                        now,
+                        delivery.lease())))
+                .invoke(rows -> warnIfLeaseLost(delivery, rows.rowCount()))
+                .replaceWithVoid();
+    }
+
+    private static void warnIfLeaseLost(ClaimedDelivery delivery, int updated) {
+        if (updated == 0) {
+            LOG.warnf("Lease on delivery %d of invoice %d expired before attempt %d finished; its result was discarded",
+                    delivery.id(), delivery.invoiceId(), delivery.attempts());
+        }
+    }
+
+    /**
+     * Delay before the next attempt: the initial backoff doubled for every failed attempt, capped at max
+     */
+    static Duration backoff(int attempts, Duration initial, Duration max) {
+        int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+        Duration delay = initial.multipliedBy(1L << doublings);
+        return delay.compareTo(max) > 0 ? max : delay;
+    }
+
+    /**
+     * A delivery this worker holds the lease on, until {@code lease}
+     */
+    record ClaimedDelivery(Long id, Long invoiceId, int attempts, LocalDateTime lease) {
+    }
+}
@@ -0,0 +1,64 @@
+package no.snabel.service;
+
+import io.smallrye.mutiny.Multi;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.dto.InvoiceExportRow;
+import no.snabel.util.RowStreams;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Bulk read path for invoices.
+ *
+ * Reads straight from the reactive PostgreSQL client through a server-side cursor instead of
+ * loading entities, so a tenant with hundreds of thousands of invoices is exported with
+ * constant heap and the first rows are emitted immediately.
+ */
+@ApplicationScoped
+public class InvoiceExportService {
+
+    private static final String EXPORT_SQL = """
+            SELECT id, invoice_number, invoice_date, due_date, client_name, client_organization_number,
+                   subtotal, vat_amount, total_amount, currency, status, payment_reference,
+                   buyer_reference, order_reference, created_at, sent_at, paid_at
+            FROM invoices
+            WHERE customer_id = $1
+            ORDER BY invoice_date, id
+            """;
+
+    @Inject
+    Pool pool;
+
+    @ConfigProperty(name = "snabel.export.fetch-size", defaultValue = "500")
+    int fetchSize;
+
+    public Multi<InvoiceExportRow> exportInvoices(Long customerId) {
+        return RowStreams.stream(pool, EXPORT_SQL, Tuple.of(customerId), fetchSize)
+                .map(this::toExportRow);
+    }
+
+    private InvoiceExportRow toExportRow(Row row) {
+        InvoiceExportRow export = new InvoiceExportRow();
+        export.id = row.getLong("id");
+        export.invoiceNumber = row.getString("invoice_number");
+        export.invoiceDate = row.getLocalDate("invoice_date");
+        export.dueDate = row.getLocalDate("due_date");
+        export.clientName = row.getString("client_name");
+        export.clientOrganizationNumber = row.getString("client_organization_number");
+        export.subtotal = row.getBigDecimal("subtotal");
+        export.vatAmount = row.getBigDecimal("vat_amount");
+        export.totalAmount = row.getBigDecimal("total_amount");
+        export.currency = row.getString("currency");
+        export.status = row.getString("status");
+        export.paymentReference = row.getString("payment_reference");
+        export.buyerReference = row.getString("buyer_reference");
+        export.orderReference = row.getString("order_reference");
+        export.createdAt = row.getLocalDateTime("created_at");
+        export.sentAt = row.getLocalDateTime("sent_at");
+        export.paidAt = row.getLocalDateTime("paid_at");
+        return export;
+    }
+}
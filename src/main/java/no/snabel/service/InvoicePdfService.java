@@ -1,17 +1,22 @@
 package no.snabel.service;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import no.snabel.model.Customer;
 import no.snabel.model.Invoice;
 import no.snabel.model.InvoiceLine;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.format.DateTimeFormatter;
 
@@ -29,58 +34,90 @@ public class InvoicePdfService {
     private static final float FONT_SIZE_SMALL = 8;
     private static final float LINE_HEIGHT = 14;
 
+    // Page geometry and lines table columns: #, description (flexible), quantity, unit price, VAT %, amount
+    private static final float PAGE_WIDTH = PDRectangle.A4.getWidth();
+    private static final float PAGE_HEIGHT = PDRectangle.A4.getHeight();
+    private static final float CONTENT_BOTTOM = MARGIN + LINE_HEIGHT;
+    private static final float COL1_X = MARGIN;
+    private static final float COL2_X = COL1_X + 40;
+    private static final float COL3_X = COL2_X + (PAGE_WIDTH - 2 * MARGIN - 40 - 80 - 80 - 80 - 100);
+    private static final float COL4_X = COL3_X + 80;
+    private static final float COL5_X = COL4_X + 80;
+    private static final float COL6_X = COL5_X + 80;
+
+    // Loaded on first use per thread and reused for every PDF rendered on that thread
+    private static final ThreadLocal<Fonts> FONTS = ThreadLocal.withInitial(Fonts::new);
+
+    @ConfigProperty(name = "snabel.pdf.max-main-memory", defaultValue = "1048576")
+    long maxMainMemoryBytes = 1024 * 1024;
+
+    /**
+     * Load the font metrics at startup instead of on the first request
+     */
+    @PostConstruct
+    void preloadFonts() {
+        FONTS.get();
+    }
+
     /**
      * Generate PDF for an invoice
      */
     public byte[] generatePdf(Invoice invoice) {
-        try (PDDocument document = new PDDocument()) {
-            PDPage page = new PDPage(PDRectangle.A4);
-            document.addPage(page);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        generatePdf(invoice, baos);
+        return baos.toByteArray();
+    }
 
-            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                float yPosition = page.getMediaBox().getHeight() - MARGIN;
+    /**
+     * Generate PDF for an invoice directly into the given stream, e.g. the HTTP response.
+     * Lines flow over as many pages as needed; page content beyond
+     * snabel.pdf.max-main-memory is buffered in a temporary file instead of the heap.
+     */
+    public void generatePdf(Invoice invoice, OutputStream out) {
+        Fonts fonts = FONTS.get();
+        try (PDDocument document = new PDDocument(MemoryUsageSetting.setupMixed(maxMainMemoryBytes).streamCache)) {
+            try (PageLayout layout = new PageLayout(document, fonts, invoice)) {
+                PDPageContentStream contentStream = layout.content;
+                float yPosition = layout.y;
 
                 // Supplier (seller) information - top left
-                yPosition = addSupplierInfo(contentStream, invoice.customer, yPosition);
+                yPosition = addSupplierInfo(contentStream, fonts, invoice.customer, yPosition);
 
                 // Invoice title and number - top right
-                addInvoiceHeader(contentStream, invoice, page.getMediaBox().getWidth());
+                addInvoiceHeader(contentStream, fonts, invoice, PAGE_WIDTH);
 
                 // Customer (buyer) information
                 yPosition -= 40;
-                yPosition = addCustomerInfo(contentStream, invoice, yPosition);
+                yPosition = addCustomerInfo(contentStream, fonts, invoice, yPosition);
 
                 // Invoice details (dates, references)
                 yPosition -= 20;
-                yPosition = addInvoiceDetails(contentStream, invoice, yPosition);
+                layout.y = addInvoiceDetails(contentStream, fonts, invoice, yPosition);
 
-                // Invoice lines table
-                yPosition -= 30;
-                yPosition = addInvoiceLinesTable(contentStream, invoice, yPosition, page.getMediaBox().getWidth());
+                // Invoice lines table, continued on new pages as needed
+                layout.y -= 30;
+                addInvoiceLinesTable(layout);
 
                 // Totals
-                yPosition = addTotals(contentStream, invoice, yPosition, page.getMediaBox().getWidth());
+                addTotals(layout);
 
                 // Payment information
-                yPosition -= 20;
-                addPaymentInfo(contentStream, invoice, yPosition);
-
-                // Footer
-                addFooter(contentStream, invoice, page.getMediaBox().getHeight());
+                layout.y -= 20;
+                addPaymentInfo(layout);
             }
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            document.save(baos);
-            return baos.toByteArray();
+            BufferedOutputStream buffered = new BufferedOutputStream(out);
+            document.save(buffered);
+            buffered.flush();
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to generate PDF", e);
         }
     }
 
-    private float addSupplierInfo(PDPageContentStream contentStream, Customer supplier, float yPosition) throws Exception {
+    private float addSupplierInfo(PDPageContentStream contentStream, Fonts fonts, Customer supplier, float yPosition) throws Exception {
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), FONT_SIZE_HEADING);
+        contentStream.setFont(fonts.bold, FONT_SIZE_HEADING);
         contentStream.newLineAtOffset(MARGIN, yPosition);
         contentStream.showText(supplier.companyName);
         contentStream.endText();
@@ -88,7 +125,7 @@ public class InvoicePdfService {
         yPosition -= LINE_HEIGHT;
 
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_NORMAL);
+        contentStream.setFont(fonts.regular, FONT_SIZE_NORMAL);
         contentStream.newLineAtOffset(MARGIN, yPosition);
         if (supplier.address != null) {
             contentStream.showText(supplier.address);
@@ -128,15 +165,15 @@ public class InvoicePdfService {
         return yPosition - LINE_HEIGHT;
     }
 
-    private void addInvoiceHeader(PDPageContentStream contentStream, Invoice invoice, float pageWidth) throws Exception {
+    private void addInvoiceHeader(PDPageContentStream contentStream, Fonts fonts, Invoice invoice, float pageWidth) throws Exception {
         float rightX = pageWidth - MARGIN;
         float yPosition = pageWidth - MARGIN * 2;
 
         // Title
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), FONT_SIZE_TITLE);
+        contentStream.setFont(fonts.bold, FONT_SIZE_TITLE);
         String title = "FAKTURA";
-        float titleWidth = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD).getStringWidth(title) / 1000 * FONT_SIZE_TITLE;
+        float titleWidth = fonts.bold.getStringWidth(title) / 1000 * FONT_SIZE_TITLE;
         contentStream.newLineAtOffset(rightX - titleWidth, yPosition);
         contentStream.showText(title);
         contentStream.endText();
@@ -145,17 +182,17 @@ public class InvoicePdfService {
 
         // Invoice number
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_NORMAL);
+        contentStream.setFont(fonts.regular, FONT_SIZE_NORMAL);
         String invoiceNumber = "Fakturanr: " + invoice.invoiceNumber;
-        float numberWidth = new PDType1Font(Standard14Fonts.FontName.HELVETICA).getStringWidth(invoiceNumber) / 1000 * FONT_SIZE_NORMAL;
+        float numberWidth = fonts.regular.getStringWidth(invoiceNumber) / 1000 * FONT_SIZE_NORMAL;
         contentStream.newLineAtOffset(rightX - numberWidth, yPosition);
         contentStream.showText(invoiceNumber);
         contentStream.endText();
     }
 
-    private float addCustomerInfo(PDPageContentStream contentStream, Invoice invoice, float yPosition) throws Exception {
+    private float addCustomerInfo(PDPageContentStream contentStream, Fonts fonts, Invoice invoice, float yPosition) throws Exception {
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), FONT_SIZE_HEADING);
+        contentStream.setFont(fonts.bold, FONT_SIZE_HEADING);
         contentStream.newLineAtOffset(MARGIN, yPosition);
         contentStream.showText("Kunde");
         contentStream.endText();
@@ -163,7 +200,7 @@ public class InvoicePdfService {
         yPosition -= LINE_HEIGHT * 1.5f;
 
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), FONT_SIZE_NORMAL);
+        contentStream.setFont(fonts.bold, FONT_SIZE_NORMAL);
         contentStream.newLineAtOffset(MARGIN, yPosition);
         contentStream.showText(invoice.clientName);
         contentStream.endText();
@@ -172,7 +209,7 @@ public class InvoicePdfService {
 
         if (invoice.clientAddress != null) {
             contentStream.beginText();
-            contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_NORMAL);
+            contentStream.setFont(fonts.regular, FONT_SIZE_NORMAL);
             contentStream.newLineAtOffset(MARGIN, yPosition);
             contentStream.showText(invoice.clientAddress);
             contentStream.endText();
@@ -198,13 +235,13 @@ public class InvoicePdfService {
         return yPosition;
     }
 
-    private float addInvoiceDetails(PDPageContentStream contentStream, Invoice invoice, float yPosition) throws Exception {
+    private float addInvoiceDetails(PDPageContentStream contentStream, Fonts fonts, Invoice invoice, float yPosition) throws Exception {
         float col1X = MARGIN;
         float col2X = MARGIN + 150;
 
         // Invoice date
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_NORMAL);
+        contentStream.setFont(fonts.regular, FONT_SIZE_NORMAL);
         contentStream.newLineAtOffset(col1X, yPosition);
         contentStream.showText("Fakturadato:");
         contentStream.endText();
@@ -223,7 +260,7 @@ public class InvoicePdfService {
         contentStream.endText();
 
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), FONT_SIZE_NORMAL);
+        contentStream.setFont(fonts.bold, FONT_SIZE_NORMAL);
         contentStream.newLineAtOffset(col2X, yPosition);
         contentStream.showText(invoice.dueDate.format(DATE_FORMATTER));
         contentStream.endText();
@@ -233,7 +270,7 @@ public class InvoicePdfService {
         // Payment terms
         if (invoice.paymentTerms != null && !invoice.paymentTerms.isEmpty()) {
             contentStream.beginText();
-            contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_NORMAL);
+            contentStream.setFont(fonts.regular, FONT_SIZE_NORMAL);
             contentStream.newLineAtOffset(col1X, yPosition);
             contentStream.showText("Betalingsbetingelser:");
             contentStream.endText();
@@ -264,126 +301,156 @@ public class InvoicePdfService {
         return yPosition;
     }
 
-    private float addInvoiceLinesTable(PDPageContentStream contentStream, Invoice invoice, float yPosition, float pageWidth) throws Exception {
-        float tableWidth = pageWidth - 2 * MARGIN;
-        float col1Width = 40; // Line number
-        float col2Width = tableWidth - col1Width - 80 - 80 - 80 - 100; // Description (flexible)
-        float col3Width = 80; // Quantity
-        float col4Width = 80; // Unit price
-        float col5Width = 80; // VAT %
-        float col6Width = 100; // Amount
+    private void addInvoiceLinesTable(PageLayout layout) throws Exception {
+        addTableHeader(layout);
+
+        // Table rows (the font is part of the text state, so it is set once per page)
+        BigDecimal carried = BigDecimal.ZERO;
+        for (InvoiceLine line : layout.invoice.lines) {
+            // Keep room for this row and the carry-forward row below it
+            if (!layout.fits(LINE_HEIGHT * 2)) {
+                addCarryForward(layout, "Overføres", carried);
+                layout.nextPage();
+                addTableHeader(layout);
+                addCarryForward(layout, "Overført", carried);
+            }
+
+            PDPageContentStream contentStream = layout.content;
+            float yPosition = layout.y;
 
-        float col1X = MARGIN;
-        float col2X = col1X + col1Width;
-        float col3X = col2X + col2Width;
-        float col4X = col3X + col3Width;
-        float col5X = col4X + col4Width;
-        float col6X = col5X + col5Width;
+            contentStream.beginText();
+            contentStream.newLineAtOffset(COL1_X, yPosition);
+            contentStream.showText(String.valueOf(line.lineNumber));
+            contentStream.endText();
+
+            contentStream.beginText();
+            contentStream.newLineAtOffset(COL2_X, yPosition);
+            String description = line.description;
+            if (description.length() > 50) {
+                description = description.substring(0, 47) + "...";
+            }
+            contentStream.showText(description);
+            contentStream.endText();
+
+            contentStream.beginText();
+            contentStream.newLineAtOffset(COL3_X, yPosition);
+            contentStream.showText(formatNumber(line.quantity));
+            contentStream.endText();
+
+            contentStream.beginText();
+            contentStream.newLineAtOffset(COL4_X, yPosition);
+            contentStream.showText(formatCurrency(line.unitPrice));
+            contentStream.endText();
+
+            contentStream.beginText();
+            contentStream.newLineAtOffset(COL5_X, yPosition);
+            contentStream.showText(formatNumber(line.vatRate) + "%");
+            contentStream.endText();
+
+            BigDecimal lineTotal = line.unitPrice.multiply(line.quantity);
+            contentStream.beginText();
+            contentStream.newLineAtOffset(COL6_X, yPosition);
+            contentStream.showText(formatCurrency(lineTotal));
+            contentStream.endText();
+
+            carried = carried.add(lineTotal);
+            layout.y -= LINE_HEIGHT;
+        }
+
+        layout.y -= LINE_HEIGHT * 0.5f;
+
+        layout.content.moveTo(MARGIN, layout.y);
+        layout.content.lineTo(PAGE_WIDTH - MARGIN, layout.y);
+        layout.content.stroke();
+
+        layout.y -= LINE_HEIGHT;
+    }
+
+    private void addTableHeader(PageLayout layout) throws Exception {
+        PDPageContentStream contentStream = layout.content;
+        float yPosition = layout.y;
 
-        // Table header
         contentStream.setLineWidth(1);
         contentStream.moveTo(MARGIN, yPosition);
-        contentStream.lineTo(pageWidth - MARGIN, yPosition);
+        contentStream.lineTo(PAGE_WIDTH - MARGIN, yPosition);
         contentStream.stroke();
 
         yPosition -= LINE_HEIGHT * 1.2f;
 
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), FONT_SIZE_NORMAL);
-        contentStream.newLineAtOffset(col1X, yPosition);
+        contentStream.setFont(layout.fonts.bold, FONT_SIZE_NORMAL);
+        contentStream.newLineAtOffset(COL1_X, yPosition);
         contentStream.showText("#");
         contentStream.endText();
 
         contentStream.beginText();
-        contentStream.newLineAtOffset(col2X, yPosition);
+        contentStream.newLineAtOffset(COL2_X, yPosition);
         contentStream.showText("Beskrivelse");
         contentStream.endText();
 
         contentStream.beginText();
-        contentStream.newLineAtOffset(col3X, yPosition);
+        contentStream.newLineAtOffset(COL3_X, yPosition);
         contentStream.showText("Antall");
         contentStream.endText();
 
         contentStream.beginText();
-        contentStream.newLineAtOffset(col4X, yPosition);
+        contentStream.newLineAtOffset(COL4_X, yPosition);
         contentStream.showText("Pris");
         contentStream.endText();
 
         contentStream.beginText();
-        contentStream.newLineAtOffset(col5X, yPosition);
+        contentStream.newLineAtOffset(COL5_X, yPosition);
         contentStream.showText("MVA %");
         contentStream.endText();
 
         contentStream.beginText();
-        contentStream.newLineAtOffset(col6X, yPosition);
+        contentStream.newLineAtOffset(COL6_X, yPosition);
         contentStream.showText("Beløp");
         contentStream.endText();
 
         yPosition -= LINE_HEIGHT * 0.5f;
 
         contentStream.moveTo(MARGIN, yPosition);
-        contentStream.lineTo(pageWidth - MARGIN, yPosition);
+        contentStream.lineTo(PAGE_WIDTH - MARGIN, yPosition);
         contentStream.stroke();
 
-        yPosition -= LINE_HEIGHT;
-
-        // Table rows
-        for (InvoiceLine line : invoice.lines) {
-            contentStream.beginText();
-            contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_NORMAL);
-            contentStream.newLineAtOffset(col1X, yPosition);
-            contentStream.showText(String.valueOf(line.lineNumber));
-            contentStream.endText();
-
-            contentStream.beginText();
-            contentStream.newLineAtOffset(col2X, yPosition);
-            String description = line.description;
-            if (description.length() > 50) {
-                description = description.substring(0, 47) + "...";
-            }
-            contentStream.showText(description);
-            contentStream.endText();
-
-            contentStream.beginText();
-            contentStream.newLineAtOffset(col3X, yPosition);
-            contentStream.showText(formatNumber(line.quantity));
-            contentStream.endText();
-
-            contentStream.beginText();
-            contentStream.newLineAtOffset(col4X, yPosition);
-            contentStream.showText(formatCurrency(line.unitPrice));
-            contentStream.endText();
-
-            contentStream.beginText();
-            contentStream.newLineAtOffset(col5X, yPosition);
-            contentStream.showText(formatNumber(line.vatRate) + "%");
-            contentStream.endText();
-
-            BigDecimal lineTotal = line.unitPrice.multiply(line.quantity);
-            contentStream.beginText();
-            contentStream.newLineAtOffset(col6X, yPosition);
-            contentStream.showText(formatCurrency(lineTotal));
-            contentStream.endText();
+        layout.y = yPosition - LINE_HEIGHT;
+        contentStream.setFont(layout.fonts.regular, FONT_SIZE_NORMAL);
+    }
 
-            yPosition -= LINE_HEIGHT;
-        }
+    /**
+     * Running sum of the line amounts, shown at the bottom of a full page and again at the top of the next
+     */
+    private void addCarryForward(PageLayout layout, String label, BigDecimal amount) throws Exception {
+        PDPageContentStream contentStream = layout.content;
 
-        yPosition -= LINE_HEIGHT * 0.5f;
+        contentStream.beginText();
+        contentStream.setFont(layout.fonts.bold, FONT_SIZE_NORMAL);
+        contentStream.newLineAtOffset(COL2_X, layout.y);
+        contentStream.showText(label);
+        contentStream.endText();
 
-        contentStream.moveTo(MARGIN, yPosition);
-        contentStream.lineTo(pageWidth - MARGIN, yPosition);
-        contentStream.stroke();
+        contentStream.beginText();
+        contentStream.newLineAtOffset(COL6_X, layout.y);
+        contentStream.showText(formatCurrency(amount));
+        contentStream.endText();
 
-        return yPosition - LINE_HEIGHT;
+        contentStream.setFont(layout.fonts.regular, FONT_SIZE_NORMAL);
+        layout.y -= LINE_HEIGHT;
     }
 
-    private float addTotals(PDPageContentStream contentStream, Invoice invoice, float yPosition, float pageWidth) throws Exception {
-        float labelX = pageWidth - MARGIN - 200;
-        float amountX = pageWidth - MARGIN - 100;
+    private void addTotals(PageLayout layout) throws Exception {
+        layout.ensureSpace(LINE_HEIGHT * 3.5f);
+        PDPageContentStream contentStream = layout.content;
+        Fonts fonts = layout.fonts;
+        Invoice invoice = layout.invoice;
+        float yPosition = layout.y;
+        float labelX = PAGE_WIDTH - MARGIN - 200;
+        float amountX = PAGE_WIDTH - MARGIN - 100;
 
         // Subtotal
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_NORMAL);
+        contentStream.setFont(fonts.regular, FONT_SIZE_NORMAL);
         contentStream.newLineAtOffset(labelX, yPosition);
         contentStream.showText("Subtotal:");
         contentStream.endText();
@@ -410,7 +477,7 @@ public class InvoicePdfService {
 
         // Total
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), FONT_SIZE_HEADING);
+        contentStream.setFont(fonts.bold, FONT_SIZE_HEADING);
         contentStream.newLineAtOffset(labelX, yPosition);
         contentStream.showText("TOTALT:");
         contentStream.endText();
@@ -420,12 +487,18 @@ public class InvoicePdfService {
         contentStream.showText(formatCurrency(invoice.totalAmount) + " " + invoice.currency);
         contentStream.endText();
 
-        return yPosition - LINE_HEIGHT;
+        layout.y = yPosition - LINE_HEIGHT;
     }
 
-    private void addPaymentInfo(PDPageContentStream contentStream, Invoice invoice, float yPosition) throws Exception {
+    private void addPaymentInfo(PageLayout layout) throws Exception {
+        layout.ensureSpace(LINE_HEIGHT * 6.5f);
+        PDPageContentStream contentStream = layout.content;
+        Fonts fonts = layout.fonts;
+        Invoice invoice = layout.invoice;
+        float yPosition = layout.y;
+
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), FONT_SIZE_HEADING);
+        contentStream.setFont(fonts.bold, FONT_SIZE_HEADING);
         contentStream.newLineAtOffset(MARGIN, yPosition);
         contentStream.showText("Betalingsinformasjon");
         contentStream.endText();
@@ -437,7 +510,7 @@ public class InvoicePdfService {
 
         if (bankAccount != null) {
             contentStream.beginText();
-            contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_NORMAL);
+            contentStream.setFont(fonts.regular, FONT_SIZE_NORMAL);
             contentStream.newLineAtOffset(MARGIN, yPosition);
             contentStream.showText("Kontonummer: " + bankAccount);
             contentStream.endText();
@@ -446,6 +519,7 @@ public class InvoicePdfService {
 
         if (invoice.paymentReference != null && !invoice.paymentReference.isEmpty()) {
             contentStream.beginText();
+            contentStream.setFont(fonts.regular, FONT_SIZE_NORMAL);
             contentStream.newLineAtOffset(MARGIN, yPosition);
             contentStream.showText("KID/Referanse: " + invoice.paymentReference);
             contentStream.endText();
@@ -455,21 +529,101 @@ public class InvoicePdfService {
         if (invoice.notes != null && !invoice.notes.isEmpty()) {
             yPosition -= LINE_HEIGHT;
             contentStream.beginText();
-            contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_SMALL);
+            contentStream.setFont(fonts.regular, FONT_SIZE_SMALL);
             contentStream.newLineAtOffset(MARGIN, yPosition);
             contentStream.showText("Merknad: " + invoice.notes);
             contentStream.endText();
         }
+
+        layout.y = yPosition;
     }
 
-    private void addFooter(PDPageContentStream contentStream, Invoice invoice, float pageHeight) throws Exception {
+    private void addFooter(PDPageContentStream contentStream, Fonts fonts, int pageNumber) throws Exception {
         float footerY = MARGIN / 2;
 
         contentStream.beginText();
-        contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), FONT_SIZE_SMALL);
+        contentStream.setFont(fonts.regular, FONT_SIZE_SMALL);
         contentStream.newLineAtOffset(MARGIN, footerY);
         contentStream.showText("Generert med Snabel Regnskap");
         contentStream.endText();
+
+        String page = "Side " + pageNumber;
+        float pageWidth = fonts.regular.getStringWidth(page) / 1000 * FONT_SIZE_SMALL;
+        contentStream.beginText();
+        contentStream.newLineAtOffset(PAGE_WIDTH - MARGIN - pageWidth, footerY);
+        contentStream.showText(page);
+        contentStream.endText();
+    }
+
+    private void addContinuationHeader(PDPageContentStream contentStream, Fonts fonts, Invoice invoice, float yPosition) throws Exception {
+        contentStream.beginText();
+        contentStream.setFont(fonts.bold, FONT_SIZE_HEADING);
+        contentStream.newLineAtOffset(MARGIN, yPosition);
+        contentStream.showText("Faktura " + invoice.invoiceNumber + " (forts.)");
+        contentStream.endText();
+    }
+
+    /**
+     * Tracks the current page and vertical position while the invoice is laid out,
+     * starting a new page with footer and continuation header when content runs out of room.
+     */
+    private final class PageLayout implements AutoCloseable {
+
+        final PDDocument document;
+        final Fonts fonts;
+        final Invoice invoice;
+        PDPageContentStream content;
+        float y;
+        int pageNumber;
+
+        PageLayout(PDDocument document, Fonts fonts, Invoice invoice) throws Exception {
+            this.document = document;
+            this.fonts = fonts;
+            this.invoice = invoice;
+            startPage();
+        }
+
+        boolean fits(float height) {
+            return y - height >= CONTENT_BOTTOM;
+        }
+
+        void ensureSpace(float height) throws Exception {
+            if (!fits(height)) {
+                nextPage();
+            }
+        }
+
+        void nextPage() throws Exception {
+            startPage();
+            addContinuationHeader(content, fonts, invoice, y);
+            y -= LINE_HEIGHT * 2;
+        }
+
+        private void startPage() throws Exception {
+            if (content != null) {
+                content.close();
+            }
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            content = new PDPageContentStream(document, page);
+            pageNumber++;
+            addFooter(content, fonts, pageNumber);
+            y = PAGE_HEIGHT - MARGIN;
+        }
+
+        @Override
+        public void close() throws Exception {
+            content.close();
+        }
+    }
+
+    /**
+     * The Standard 14 fonts used by the layout. PDType1Font caches glyph widths and
+     * encoded bytes in unsynchronized maps, so instances are confined to one thread.
+     */
+    private static final class Fonts {
+        final PDType1Font regular = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        final PDType1Font bold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
     }
 
     private String formatCurrency(BigDecimal amount) {
@@ -16,12 +16,12 @@ import org.jboss.logging.Logger;
  *
  * Status: Stub implementation ready for integration
  *
+ * Queued EHF deliveries with retries are handled by InvoiceDeliveryDispatcher.
+ *
  * TODO:
  * 1. Implement email sending (InvoiceEmailService)
  * 2. Implement eFaktura B2C (EFakturaB2CService)
- * 3. Add delivery tracking (InvoiceDelivery entity)
- * 4. Implement retry logic
- * 5. Add status polling
+ * 3. Add status polling
  */
 @ApplicationScoped
 public class InvoiceSendingService {
@@ -0,0 +1,25 @@
+package no.snabel.service;
+
+import io.smallrye.mutiny.Uni;
+import no.snabel.model.Invoice;
+import no.snabel.service.PeppolAccessPointService.PeppolSendResult;
+
+/**
+ * Transmits a single invoice to its receiver.
+ *
+ * Implemented by {@link PeppolAccessPointService}; tests replace it with a local stub
+ * so the delivery outbox can be exercised without an access point.
+ */
+public interface InvoiceTransmitter {
+
+    /**
+     * Transmit the invoice. The invoice must have its supplier and lines loaded.
+     * Fails the returned Uni if the receiver did not accept the invoice.
+     */
+    Uni<PeppolSendResult> sendInvoice(Invoice invoice);
+
+    /**
+     * Whether transmissions can be attempted at all
+     */
+    boolean isReady();
+}
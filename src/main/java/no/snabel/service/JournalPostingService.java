@@ -0,0 +1,359 @@
+package no.snabel.service;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import io.vertx.sqlclient.data.Numeric;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.dto.JournalEntryRequest;
+import no.snabel.dto.PostedJournalEntry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Posts journal entries (vouchers) with their lines.
+ *
+ * Every entry is validated up front: at least two lines, each line either debit or credit,
+ * debit equal to credit. Entries are then written in chunks of {@code snabel.journal.batch-size},
+ * one statement per chunk: the customer's number sequence is advanced by the chunk size and
+ * the headers and lines are inserted from arrays, so a chunk costs a single round trip however
+ * many lines it has. All chunks run in one transaction; entry numbers are gapless because a
+ * failed posting rolls the sequence back with it.
+ *
+ * Account numbers are resolved through the {@link AccountCache}, so posting to known accounts
+ * costs no lookup query.
+ *
+ * Account balances are kept current in the posting transaction: the lines are summed per account
+ * and applied with one UPDATE ... FROM (VALUES ...) after the inserts. The affected accounts
+ * are locked in id order first, so postings touching overlapping accounts queue behind each
+ * other instead of deadlocking. Balances follow the account's normal side: debit minus credit
+ * for ASSET and EXPENSE accounts, credit minus debit for the others. The monthly snapshots
+ * in account_period_balances are updated right after, under the same account locks.
+ */
+@ApplicationScoped
+public class JournalPostingService {
+
+    private static final Logger LOG = Logger.getLogger(JournalPostingService.class);
+
+    static final Set<String> ENTRY_TYPES = Set.of("MANUAL", "INVOICE", "PAYMENT", "AUTOMATED");
+
+    private static final String POST_SQL = """
+            WITH numbers AS (
+                INSERT INTO journal_entry_sequences AS s (customer_id, last_number)
+                VALUES ($1, $2)
+                ON CONFLICT (customer_id) DO UPDATE SET last_number = s.last_number + EXCLUDED.last_number
+                RETURNING s.last_number - $2 AS first_number
+            ),
+            entries AS (
+                INSERT INTO journal_entries (customer_id, entry_number, entry_date, description, reference,
+                                             entry_type, created_by, created_at, updated_at, posted, posted_at)
+                SELECT $1, (n.first_number + e.ord)::TEXT, e.entry_date, e.description, e.reference,
+                       e.entry_type, $3, $4, $4, true, $4
+                FROM numbers n,
+                     unnest($5::DATE[], $6::TEXT[], $7::TEXT[], $8::TEXT[])
+                         WITH ORDINALITY AS e(entry_date, description, reference, entry_type, ord)
+                ORDER BY e.ord
+                RETURNING id, entry_number
+            ),
+            lines AS (
+                INSERT INTO journal_entry_lines (journal_entry_id, account_id, description, debit_amount,
+                                                 credit_amount, vat_amount, vat_code, line_number, created_at)
+                SELECT en.id, l.account_id, l.description, l.debit, l.credit, l.vat, l.vat_code, l.line_number, $4
+                FROM numbers n,
+                     unnest($9::INT[], $10::BIGINT[], $11::TEXT[], $12::NUMERIC[], $13::NUMERIC[],
+                            $14::NUMERIC[], $15::TEXT[], $16::INT[])
+                         AS l(entry_ord, account_id, description, debit, credit, vat, vat_code, line_number)
+                    JOIN entries en ON en.entry_number = (n.first_number + l.entry_ord)::TEXT
+            )
+            SELECT id, entry_number FROM entries ORDER BY entry_number::BIGINT
+            """;
+
+    private static final String BALANCE_SQL = """
+            WITH locked AS (
+                SELECT id FROM accounts WHERE id = ANY($2) ORDER BY id FOR UPDATE
+            )
+            UPDATE accounts a
+            SET balance = a.balance + CASE WHEN a.account_type IN ('ASSET', 'EXPENSE')
+                                           THEN v.debit - v.credit ELSE v.credit - v.debit END,
+                updated_at = $1
+            FROM (VALUES %s) AS v(id, debit, credit), locked
+            WHERE a.id = v.id AND locked.id = v.id
+            """;
+
+    @Inject
+    Pool pool;
+
+    @Inject
+    PeriodBalanceService periodBalances;
+
+    @Inject
+    AccountCache accountCache;
+
+    @ConfigProperty(name = "snabel.journal.batch-size", defaultValue = "500")
+    int batchSize;
+
+    /**
+     * Post entries for a customer, all or nothing
+     *
+     * @param customerId Tenant the entries belong to
+     * @param userId User recorded as creator, may be null
+     * @param entries Entries to post
+     * @return Posted entries in request order, with their assigned numbers
+     * @throws IllegalArgumentException (as failure) if an entry is invalid or refers to an unknown account
+     */
+    public Uni<List<PostedJournalEntry>> post(Long customerId, Long userId, List<JournalEntryRequest> entries) {
+        try {
+            validate(entries);
+        } catch (IllegalArgumentException e) {
+            return Uni.createFrom().failure(e);
+        }
+
+        List<List<JournalEntryRequest>> chunks = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i += batchSize) {
+            chunks.add(entries.subList(i, Math.min(i + batchSize, entries.size())));
+        }
+        LocalDateTime now = LocalDateTime.now();
+
+        return accountCache.accountIds(customerId)
+                .map(accountIds -> resolveAccounts(accountIds, entries))
+                .chain(accounts -> pool.withTransaction(connection -> Multi.createFrom().iterable(chunks)
+                        .onItem().transformToUniAndConcatenate(chunk ->
+                                insertChunk(connection, customerId, userId, now, chunk, accounts))
+                        .collect().asList()
+                        .call(() -> applyBalances(connection, now, accountTotals(entries, accounts)))
+                        .call(() -> periodBalances.record(connection, customerId, periodTotals(entries, accounts)))))
+                .map(results -> results.stream().flatMap(List::stream).toList())
+                .invoke(() -> accountCache.invalidateBalances(customerId))
+                .invoke(posted -> LOG.debugf("Posted %d journal entries for customer %d", posted.size(), customerId));
+    }
+
+    /**
+     * Account ids for the account numbers used by the entries
+     *
+     * @throws IllegalArgumentException if a number is not one of the customer's active accounts
+     */
+    static Map<String, Long> resolveAccounts(Map<String, Long> accountIds, List<JournalEntryRequest> entries) {
+        Map<String, Long> accounts = new HashMap<>();
+        for (JournalEntryRequest entry : entries) {
+            for (JournalEntryRequest.Line line : entry.lines) {
+                Long id = accountIds.get(line.accountNumber);
+                if (id == null) {
+                    throw new IllegalArgumentException("Unknown account " + line.accountNumber);
+                }
+                accounts.put(line.accountNumber, id);
+            }
+        }
+        return accounts;
+    }
+
+    private Uni<List<PostedJournalEntry>> insertChunk(SqlConnection connection, Long customerId, Long userId,
+                                                      LocalDateTime now, List<JournalEntryRequest> chunk,
+                                                      Map<String, Long> accounts) {
+        int lineCount = 0;
+        for (JournalEntryRequest entry : chunk) {
+            lineCount += entry.lines.size();
+        }
+
+        LocalDate[] entryDates = new LocalDate[chunk.size()];
+        String[] descriptions = new String[chunk.size()];
+        String[] references = new String[chunk.size()];
+        String[] entryTypes = new String[chunk.size()];
+
+        Integer[] lineEntries = new Integer[lineCount];
+        Long[] lineAccounts = new Long[lineCount];
+        String[] lineDescriptions = new String[lineCount];
+        Numeric[] debits = new Numeric[lineCount];
+        Numeric[] credits = new Numeric[lineCount];
+        Numeric[] vatAmounts = new Numeric[lineCount];
+        String[] vatCodes = new String[lineCount];
+        Integer[] lineNumbers = new Integer[lineCount];
+
+        int l = 0;
+        for (int e = 0; e < chunk.size(); e++) {
+            JournalEntryRequest entry = chunk.get(e);
+            entryDates[e] = entry.entryDate;
+            descriptions[e] = entry.description;
+            references[e] = entry.reference;
+            entryTypes[e] = entry.entryType != null ? entry.entryType : "MANUAL";
+
+            int lineNumber = 1;
+            for (JournalEntryRequest.Line line : entry.lines) {
+                lineEntries[l] = e + 1;
+                lineAccounts[l] = accounts.get(line.accountNumber);
+                lineDescriptions[l] = line.description;
+                debits[l] = Numeric.create(amount(line.debitAmount));
+                credits[l] = Numeric.create(amount(line.creditAmount));
+                vatAmounts[l] = Numeric.create(amount(line.vatAmount));
+                vatCodes[l] = line.vatCode;
+                lineNumbers[l] = lineNumber++;
+                l++;
+            }
+        }
+
+        Tuple params = Tuple.tuple()
+                .addLong(customerId)
+                .addLong((long) chunk.size())
+                .addLong(userId)
+                .addLocalDateTime(now)
+                .addArrayOfLocalDate(entryDates)
+                .addArrayOfString(descriptions)
+                .addArrayOfString(references)
+                .addArrayOfString(entryTypes)
+                .addArrayOfInteger(lineEntries)
+                .addArrayOfLong(lineAccounts)
+                .addArrayOfString(lineDescriptions)
+                .addValue(debits)
+                .addValue(credits)
+                .addValue(vatAmounts)
+                .addArrayOfString(vatCodes)
+                .addArrayOfInteger(lineNumbers);
+
+        return connection.preparedQuery(POST_SQL)
+                .execute(params)
+                .map(rows -> {
+                    List<PostedJournalEntry> posted = new ArrayList<>(chunk.size());
+                    for (Row row : rows) {
+                        posted.add(new PostedJournalEntry(row.getLong("id"), row.getString("entry_number")));
+                    }
+                    return posted;
+                });
+    }
+
+    private Uni<Void> applyBalances(SqlConnection connection, LocalDateTime now, SortedMap<Long, BigDecimal[]> totals) {
+        StringBuilder values = new StringBuilder();
+        Tuple params = Tuple.tuple()
+                .addLocalDateTime(now)
+                .addArrayOfLong(totals.keySet().toArray(Long[]::new));
+        for (Map.Entry<Long, BigDecimal[]> total : totals.entrySet()) {
+            int next = params.size() + 1;
+            if (!values.isEmpty()) {
+                values.append(", ");
+            }
+            values.append("($").append(next).append("::BIGINT, $").append(next + 1)
+                    .append("::NUMERIC, $").append(next + 2).append("::NUMERIC)");
+            params.addLong(total.getKey())
+                    .addValue(Numeric.create(total.getValue()[0]))
+                    .addValue(Numeric.create(total.getValue()[1]));
+        }
+        return connection.preparedQuery(BALANCE_SQL.formatted(values))
+                .execute(params)
+                .replaceWithVoid();
+    }
+
+    /**
+     * Debit and credit totals per account id, ordered by id
+     */
+    static SortedMap<Long, BigDecimal[]> accountTotals(List<JournalEntryRequest> entries, Map<String, Long> accounts) {
+        SortedMap<Long, BigDecimal[]> totals = new TreeMap<>();
+        for (JournalEntryRequest entry : entries) {
+            for (JournalEntryRequest.Line line : entry.lines) {
+                BigDecimal[] total = totals.computeIfAbsent(accounts.get(line.accountNumber),
+                        id -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+                total[0] = total[0].add(amount(line.debitAmount));
+                total[1] = total[1].add(amount(line.creditAmount));
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Debit and credit totals per account and month, ordered by account and month
+     */
+    static List<PeriodBalanceService.Movement> periodTotals(List<JournalEntryRequest> entries,
+                                                            Map<String, Long> accounts) {
+        SortedMap<Long, SortedMap<LocalDate, BigDecimal[]>> totals = new TreeMap<>();
+        for (JournalEntryRequest entry : entries) {
+            LocalDate period = entry.entryDate.withDayOfMonth(1);
+            for (JournalEntryRequest.Line line : entry.lines) {
+                BigDecimal[] total = totals.computeIfAbsent(accounts.get(line.accountNumber), id -> new TreeMap<>())
+                        .computeIfAbsent(period, p -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+                total[0] = total[0].add(amount(line.debitAmount));
+                total[1] = total[1].add(amount(line.creditAmount));
+            }
+        }
+        List<PeriodBalanceService.Movement> movements = new ArrayList<>();
+        totals.forEach((accountId, periods) -> periods.forEach((period, total) ->
+                movements.add(new PeriodBalanceService.Movement(accountId, period, total[0], total[1]))));
+        return movements;
+    }
+
+    /**
+     * Check every entry before anything is written
+     *
+     * @throws IllegalArgumentException naming the first invalid entry (1-based) and why
+     */
+    static void validate(List<JournalEntryRequest> entries) {
+        if (entries == null || entries.isEmpty()) {
+            throw new IllegalArgumentException("No journal entries to post");
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            String error = validate(entries.get(i));
+            if (error != null) {
+                throw new IllegalArgumentException("Entry " + (i + 1) + ": " + error);
+            }
+        }
+    }
+
+    private static String validate(JournalEntryRequest entry) {
+        if (entry == null) {
+            return "missing";
+        }
+        if (entry.entryDate == null) {
+            return "entryDate is required";
+        }
+        if (entry.description == null || entry.description.isBlank()) {
+            return "description is required";
+        }
+        if (entry.entryType != null && !ENTRY_TYPES.contains(entry.entryType)) {
+            return "unknown entryType " + entry.entryType;
+        }
+        if (entry.lines == null || entry.lines.size() < 2) {
+            return "at least two lines are required";
+        }
+
+        BigDecimal debit = BigDecimal.ZERO;
+        BigDecimal credit = BigDecimal.ZERO;
+        for (int i = 0; i < entry.lines.size(); i++) {
+            JournalEntryRequest.Line line = entry.lines.get(i);
+            if (line == null || line.accountNumber == null || line.accountNumber.isBlank()) {
+                return "line " + (i + 1) + " has no account";
+            }
+            BigDecimal lineDebit = amount(line.debitAmount);
+            BigDecimal lineCredit = amount(line.creditAmount);
+            if (lineDebit.signum() < 0 || lineCredit.signum() < 0) {
+                return "line " + (i + 1) + " has a negative amount";
+            }
+            if ((lineDebit.signum() > 0) == (lineCredit.signum() > 0)) {
+                return "line " + (i + 1) + " must have either a debit or a credit amount";
+            }
+            if (lineDebit.stripTrailingZeros().scale() > 2 || lineCredit.stripTrailingZeros().scale() > 2) {
+                return "line " + (i + 1) + " has more than two decimals";
+            }
+            debit = debit.add(lineDebit);
+            credit = credit.add(lineCredit);
+        }
+        if (debit.compareTo(credit) != 0) {
+            return "debit " + debit + " does not equal credit " + credit;
+        }
+        return null;
+    }
+
+    private static BigDecimal amount(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
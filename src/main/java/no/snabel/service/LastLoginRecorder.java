@@ -0,0 +1,130 @@
+package no.snabel.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records users' last login time without a write per login.
+ *
+ * Logins only note the time in memory, keeping the latest per user. Every
+ * {@code snabel.auth.last-login.flush-interval} the noted times are written with one
+ * UPDATE ... FROM (VALUES ...) per {@code snabel.auth.last-login.batch-size} users, in user id
+ * order, and once more when the application shuts down. A failed flush puts the times back for
+ * the next one. A stored time is never moved backwards, so flushes from several instances can
+ * overlap safely. At most one flush interval of login times is lost if the process dies.
+ */
+@ApplicationScoped
+public class LastLoginRecorder {
+
+    private static final Logger LOG = Logger.getLogger(LastLoginRecorder.class);
+
+    private static final String UPDATE_SQL = """
+            UPDATE users u
+            SET last_login = v.last_login
+            FROM (VALUES %s) AS v(id, last_login)
+            WHERE u.id = v.id AND (u.last_login IS NULL OR u.last_login < v.last_login)
+            """;
+
+    @Inject
+    Pool pool;
+
+    @ConfigProperty(name = "snabel.auth.last-login.batch-size", defaultValue = "1000")
+    int batchSize;
+
+    @ConfigProperty(name = "snabel.auth.last-login.shutdown-timeout", defaultValue = "PT10S")
+    Duration shutdownTimeout;
+
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Note a login, to be written with the next flush
+     */
+    public void record(Long userId, LocalDateTime loginTime) {
+        pending.merge(userId, loginTime, (noted, login) -> login.isAfter(noted) ? login : noted);
+    }
+
+    /**
+     * Logins noted but not yet written
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    @Scheduled(every = "${snabel.auth.last-login.flush-interval:5s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> scheduledFlush() {
+        return flush()
+                .onFailure().invoke(e -> LOG.warnf("Writing last login times failed, retrying: %s", e.getMessage()))
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        try {
+            flush().await().atMost(shutdownTimeout);
+        } catch (RuntimeException e) {
+            LOG.warnf("Last login times of %d users not written at shutdown: %s", pending.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Write the noted login times
+     *
+     * @return Number of users whose time was written
+     */
+    public Uni<Integer> flush() {
+        TreeMap<Long, LocalDateTime> batch = new TreeMap<>();
+        for (Long userId : pending.keySet()) {
+            LocalDateTime loginTime = pending.remove(userId);
+            if (loginTime != null) {
+                batch.put(userId, loginTime);
+            }
+        }
+        if (batch.isEmpty()) {
+            return Uni.createFrom().item(0);
+        }
+
+        List<List<Map.Entry<Long, LocalDateTime>>> chunks = new ArrayList<>();
+        List<Map.Entry<Long, LocalDateTime>> entries = new ArrayList<>(batch.entrySet());
+        for (int i = 0; i < entries.size(); i += batchSize) {
+            chunks.add(entries.subList(i, Math.min(i + batchSize, entries.size())));
+        }
+        return Multi.createFrom().iterable(chunks)
+                .onItem().transformToUniAndConcatenate(this::write)
+                .collect().last()
+                .replaceWith(batch.size())
+                .onFailure().invoke(() -> batch.forEach(this::record));
+    }
+
+    private Uni<Void> write(List<Map.Entry<Long, LocalDateTime>> chunk) {
+        StringBuilder values = new StringBuilder();
+        Tuple params = Tuple.tuple();
+        for (Map.Entry<Long, LocalDateTime> login : chunk) {
+            int next = params.size() + 1;
+            if (!values.isEmpty()) {
+                values.append(", ");
+            }
+            values.append("($").append(next).append("::BIGINT, $").append(next + 1).append("::TIMESTAMP)");
+            params.addLong(login.getKey()).addLocalDateTime(login.getValue());
+        }
+        return pool.preparedQuery(UPDATE_SQL.formatted(values))
+                .execute(params)
+                .replaceWithVoid();
+    }
+}
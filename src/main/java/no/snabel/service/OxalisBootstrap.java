@@ -0,0 +1,146 @@
+package no.snabel.service;
+
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import network.oxalis.outbound.OxalisOutboundComponent;
+import no.snabel.util.Unis;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Owns the Oxalis outbound component.
+ *
+ * Building the component (Guice graph, keystore and truststore loading) takes seconds, so it
+ * is kept out of bean construction. With {@code oxalis.init=background} (default) it is
+ * built on its own thread once the application has started; with {@code oxalis.init=lazy}
+ * it is built on first use. Either way startup and readiness no longer wait for it.
+ * A failed initialization is final until restart, as before.
+ */
+@ApplicationScoped
+public class OxalisBootstrap {
+
+    private static final Logger LOG = Logger.getLogger(OxalisBootstrap.class);
+
+    public enum State {
+        DISABLED, NOT_STARTED, STARTING, READY, FAILED
+    }
+
+    @ConfigProperty(name = "oxalis.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "oxalis.home", defaultValue = "/opt/oxalis-home")
+    String oxalisHome;
+
+    @ConfigProperty(name = "oxalis.init", defaultValue = "background")
+    String initMode;
+
+    private Supplier<OxalisOutboundComponent> factory = this::createComponent;
+
+    private volatile State state;
+    private volatile Duration initTime;
+    private volatile Throwable failure;
+    private CompletableFuture<OxalisOutboundComponent> component;
+
+    public OxalisBootstrap() {
+    }
+
+    OxalisBootstrap(boolean enabled, String initMode, Supplier<OxalisOutboundComponent> factory) {
+        this.enabled = enabled;
+        this.initMode = initMode;
+        this.factory = factory;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        state = enabled ? State.NOT_STARTED : State.DISABLED;
+        if (!enabled) {
+            LOG.info("Oxalis PEPPOL Access Point is disabled. Set oxalis.enabled=true to enable.");
+        }
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (enabled && "background".equals(initMode)) {
+            start();
+        }
+    }
+
+    /**
+     * The initialized component, starting initialization if it has not been started yet.
+     * When called on a Vert.x context the item is emitted back on that context.
+     */
+    public Uni<OxalisOutboundComponent> component() {
+        if (!enabled) {
+            return Uni.createFrom().failure(new UnsupportedOperationException(
+                    "PEPPOL sending is not enabled. Configure Oxalis and set oxalis.enabled=true"));
+        }
+        return Unis.onCallerContext(Uni.createFrom().completionStage(this::start));
+    }
+
+    synchronized CompletableFuture<OxalisOutboundComponent> start() {
+        if (component == null) {
+            state = State.STARTING;
+            component = CompletableFuture.supplyAsync(this::initialize, runnable -> {
+                Thread thread = new Thread(runnable, "oxalis-init");
+                thread.setDaemon(true);
+                thread.start();
+            });
+        }
+        return component;
+    }
+
+    private OxalisOutboundComponent initialize() {
+        long start = System.nanoTime();
+        try {
+            OxalisOutboundComponent created = factory.get();
+            initTime = Duration.ofNanos(System.nanoTime() - start);
+            state = State.READY;
+            LOG.infof("Oxalis PEPPOL Access Point initialized in %d ms (home: %s)", initTime.toMillis(), oxalisHome);
+            return created;
+        } catch (RuntimeException | Error e) {
+            initTime = Duration.ofNanos(System.nanoTime() - start);
+            failure = e;
+            state = State.FAILED;
+            LOG.errorf(e, "Failed to initialize Oxalis. PEPPOL sending will not be available.");
+            throw e;
+        }
+    }
+
+    private OxalisOutboundComponent createComponent() {
+        System.setProperty("oxalis.home", oxalisHome);
+        // Resolve receivers through PeppolEndpointCache instead of Oxalis' own lookup cache
+        System.setProperty("oxalis.module.snabel.lookup.class", PeppolLookupModule.class.getName());
+        System.setProperty("mode.default.oxalis.lookup.service", "snabel");
+        // This handles all internal dependency injection via Guice
+        return new OxalisOutboundComponent();
+    }
+
+    /**
+     * Whether transmissions can be attempted: enabled and not failed, though possibly still starting
+     */
+    public boolean isAvailable() {
+        return enabled && state != State.FAILED;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Time spent building the component, or null if it has not finished
+     */
+    public Duration initTime() {
+        return initTime;
+    }
+
+    public Throwable failure() {
+        return failure;
+    }
+}
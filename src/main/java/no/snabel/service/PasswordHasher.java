@@ -0,0 +1,113 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.elytron.security.common.BcryptUtil;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.util.BoundedWorkerPool;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bcrypt hashing and verification of passwords and client secrets on a bounded pool.
+ *
+ * A bcrypt check costs around 100 ms of CPU, so it is kept off the Vert.x event loop where it
+ * would stall every other request. At most {@code snabel.auth.workers} hashes run at once and up
+ * to {@code snabel.auth.queue-size} wait; beyond that calls fail with
+ * {@link RejectedExecutionException}, which the endpoints answer with 503 and Retry-After.
+ * Time spent waiting and hashing is published as the histograms snabel.auth.hash.wait and
+ * snabel.auth.hash.duration{operation=verify|hash}; pool and queue depth as executor.* metrics
+ * tagged name=auth.
+ */
+@ApplicationScoped
+public class PasswordHasher {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "snabel.auth.workers", defaultValue = "2")
+    int workers;
+
+    @ConfigProperty(name = "snabel.auth.queue-size", defaultValue = "32")
+    int queueSize;
+
+    private BoundedWorkerPool pool;
+    private Timer waitTimer;
+    private Timer verifyTimer;
+    private Timer hashTimer;
+
+    public PasswordHasher() {
+    }
+
+    PasswordHasher(MeterRegistry registry, int workers, int queueSize) {
+        this.registry = registry;
+        this.workers = workers;
+        this.queueSize = queueSize;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        pool = new BoundedWorkerPool(registry, "auth", workers, queueSize, "snabel.auth");
+        waitTimer = Timer.builder("snabel.auth.hash.wait")
+                .description("Time a bcrypt operation waited for a free worker")
+                .publishPercentileHistogram()
+                .register(registry);
+        verifyTimer = durationTimer("verify");
+        hashTimer = durationTimer("hash");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Whether the plain text matches the bcrypt hash
+     */
+    public Uni<Boolean> matches(String plain, String hash) {
+        return submit(verifyTimer, () -> BcryptUtil.matches(plain, hash));
+    }
+
+    /**
+     * Bcrypt hash of the plain text
+     */
+    public Uni<String> hash(String plain) {
+        return submit(hashTimer, () -> BcryptUtil.bcryptHash(plain));
+    }
+
+    /**
+     * Operations waiting for a free worker
+     */
+    public int queueDepth() {
+        return pool.queueDepth();
+    }
+
+    /**
+     * Run on the pool, recording how long the operation waited for a worker and how long it took
+     */
+    private <T> Uni<T> submit(Timer timer, Supplier<T> operation) {
+        return Uni.createFrom().deferred(() -> {
+            long queued = System.nanoTime();
+            return pool.submit(() -> {
+                waitTimer.record(System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+                return timer.record(operation);
+            });
+        });
+    }
+
+    private Timer durationTimer(String operation) {
+        return Timer.builder("snabel.auth.hash.duration")
+                .description("Time spent computing a bcrypt hash")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -1,15 +1,13 @@
 package no.snabel.service;
 
 import io.smallrye.mutiny.Uni;
-import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import network.oxalis.api.lang.OxalisTransmissionException;
 import network.oxalis.api.outbound.TransmissionRequest;
 import network.oxalis.api.outbound.TransmissionResponse;
-import network.oxalis.outbound.OxalisOutboundComponent;
+import network.oxalis.api.outbound.Transmitter;
 import network.oxalis.outbound.transmission.TransmissionRequestBuilder;
-import network.oxalis.outbound.transmission.Transmitter;
 import network.oxalis.vefa.peppol.common.model.*;
 import no.snabel.model.Invoice;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -34,61 +32,38 @@ import java.time.LocalDateTime;
  * @see <a href="https://github.com/OxalisCommunity/oxalis">Oxalis Documentation</a>
  */
 @ApplicationScoped
-public class PeppolAccessPointService {
+public class PeppolAccessPointService implements InvoiceTransmitter {
 
     private static final Logger LOG = Logger.getLogger(PeppolAccessPointService.class);
 
     @Inject
     EHFInvoiceService ehfService;
 
-    @ConfigProperty(name = "oxalis.enabled", defaultValue = "false")
-    boolean oxalisEnabled;
+    @Inject
+    DocumentWorkerPool workerPool;
 
-    @ConfigProperty(name = "oxalis.home", defaultValue = "/opt/oxalis-home")
-    String oxalisHome;
+    @Inject
+    PeppolEndpointCache endpointCache;
+
+    @Inject
+    OxalisBootstrap oxalis;
 
     @ConfigProperty(name = "oxalis.participant.identifier")
     String defaultParticipantId;
 
-    // Oxalis component - initialized once
-    private OxalisOutboundComponent oxalisComponent;
-
-    @PostConstruct
-    void init() {
-        if (oxalisEnabled) {
-            try {
-                // Set Oxalis home system property
-                System.setProperty("oxalis.home", oxalisHome);
-
-                // Initialize Oxalis component
-                // This handles all internal dependency injection via Guice
-                oxalisComponent = new OxalisOutboundComponent();
-                LOG.infof("Oxalis PEPPOL Access Point initialized (home: %s)", oxalisHome);
-            } catch (Exception e) {
-                LOG.errorf(e, "Failed to initialize Oxalis. PEPPOL sending will not be available.");
-                oxalisEnabled = false;
-            }
-        } else {
-            LOG.info("Oxalis PEPPOL Access Point is disabled. Set oxalis.enabled=true to enable.");
-        }
-    }
-
     /**
      * Send invoice via PEPPOL network using Oxalis API
      *
      * @param invoice Invoice to send
      * @return Result of PEPPOL transmission
      */
+    @Override
     public Uni<PeppolSendResult> sendInvoice(Invoice invoice) {
-        if (!oxalisEnabled || oxalisComponent == null) {
-            return Uni.createFrom().failure(
-                new UnsupportedOperationException(
-                    "PEPPOL sending is not enabled. Configure Oxalis and set oxalis.enabled=true"
-                )
-            );
-        }
-
-        return Uni.createFrom().item(() -> {
+        // Waits for Oxalis if it is still initializing. XML generation and the AS4 exchange
+        // block, so they run on the document worker pool
+        return oxalis.component().chain(oxalisComponent -> workerPool.submit(() -> {
+            ParticipantIdentifier receiver = null;
+            boolean resolved = false;
             try {
                 LOG.infof("Sending invoice %s to PEPPOL endpoint %s",
                     invoice.invoiceNumber, invoice.clientEndpointId);
@@ -97,22 +72,23 @@ public class PeppolAccessPointService {
                 String ehfXml = ehfService.generateEHF(invoice);
                 InputStream xmlStream = new ByteArrayInputStream(ehfXml.getBytes(StandardCharsets.UTF_8));
 
-                // 2. Get TransmissionRequestBuilder from Oxalis component
-                TransmissionRequestBuilder requestBuilder = oxalisComponent.getTransmissionRequestBuilder();
-
-                // 3. Build transmission request with payload and metadata
+                // 2. Resolve sender and receiver
                 ParticipantIdentifier sender = parseParticipantId(
                     invoice.customer.organizationNumber,
                     invoice.customer.endpointScheme
                 );
 
-                ParticipantIdentifier receiver = parseParticipantId(
+                receiver = parseParticipantId(
                     invoice.clientOrganizationNumber != null
                         ? invoice.clientOrganizationNumber
                         : invoice.clientEndpointId,
                     invoice.clientEndpointScheme
                 );
 
+                // 3. Build transmission request with payload and metadata. Oxalis resolves the
+                // receiver's access point through the PeppolEndpointCache (see PeppolLookupModule)
+                TransmissionRequestBuilder requestBuilder = oxalisComponent.getTransmissionRequestBuilder();
+
                 TransmissionRequest request = requestBuilder
                     .payLoad(xmlStream)
                     .sender(sender)
@@ -120,6 +96,7 @@ public class PeppolAccessPointService {
                     .documentType(getEHFDocumentType())
                     .processType(getEHFProcessType())
                     .build();
+                resolved = true;
 
                 // 4. Get Transmitter from Oxalis component
                 Transmitter transmitter = oxalisComponent.getTransmitter();
@@ -130,7 +107,7 @@ public class PeppolAccessPointService {
                 // 6. Map response to result
                 PeppolSendResult result = new PeppolSendResult();
                 result.success = true;
-                result.messageId = response.getHeader().getInstanceId().getValue();
+                result.messageId = response.getHeader().getIdentifier().getIdentifier();
                 result.transmissionId = response.getTransmissionIdentifier() != null
                     ? response.getTransmissionIdentifier().toString()
                     : null;
@@ -149,12 +126,17 @@ public class PeppolAccessPointService {
 
             } catch (OxalisTransmissionException e) {
                 LOG.errorf(e, "PEPPOL transmission failed for invoice %s", invoice.invoiceNumber);
+                // The receiver may have moved access point, so look it up again next time. A failed
+                // lookup stays cached for the negative TTL
+                if (resolved) {
+                    endpointCache.invalidate(receiver);
+                }
                 throw new RuntimeException("PEPPOL transmission failed: " + e.getMessage(), e);
             } catch (Exception e) {
                 LOG.errorf(e, "Unexpected error sending invoice %s via PEPPOL", invoice.invoiceNumber);
                 throw new RuntimeException("Failed to send via PEPPOL: " + e.getMessage(), e);
             }
-        });
+        }));
     }
 
     /**
@@ -164,7 +146,7 @@ public class PeppolAccessPointService {
      * @param scheme PEPPOL scheme (default: 0192 for Norwegian org numbers)
      * @return ParticipantIdentifier
      */
-    private ParticipantIdentifier parseParticipantId(String identifier, String scheme) {
+    public static ParticipantIdentifier parseParticipantId(String identifier, String scheme) {
         if (identifier == null || identifier.isEmpty()) {
             throw new IllegalArgumentException("Participant identifier cannot be empty");
         }
@@ -205,10 +187,12 @@ public class PeppolAccessPointService {
     }
 
     /**
-     * Check if Oxalis is properly configured and ready
+     * Check if Oxalis is enabled and has not failed to initialize. Sending while it is
+     * still initializing waits for it.
      */
+    @Override
     public boolean isReady() {
-        return oxalisEnabled && oxalisComponent != null;
+        return oxalis.isAvailable();
     }
 
     /**
@@ -0,0 +1,138 @@
+package no.snabel.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import network.oxalis.vefa.peppol.common.model.DocumentTypeIdentifier;
+import network.oxalis.vefa.peppol.common.model.Endpoint;
+import network.oxalis.vefa.peppol.common.model.ParticipantIdentifier;
+import network.oxalis.vefa.peppol.common.model.ProcessIdentifier;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+
+/**
+ * In-process cache of resolved PEPPOL receiver endpoints, keyed by receiver, document type and
+ * process. Oxalis looks endpoints up through it, see {@link CachedEndpointLookupService}.
+ *
+ * Resolved endpoints are kept for {@code snabel.peppol.lookup.ttl}. Failed lookups (receiver
+ * not registered for the document type, SMP unreachable) are cached for the shorter
+ * {@code snabel.peppol.lookup.negative-ttl}, so a burst of invoices to an unknown receiver
+ * costs one lookup. Hits and misses are published as cache.gets{cache=peppol-endpoints}.
+ */
+@ApplicationScoped
+public class PeppolEndpointCache {
+
+    private static final Logger LOG = Logger.getLogger(PeppolEndpointCache.class);
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "snabel.peppol.lookup.ttl", defaultValue = "PT1H")
+    Duration ttl;
+
+    @ConfigProperty(name = "snabel.peppol.lookup.negative-ttl", defaultValue = "PT5M")
+    Duration negativeTtl;
+
+    @ConfigProperty(name = "snabel.peppol.lookup.max-size", defaultValue = "10000")
+    long maxSize;
+
+    private Cache<EndpointKey, LookupResult> cache;
+
+    public PeppolEndpointCache() {
+    }
+
+    PeppolEndpointCache(MeterRegistry registry, Duration ttl, Duration negativeTtl, long maxSize) {
+        this.registry = registry;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxSize = maxSize;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<EndpointKey, LookupResult>() {
+                    @Override
+                    public long expireAfterCreate(EndpointKey key, LookupResult result, long currentTime) {
+                        return (result.endpoint() != null ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(EndpointKey key, LookupResult result, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, result, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(EndpointKey key, LookupResult result, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "peppol-endpoints");
+    }
+
+    /**
+     * The receiver's endpoint for the document type, from the cache or resolved with the given lookup.
+     * Concurrent callers for the same key share one lookup.
+     *
+     * @throws EndpointNotFoundException if the lookup failed now or within the negative TTL
+     */
+    public Endpoint resolve(ParticipantIdentifier receiver, DocumentTypeIdentifier documentType,
+                            ProcessIdentifier process, EndpointLookup lookup) {
+        EndpointKey key = new EndpointKey(receiver.toString(), documentType.toString(), process.toString());
+        LookupResult result = cache.get(key, k -> {
+            try {
+                return new LookupResult(lookup.lookup(receiver, documentType, process), null);
+            } catch (Exception e) {
+                LOG.warnf("Endpoint lookup failed for %s (%s): %s", receiver, documentType, e.getMessage());
+                return new LookupResult(null, e.getMessage());
+            }
+        });
+        if (result.endpoint() == null) {
+            throw new EndpointNotFoundException("No PEPPOL endpoint for " + receiver + ": " + result.error());
+        }
+        return result.endpoint();
+    }
+
+    /**
+     * Forget everything cached for a receiver, e.g. after it moved access point
+     */
+    public void invalidate(ParticipantIdentifier receiver) {
+        String participant = receiver.toString();
+        cache.asMap().keySet().removeIf(key -> key.receiver().equals(participant));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private record EndpointKey(String receiver, String documentType, String process) {
+    }
+
+    private record LookupResult(Endpoint endpoint, String error) {
+    }
+
+    /**
+     * The receiver could not be resolved to an access point
+     */
+    public static class EndpointNotFoundException extends RuntimeException {
+        public EndpointNotFoundException(String message) {
+            super(message);
+        }
+    }
+}
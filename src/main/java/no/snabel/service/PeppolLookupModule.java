@@ -0,0 +1,19 @@
+package no.snabel.service;
+
+import network.oxalis.api.lookup.LookupService;
+import network.oxalis.commons.guice.OxalisModule;
+
+/**
+ * Oxalis module adding the "snabel" lookup service, see {@link CachedEndpointLookupService}.
+ *
+ * Registered and selected by {@link OxalisBootstrap} through the
+ * {@code oxalis.module.snabel.lookup.class} and {@code mode.default.oxalis.lookup.service}
+ * settings, in place of Oxalis' own fixed five minute lookup cache.
+ */
+public class PeppolLookupModule extends OxalisModule {
+
+    @Override
+    protected void configure() {
+        bindTyped(LookupService.class, CachedEndpointLookupService.class);
+    }
+}
@@ -0,0 +1,210 @@
+package no.snabel.service;
+
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Tuple;
+import io.vertx.sqlclient.data.Numeric;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.dto.TrialBalance;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Monthly balance snapshots per account (account_period_balances).
+ *
+ * Posting records each account's movements for the months it touches, inside the posting
+ * transaction: missing months are created with the previous month's closing as opening, then
+ * the posted month and every later month are shifted by the movement. A trial balance as of a
+ * date then reads one snapshot per account plus the movements of that date's month, however
+ * long the ledger is. Snapshots can be rebuilt from journal_entry_lines per customer, and are
+ * rebuilt for every customer by a nightly job ({@code snabel.reports.rebuild-cron}).
+ */
+@ApplicationScoped
+public class PeriodBalanceService {
+
+    private static final Logger LOG = Logger.getLogger(PeriodBalanceService.class);
+
+    private static final String INSERT_MISSING_SQL = """
+            INSERT INTO account_period_balances (account_id, customer_id, period, opening, closing)
+            SELECT v.account_id, $1, v.period, COALESCE(prev.closing, 0), COALESCE(prev.closing, 0)
+            FROM unnest($2::BIGINT[], $3::DATE[]) AS v(account_id, period)
+                LEFT JOIN LATERAL (
+                    SELECT closing FROM account_period_balances p
+                    WHERE p.account_id = v.account_id AND p.period < v.period
+                    ORDER BY p.period DESC LIMIT 1) prev ON true
+            ON CONFLICT (account_id, period) DO NOTHING
+            """;
+
+    private static final String APPLY_SQL = """
+            UPDATE account_period_balances b
+            SET opening = b.opening + d.earlier,
+                debit = b.debit + d.debit,
+                credit = b.credit + d.credit,
+                closing = b.closing + d.earlier + d.debit - d.credit
+            FROM (
+                SELECT p.account_id, p.period,
+                       SUM(CASE WHEN v.period < p.period THEN v.debit - v.credit ELSE 0 END) AS earlier,
+                       SUM(CASE WHEN v.period = p.period THEN v.debit ELSE 0 END) AS debit,
+                       SUM(CASE WHEN v.period = p.period THEN v.credit ELSE 0 END) AS credit
+                FROM account_period_balances p
+                    JOIN unnest($1::BIGINT[], $2::DATE[], $3::NUMERIC[], $4::NUMERIC[])
+                        AS v(account_id, period, debit, credit)
+                    ON p.account_id = v.account_id AND p.period >= v.period
+                GROUP BY p.account_id, p.period
+            ) d
+            WHERE b.account_id = d.account_id AND b.period = d.period
+            """;
+
+    // The row every posting for the customer locks first, see JournalPostingService
+    private static final String LOCK_POSTING_SQL = """
+            INSERT INTO journal_entry_sequences AS s (customer_id) VALUES ($1)
+            ON CONFLICT (customer_id) DO UPDATE SET last_number = s.last_number
+            """;
+
+    private static final String DELETE_SQL = """
+            DELETE FROM account_period_balances WHERE customer_id = $1
+            """;
+
+    private static final String REBUILD_SQL = """
+            INSERT INTO account_period_balances (account_id, customer_id, period, opening, debit, credit, closing)
+            SELECT account_id, $1, period,
+                   SUM(debit - credit) OVER w - (debit - credit), debit, credit, SUM(debit - credit) OVER w
+            FROM (
+                SELECT l.account_id, date_trunc('month', e.entry_date)::DATE AS period,
+                       SUM(l.debit_amount) AS debit, SUM(l.credit_amount) AS credit
+                FROM journal_entries e
+                JOIN journal_entry_lines l ON l.journal_entry_id = e.id
+                WHERE e.customer_id = $1 AND e.posted = true
+                GROUP BY l.account_id, date_trunc('month', e.entry_date)
+            ) months
+            WINDOW w AS (PARTITION BY account_id ORDER BY period)
+            """;
+
+    private static final String TRIAL_BALANCE_SQL = """
+            WITH opening AS (
+                SELECT a.id AS account_id, s.closing
+                FROM accounts a
+                    CROSS JOIN LATERAL (
+                        SELECT closing FROM account_period_balances p
+                        WHERE p.account_id = a.id AND p.period < $2
+                        ORDER BY p.period DESC LIMIT 1) s
+                WHERE a.customer_id = $1
+            ),
+            open_month AS (
+                SELECT l.account_id, SUM(l.debit_amount - l.credit_amount) AS movement
+                FROM journal_entries e
+                JOIN journal_entry_lines l ON l.journal_entry_id = e.id
+                WHERE e.customer_id = $1 AND e.posted = true AND e.entry_date >= $2 AND e.entry_date <= $3
+                GROUP BY l.account_id
+            )
+            SELECT a.id, a.account_number, a.account_name, a.account_type,
+                   COALESCE(o.closing, 0) + COALESCE(m.movement, 0) AS balance
+            FROM accounts a
+                LEFT JOIN opening o ON o.account_id = a.id
+                LEFT JOIN open_month m ON m.account_id = a.id
+            WHERE a.customer_id = $1 AND (o.account_id IS NOT NULL OR m.account_id IS NOT NULL)
+            ORDER BY a.account_number
+            """;
+
+    @Inject
+    Pool pool;
+
+    /**
+     * Apply posted movements to the snapshots. Runs on the posting connection, after the
+     * affected accounts have been locked, which serializes concurrent updates per account.
+     */
+    public Uni<Void> record(SqlConnection connection, Long customerId, List<Movement> movements) {
+        if (movements.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        Long[] accounts = new Long[movements.size()];
+        LocalDate[] periods = new LocalDate[movements.size()];
+        Numeric[] debits = new Numeric[movements.size()];
+        Numeric[] credits = new Numeric[movements.size()];
+        for (int i = 0; i < movements.size(); i++) {
+            Movement movement = movements.get(i);
+            accounts[i] = movement.accountId();
+            periods[i] = movement.period();
+            debits[i] = Numeric.create(movement.debit());
+            credits[i] = Numeric.create(movement.credit());
+        }
+
+        return connection.preparedQuery(INSERT_MISSING_SQL)
+                .execute(Tuple.tuple().addLong(customerId).addArrayOfLong(accounts).addArrayOfLocalDate(periods))
+                .chain(() -> connection.preparedQuery(APPLY_SQL)
+                        .execute(Tuple.tuple()
+                                .addArrayOfLong(accounts)
+                                .addArrayOfLocalDate(periods)
+                                .addValue(debits)
+                                .addValue(credits)))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Recompute a customer's snapshots from the posted journal entry lines. Holds the customer's
+     * journal_entry_sequences row for the duration, the first lock a posting takes, so postings
+     * wait for the rebuild (and the rebuild for them) without any other locks to deadlock on.
+     *
+     * @return Number of snapshots written
+     */
+    public Uni<Integer> rebuild(Long customerId) {
+        Tuple customer = Tuple.of(customerId);
+        return pool.withTransaction(connection -> connection.preparedQuery(LOCK_POSTING_SQL).execute(customer)
+                .chain(() -> connection.preparedQuery(DELETE_SQL).execute(customer))
+                .chain(() -> connection.preparedQuery(REBUILD_SQL).execute(customer))
+                .map(rows -> rows.rowCount()));
+    }
+
+    @Scheduled(cron = "${snabel.reports.rebuild-cron:0 30 2 * * ?}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> rebuildAll() {
+        return pool.query("SELECT id FROM customers ORDER BY id").execute()
+                .onItem().transformToMulti(rows -> Multi.createFrom().iterable(rows))
+                .map(row -> row.getLong("id"))
+                .onItem().transformToUniAndConcatenate(customerId -> rebuild(customerId)
+                        .onFailure().invoke(e -> LOG.errorf(e, "Rebuilding balance snapshots failed for customer %d", customerId))
+                        .onFailure().recoverWithItem(0))
+                .collect().with(Collectors.summingInt(Integer::intValue))
+                .invoke(count -> LOG.infof("Rebuilt %d balance snapshots", count))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Balance of every account with activity up to and including the given date
+     */
+    public Uni<TrialBalance> trialBalance(Long customerId, LocalDate asOf) {
+        return pool.preparedQuery(TRIAL_BALANCE_SQL)
+                .execute(Tuple.of(customerId, asOf.withDayOfMonth(1), asOf))
+                .map(rows -> {
+                    List<TrialBalance.Line> lines = new ArrayList<>();
+                    for (Row row : rows) {
+                        BigDecimal balance = row.getBigDecimal("balance");
+                        if (balance.signum() == 0) {
+                            continue;
+                        }
+                        lines.add(new TrialBalance.Line(
+                                row.getLong("id"),
+                                row.getString("account_number"),
+                                row.getString("account_name"),
+                                row.getString("account_type"),
+                                balance));
+                    }
+                    return new TrialBalance(asOf, lines);
+                });
+    }
+
+    /**
+     * Debit and credit posted to an account in one month
+     */
+    public record Movement(Long accountId, LocalDate period, BigDecimal debit, BigDecimal credit) {
+    }
+}
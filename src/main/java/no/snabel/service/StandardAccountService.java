@@ -0,0 +1,105 @@
+package no.snabel.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The NS 4102 standard chart of accounts (standard_accounts), held in memory.
+ *
+ * The chart is reference data seeded by migrations, so it is read once at startup and served
+ * from memory afterwards. If the database is not reachable at startup, the first request loads
+ * it instead. New customers get their own copy of the chart with {@link #provision}.
+ */
+@ApplicationScoped
+public class StandardAccountService {
+
+    private static final Logger LOG = Logger.getLogger(StandardAccountService.class);
+
+    private static final String CHART_SQL = """
+            SELECT id, account_number, account_name, account_type, account_class, vat_code, description
+            FROM standard_accounts
+            WHERE active = true
+            ORDER BY account_number
+            """;
+
+    private static final String PROVISION_SQL = """
+            INSERT INTO accounts (customer_id, standard_account_id, account_number, account_name, account_type,
+                                  vat_code, description)
+            SELECT $1, id, account_number, account_name, account_type, vat_code, description
+            FROM standard_accounts
+            WHERE active = true
+            ON CONFLICT (customer_id, account_number) DO NOTHING
+            """;
+
+    @Inject
+    Pool pool;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    AccountCache accountCache;
+
+    private volatile StandardChart chart;
+
+    void onStart(@Observes StartupEvent event) {
+        chart().subscribe().with(
+                loaded -> LOG.infof("Loaded %d standard accounts", loaded.accounts().size()),
+                e -> LOG.warnf("Standard accounts not loaded at startup, retrying on first use: %s", e.getMessage()));
+    }
+
+    public Uni<StandardChart> chart() {
+        StandardChart loaded = chart;
+        if (loaded != null) {
+            return Uni.createFrom().item(loaded);
+        }
+        return pool.query(CHART_SQL).execute()
+                .map(rows -> {
+                    List<StandardChart.Account> accounts = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        accounts.add(new StandardChart.Account(
+                                row.getLong("id"),
+                                row.getString("account_number"),
+                                row.getString("account_name"),
+                                row.getString("account_type"),
+                                row.getString("account_class"),
+                                row.getString("vat_code"),
+                                row.getString("description")));
+                    }
+                    try {
+                        return new StandardChart(accounts, objectMapper.writeValueAsBytes(accounts));
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalStateException("Could not serialize the standard accounts", e);
+                    }
+                })
+                .invoke(loadedChart -> chart = loadedChart);
+    }
+
+    /**
+     * Give a customer the standard chart: one account per standard account it does not already
+     * have an account number for, copied in a single statement.
+     *
+     * @return Number of accounts created
+     */
+    public Uni<Integer> provision(Long customerId) {
+        return pool.preparedQuery(PROVISION_SQL).execute(Tuple.of(customerId))
+                .map(rows -> rows.rowCount())
+                .invoke(created -> {
+                    if (created > 0) {
+                        accountCache.invalidate(customerId);
+                    }
+                });
+    }
+}
@@ -0,0 +1,90 @@
+package no.snabel.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The NS 4102 standard chart of accounts, indexed by account number, class and type.
+ *
+ * Immutable; the chart only changes with a migration, so it is loaded once and shared. The
+ * full list is kept serialized, and the version is a hash of that serialization, used as a
+ * strong ETag for every view of the chart.
+ */
+public final class StandardChart {
+
+    private final List<Account> accounts;
+    private final Map<String, Account> byNumber;
+    private final Map<String, List<Account>> byClass;
+    private final Map<String, List<Account>> byType;
+    private final byte[] json;
+    private final String version;
+
+    /**
+     * @param accounts Ordered by account number
+     * @param json The accounts serialized as a JSON array
+     */
+    StandardChart(List<Account> accounts, byte[] json) {
+        this.accounts = List.copyOf(accounts);
+        this.byNumber = this.accounts.stream()
+                .collect(Collectors.toUnmodifiableMap(Account::accountNumber, Function.identity()));
+        this.byClass = group(this.accounts, Account::accountClass);
+        this.byType = group(this.accounts, Account::accountType);
+        this.json = json;
+        this.version = sha256(json);
+    }
+
+    public List<Account> accounts() {
+        return accounts;
+    }
+
+    public Account byNumber(String accountNumber) {
+        return byNumber.get(accountNumber);
+    }
+
+    public List<Account> byClass(String accountClass) {
+        return byClass.getOrDefault(accountClass, List.of());
+    }
+
+    public List<Account> byType(String accountType) {
+        return byType.getOrDefault(accountType, List.of());
+    }
+
+    /**
+     * All accounts as a JSON array, ready to be sent
+     */
+    public byte[] json() {
+        return json.clone();
+    }
+
+    public String version() {
+        return version;
+    }
+
+    private static Map<String, List<Account>> group(List<Account> accounts, Function<Account, String> key) {
+        Map<String, List<Account>> groups = accounts.stream()
+                .filter(account -> key.apply(account) != null)
+                .collect(Collectors.groupingBy(key, LinkedHashMap::new, Collectors.toUnmodifiableList()));
+        return Map.copyOf(groups);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A standard account as served to clients
+     */
+    public record Account(Long id, String accountNumber, String accountName, String accountType,
+                          String accountClass, String vatCode, String description) {
+    }
+}
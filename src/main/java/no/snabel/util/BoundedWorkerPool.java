@@ -0,0 +1,68 @@
+package no.snabel.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.smallrye.mutiny.Uni;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Fixed-size pool of daemon threads for blocking work that must stay off the Vert.x event loop.
+ *
+ * At most {@code workers} tasks run at once and up to {@code queueSize} wait; beyond that new
+ * tasks fail with {@link RejectedExecutionException} instead of queueing without bound. Threads
+ * are named {@code <name>-<n>}, pool and queue depth are published as executor.* metrics tagged
+ * name=&lt;name&gt;, and rejections are counted as {@code <metricPrefix>.rejected}.
+ */
+public class BoundedWorkerPool {
+
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService executor;
+    private final Counter rejected;
+
+    public BoundedWorkerPool(MeterRegistry registry, String name, int workers, int queueSize, String metricPrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor = ExecutorServiceMetrics.monitor(registry, pool, name);
+        rejected = registry.counter(metricPrefix + ".rejected");
+    }
+
+    /**
+     * Run a blocking task on the pool. When called on a Vert.x context the result is
+     * emitted back on that context, so the caller can continue with reactive database calls.
+     */
+    public <T> Uni<T> submit(Supplier<T> task) {
+        return Unis.onCallerContext(Uni.createFrom().item(task)
+                .runSubscriptionOn(command -> {
+                    try {
+                        executor.execute(command);
+                    } catch (RejectedExecutionException e) {
+                        rejected.increment();
+                        throw e;
+                    }
+                }));
+    }
+
+    /**
+     * Tasks waiting for a free worker
+     */
+    public int queueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,41 @@
+package no.snabel.util;
+
+/**
+ * JSON string literals for output that is assembled by hand rather than through Jackson,
+ * such as JWT claims and NDJSON exports.
+ */
+public final class JsonText {
+
+    private JsonText() {
+    }
+
+    /**
+     * Append {@code value} as a quoted and escaped JSON string, or null
+     */
+    public static StringBuilder append(StringBuilder json, String value) {
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append("\\u00")
+                                .append(Character.forDigit(c >> 4, 16))
+                                .append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"');
+    }
+}
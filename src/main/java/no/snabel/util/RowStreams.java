@@ -0,0 +1,44 @@
+package no.snabel.util;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.SqlConnection;
+import io.vertx.mutiny.sqlclient.Transaction;
+import io.vertx.mutiny.sqlclient.Tuple;
+
+/**
+ * Streams query results through a PostgreSQL server-side cursor.
+ *
+ * Rows are fetched in batches of {@code fetchSize} as the subscriber requests them, so
+ * memory stays constant regardless of the result size. The connection is held for the
+ * lifetime of the stream and released on completion, failure or cancellation.
+ */
+public final class RowStreams {
+
+    private RowStreams() {
+    }
+
+    public static Multi<Row> stream(Pool pool, String sql, Tuple args, int fetchSize) {
+        return Multi.createFrom().resourceFromUni(
+                        () -> pool.getConnection()
+                                .chain(connection -> connection.begin()
+                                        .onFailure().call(connection::close)
+                                        .map(transaction -> new Cursor(connection, transaction))),
+                        cursor -> cursor.connection().prepare(sql).toMulti()
+                                .onItem().transformToMultiAndConcatenate(statement ->
+                                        statement.createStream(fetchSize, args).toMulti()))
+                .withFinalizer(RowStreams::release);
+    }
+
+    // Cursors only live inside a transaction; nothing was written, so just roll it back
+    private static Uni<Void> release(Cursor cursor) {
+        return cursor.transaction().rollback()
+                .onFailure().recoverWithNull()
+                .eventually(cursor.connection()::close);
+    }
+
+    private record Cursor(SqlConnection connection, Transaction transaction) {
+    }
+}
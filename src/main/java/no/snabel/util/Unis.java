@@ -0,0 +1,42 @@
+package no.snabel.util;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.util.function.Function;
+
+/**
+ * Bridges work that completes off the Vert.x event loop back into reactive code.
+ *
+ * Results from worker threads, cache loads and other futures arrive on whichever thread
+ * completed them. Hibernate Reactive and the reactive SQL client must be used from the
+ * request's Vert.x context, so callers that continue with database work hop back first.
+ */
+public final class Unis {
+
+    private Unis() {
+    }
+
+    /**
+     * The item or failure of {@code result}, emitted on the Vert.x context of the calling
+     * thread. Unchanged when not called on a Vert.x context.
+     */
+    public static <T> Uni<T> onCallerContext(Uni<T> result) {
+        Context context = Vertx.currentContext();
+        if (context == null) {
+            return result;
+        }
+        return result.emitOn(command -> context.runOnContext(ignored -> command.run()));
+    }
+
+    /**
+     * The cached value, loaded if missing. Concurrent callers for the same key share one load,
+     * and a load that fails is not cached. Emitted on the calling Vert.x context.
+     */
+    public static <K, V> Uni<V> cached(AsyncCache<K, V> cache, K key, Function<K, Uni<V>> loader) {
+        return onCallerContext(Uni.createFrom().completionStage(
+                () -> cache.get(key, (k, executor) -> loader.apply(k).subscribeAsCompletionStage())));
+    }
+}
@@ -0,0 +1,31 @@
+-- Transactional outbox for invoice delivery
+-- A row is written in the same transaction that marks an invoice as SENT and is
+-- drained by InvoiceDeliveryDispatcher, which transmits the invoice and retries with backoff
+
+CREATE TABLE invoice_deliveries (
+    id BIGSERIAL PRIMARY KEY,
+    invoice_id BIGINT NOT NULL REFERENCES invoices(id) ON DELETE CASCADE,
+    customer_id BIGINT NOT NULL REFERENCES customers(id),
+    channel VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    locked_until TIMESTAMP,
+    last_error TEXT,
+    message_id VARCHAR(255),
+    transmission_id VARCHAR(255),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    delivered_at TIMESTAMP
+);
+
+-- The dispatcher only scans deliveries that still have work to do
+CREATE INDEX idx_invoice_deliveries_due
+    ON invoice_deliveries(next_attempt_at)
+    WHERE status IN ('PENDING', 'IN_PROGRESS');
+
+CREATE INDEX idx_invoice_deliveries_invoice ON invoice_deliveries(invoice_id);
+
+COMMENT ON TABLE invoice_deliveries IS 'Outbox of invoice transmissions (PEPPOL EHF) with retry state';
+COMMENT ON COLUMN invoice_deliveries.status IS 'PENDING, IN_PROGRESS, DELIVERED or DEAD (gave up after max attempts)';
+COMMENT ON COLUMN invoice_deliveries.locked_until IS 'Lease of the dispatcher working on the delivery; expired leases are picked up again';
@@ -0,0 +1,17 @@
+-- Gapless journal entry (voucher) numbers per customer
+-- JournalPostingService increments last_number in the same statement that inserts the entries,
+-- so the row lock serializes concurrent posting for a customer and a rolled back posting
+-- releases its numbers again
+
+CREATE TABLE journal_entry_sequences (
+    customer_id BIGINT PRIMARY KEY REFERENCES customers(id) ON DELETE CASCADE,
+    last_number BIGINT NOT NULL DEFAULT 0
+);
+
+-- Continue after the highest numeric entry number already in use
+INSERT INTO journal_entry_sequences (customer_id, last_number)
+SELECT customer_id, COALESCE(MAX(CASE WHEN entry_number ~ '^[0-9]{1,18}$' THEN entry_number::BIGINT END), 0)
+FROM journal_entries
+GROUP BY customer_id;
+
+COMMENT ON TABLE journal_entry_sequences IS 'Last assigned journal entry number per customer';
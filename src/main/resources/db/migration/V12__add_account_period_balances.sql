@@ -0,0 +1,37 @@
+-- Monthly balance snapshots per account
+-- Maintained by JournalPostingService as entries are posted and rebuilt from journal_entry_lines by
+-- PeriodBalanceService. Amounts are debit minus credit; opening is the closing of the previous month
+-- with activity, so a trial balance as of any date needs one snapshot per account plus the
+-- movements of that date's month
+
+CREATE TABLE account_period_balances (
+    account_id BIGINT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    customer_id BIGINT NOT NULL REFERENCES customers(id) ON DELETE CASCADE,
+    period DATE NOT NULL,  -- First day of the month
+    opening DECIMAL(19, 2) NOT NULL DEFAULT 0.00,
+    debit DECIMAL(19, 2) NOT NULL DEFAULT 0.00,
+    credit DECIMAL(19, 2) NOT NULL DEFAULT 0.00,
+    closing DECIMAL(19, 2) NOT NULL DEFAULT 0.00,
+    PRIMARY KEY (account_id, period)
+);
+
+CREATE INDEX idx_account_period_balances_customer ON account_period_balances(customer_id, period);
+
+-- The open month's movements are read by customer and date
+CREATE INDEX idx_journal_entries_customer_date ON journal_entries(customer_id, entry_date);
+
+-- Snapshots for entries posted before this migration
+INSERT INTO account_period_balances (account_id, customer_id, period, opening, debit, credit, closing)
+SELECT account_id, customer_id, period,
+       SUM(debit - credit) OVER w - (debit - credit), debit, credit, SUM(debit - credit) OVER w
+FROM (
+    SELECT l.account_id, e.customer_id, date_trunc('month', e.entry_date)::DATE AS period,
+           SUM(l.debit_amount) AS debit, SUM(l.credit_amount) AS credit
+    FROM journal_entry_lines l
+    JOIN journal_entries e ON e.id = l.journal_entry_id
+    WHERE e.posted = true
+    GROUP BY l.account_id, e.customer_id, date_trunc('month', e.entry_date)
+) months
+WINDOW w AS (PARTITION BY account_id ORDER BY period);
+
+COMMENT ON TABLE account_period_balances IS 'Monthly opening, movements and closing per account (debit minus credit)';
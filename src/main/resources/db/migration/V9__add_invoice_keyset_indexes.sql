@@ -0,0 +1,12 @@
+-- Composite indexes backing keyset (cursor) pagination of GET /api/invoices
+-- Pages are ordered by (invoice_date, id) descending within a customer, optionally filtered by status
+
+CREATE INDEX IF NOT EXISTS idx_invoices_customer_status_date_id
+    ON invoices(customer_id, status, invoice_date, id);
+
+-- Unfiltered listing cannot seek through the status column, so it gets its own index
+CREATE INDEX IF NOT EXISTS idx_invoices_customer_date_id
+    ON invoices(customer_id, invoice_date, id);
+
+COMMENT ON INDEX idx_invoices_customer_status_date_id IS 'Keyset pagination of invoices filtered by status';
+COMMENT ON INDEX idx_invoices_customer_date_id IS 'Keyset pagination of all invoices for a customer';
@@ -0,0 +1,49 @@
+package no.snabel.benchmark;
+
+import no.snabel.model.Invoice;
+import no.snabel.service.InvoicePdfService;
+import no.snabel.service.TestInvoices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PDFs per second for a small and a large invoice.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=InvoicePdfBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class InvoicePdfBenchmark {
+
+    @Param({"5", "200"})
+    int lineCount;
+
+    private InvoicePdfService pdfService;
+    private Invoice invoice;
+
+    @Setup
+    public void setUp() {
+        pdfService = new InvoicePdfService();
+        invoice = TestInvoices.invoice(lineCount);
+    }
+
+    @Benchmark
+    public byte[] generatePdf() {
+        return pdfService.generatePdf(invoice);
+    }
+}
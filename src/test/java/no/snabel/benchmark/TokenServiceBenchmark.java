@@ -0,0 +1,74 @@
+package no.snabel.benchmark;
+
+import io.smallrye.jwt.build.Jwt;
+import no.snabel.security.TokenService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokens per second from {@link TokenService}, next to the same user token built with the
+ * SmallRye JWT builder, on four threads as during a login spike.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=TokenServiceBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TokenServiceBenchmark {
+
+    private static final String ISSUER = "https://snabel.no";
+
+    private PrivateKey privateKey;
+    private TokenService tokenService;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        privateKey = generator.generateKeyPair().getPrivate();
+        tokenService = new TokenService(ISSUER, 86400, 2592000, 3600, privateKey);
+    }
+
+    @Benchmark
+    public String userToken() {
+        return tokenService.generateToken(1L, "testuser", 1L, "ADMIN", "web");
+    }
+
+    @Benchmark
+    public String clientToken() {
+        return tokenService.generateClientToken("client_0123456789abcdef", 1L, "read write");
+    }
+
+    @Benchmark
+    public String jwtBuilderUserToken() {
+        return Jwt.issuer(ISSUER)
+                .upn("testuser")
+                .claim("userId", 1L)
+                .claim("customerId", 1L)
+                .claim("role", "ADMIN")
+                .claim("deviceType", "web")
+                .claim("tokenType", "user")
+                .groups(Set.of("ADMIN"))
+                .expiresIn(Duration.ofSeconds(86400))
+                .sign(privateKey);
+    }
+}
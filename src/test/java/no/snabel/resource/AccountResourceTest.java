@@ -137,6 +137,198 @@ public class AccountResourceTest {
             .statusCode(204);
     }
 
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testAccountTree() {
+        // Loads the tree into the cache, which creating accounts must invalidate
+        given()
+        .when()
+            .get("/api/accounts/tree")
+        .then()
+            .statusCode(200)
+            .body("find { it.accountNumber == '1900' }.accountName", notNullValue())
+            .body("find { it.accountNumber == '1900' }.balance", nullValue());
+
+        int parentId = given()
+            .contentType(ContentType.JSON)
+            .body("""
+                {"accountNumber": "1970", "accountName": "Bankinnskudd", "accountType": "ASSET"}
+                """)
+        .when()
+            .post("/api/accounts")
+        .then()
+            .statusCode(201)
+            .extract().path("id");
+
+        given()
+            .contentType(ContentType.JSON)
+            .body("""
+                {"accountNumber": "1975", "accountName": "Skattetrekkskonto", "accountType": "ASSET",
+                 "parentAccount": {"id": %d}}
+                """.formatted(parentId))
+        .when()
+            .post("/api/accounts")
+        .then()
+            .statusCode(201);
+
+        given()
+            .contentType(ContentType.JSON)
+            .body("""
+                {
+                    "entryDate": "2019-06-01",
+                    "description": "Innskudd og skattetrekk",
+                    "lines": [
+                        {"accountNumber": "1970", "debitAmount": 10.00},
+                        {"accountNumber": "1975", "debitAmount": 250.00},
+                        {"accountNumber": "1900", "creditAmount": 260.00}
+                    ]
+                }
+                """)
+        .when()
+            .post("/api/journal-entries")
+        .then()
+            .statusCode(201);
+
+        given()
+        .when()
+            .get("/api/accounts/tree?withBalances=true")
+        .then()
+            .statusCode(200)
+            .body("find { it.accountNumber == '1975' }", nullValue())
+            .body("find { it.accountNumber == '1970' }.children.size()", equalTo(1))
+            .body("find { it.accountNumber == '1970' }.children[0].accountNumber", equalTo("1975"))
+            .body("find { it.accountNumber == '1970' }.balance", equalTo(10.0f))
+            .body("find { it.accountNumber == '1970' }.totalBalance", equalTo(260.0f));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testCachedAccountsFollowChanges() {
+        // Loads the account list into the cache
+        given()
+        .when()
+            .get("/api/accounts")
+        .then()
+            .statusCode(200)
+            .body("find { it.accountNumber == '1980' }", nullValue());
+
+        given()
+            .contentType(ContentType.JSON)
+            .body("""
+                {"accountNumber": "1980", "accountName": "Kortterminal", "accountType": "ASSET"}
+                """)
+        .when()
+            .post("/api/accounts")
+        .then()
+            .statusCode(201);
+
+        given()
+        .when()
+            .get("/api/accounts")
+        .then()
+            .statusCode(200)
+            .body("find { it.accountNumber == '1980' }.balance", equalTo(0.0f));
+
+        // The new account can be posted to at once, and the posting shows in the list
+        given()
+            .contentType(ContentType.JSON)
+            .body("""
+                {
+                    "entryDate": "2019-06-01",
+                    "description": "Overføring fra kortterminal",
+                    "lines": [
+                        {"accountNumber": "1980", "debitAmount": 40.00},
+                        {"accountNumber": "1900", "creditAmount": 40.00}
+                    ]
+                }
+                """)
+        .when()
+            .post("/api/journal-entries")
+        .then()
+            .statusCode(201);
+
+        given()
+        .when()
+            .get("/api/accounts")
+        .then()
+            .statusCode(200)
+            .body("find { it.accountNumber == '1980' }.balance", equalTo(40.0f));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testBalanceIsOnlyWrittenByPostings() {
+        // A balance in the request body is ignored
+        int id = given()
+            .contentType(ContentType.JSON)
+            .body("""
+                {"accountNumber": "1985", "accountName": "Vipps", "accountType": "ASSET", "balance": 500.00}
+                """)
+        .when()
+            .post("/api/accounts")
+        .then()
+            .statusCode(201)
+            .body("balance", equalTo(0.0f))
+            .extract().path("id");
+
+        given()
+            .contentType(ContentType.JSON)
+            .body("""
+                {
+                    "entryDate": "2019-06-01",
+                    "description": "Overføring fra Vipps",
+                    "lines": [
+                        {"accountNumber": "1985", "debitAmount": 75.00},
+                        {"accountNumber": "1900", "creditAmount": 75.00}
+                    ]
+                }
+                """)
+        .when()
+            .post("/api/journal-entries")
+        .then()
+            .statusCode(201);
+
+        // Editing and deactivating the account keep the posted balance
+        given()
+            .contentType(ContentType.JSON)
+            .body("""
+                {"accountName": "Vipps bedrift", "balance": 0.00}
+                """)
+        .when()
+            .put("/api/accounts/" + id)
+        .then()
+            .statusCode(200);
+
+        given()
+        .when()
+            .delete("/api/accounts/" + id)
+        .then()
+            .statusCode(204);
+
+        given()
+        .when()
+            .get("/api/accounts/" + id)
+        .then()
+            .statusCode(200)
+            .body("accountName", equalTo("Vipps bedrift"))
+            .body("balance", equalTo(75.0f));
+    }
+
     @Test
     public void testUnauthorizedAccess() {
         given()
@@ -185,4 +377,51 @@ public class AccountResourceTest {
         .then()
             .statusCode(403);
     }
+
+    @Test
+    @TestSecurity(user = "client_accounts", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:accounts")
+    })
+    public void testClientWithScopeReadsAccounts() {
+        given()
+        .when()
+            .get("/api/accounts")
+        .then()
+            .statusCode(200);
+
+        given()
+        .when()
+            .get("/api/accounts/tree")
+        .then()
+            .statusCode(200);
+    }
+
+    @Test
+    @TestSecurity(user = "client_invoices", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:invoices,write:accounts")
+    })
+    public void testClientWithoutScopeCannotReadAccounts() {
+        given()
+        .when()
+            .get("/api/accounts")
+        .then()
+            .statusCode(403)
+            .header("WWW-Authenticate", containsString("scope=\"read:accounts\""))
+            .body("error", is("insufficient_scope"));
+
+        // Scopes never grant more than the CLIENT role allows
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"accountNumber\": \"1985\", \"accountName\": \"Klient\", \"accountType\": \"ASSET\"}")
+        .when()
+            .post("/api/accounts")
+        .then()
+            .statusCode(403);
+    }
 }
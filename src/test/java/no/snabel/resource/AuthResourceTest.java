@@ -1,16 +1,37 @@
 package no.snabel.resource;
 
 import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.quarkus.test.security.jwt.Claim;
+import io.quarkus.test.security.jwt.JwtSecurity;
 import io.restassured.http.ContentType;
+import io.restassured.response.ExtractableResponse;
+import io.restassured.response.Response;
+import io.restassured.response.ValidatableResponse;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
 import no.snabel.dto.LoginRequest;
+import no.snabel.service.LastLoginRecorder;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 @QuarkusTest
 public class AuthResourceTest {
 
+    @Inject
+    LastLoginRecorder lastLogins;
+
+    @Inject
+    Pool pool;
+
     @Test
     public void testLoginSuccess() {
         LoginRequest request = new LoginRequest();
@@ -33,6 +54,41 @@ public class AuthResourceTest {
             .body("expiresIn", notNullValue());
     }
 
+    @Test
+    public void testLastLoginIsWrittenInBatches() {
+        LocalDateTime before = LocalDateTime.now().withNano(0);
+        LoginRequest request = new LoginRequest();
+        request.username = "testuser";
+        request.password = "password";
+
+        for (int i = 0; i < 3; i++) {
+            given()
+                .contentType(ContentType.JSON)
+                .body(request)
+            .when()
+                .post("/api/auth/login")
+            .then()
+                .statusCode(200);
+        }
+
+        // Repeated logins of one user are coalesced into one write
+        lastLogins.flush().await().atMost(Duration.ofSeconds(5));
+        assertEquals(0, lastLogins.pendingCount());
+        LocalDateTime lastLogin = pool.preparedQuery("SELECT last_login FROM users WHERE id = $1")
+                .execute(Tuple.of(1L))
+                .await().atMost(Duration.ofSeconds(5))
+                .iterator().next().getLocalDateTime("last_login");
+        assertFalse(lastLogin.isBefore(before), "last_login " + lastLogin + " is before " + before);
+
+        // An older time never replaces a newer one
+        lastLogins.record(1L, before.minusDays(1));
+        lastLogins.flush().await().atMost(Duration.ofSeconds(5));
+        assertEquals(lastLogin, pool.preparedQuery("SELECT last_login FROM users WHERE id = $1")
+                .execute(Tuple.of(1L))
+                .await().atMost(Duration.ofSeconds(5))
+                .iterator().next().getLocalDateTime("last_login"));
+    }
+
     @Test
     public void testLoginWithInvalidPassword() {
         LoginRequest request = new LoginRequest();
@@ -84,4 +140,48 @@ public class AuthResourceTest {
             .body("token", notNullValue())
             .body("expiresIn", equalTo(7200)); // App token duration
     }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testDeletedClientGetsNoToken() {
+        ExtractableResponse<Response> client = given()
+            .contentType(ContentType.JSON)
+            .body("{\"name\": \"Regnskapsintegrasjon\", \"scopes\": \"read:invoices\"}")
+        .when()
+            .post("/api/clients")
+        .then()
+            .statusCode(201)
+            .extract();
+        String clientId = client.path("clientId");
+        String clientSecret = client.path("clientSecret");
+
+        // The second request is answered from the credential cache
+        requestToken(clientId, clientSecret).statusCode(200).body("username", equalTo(clientId));
+        requestToken(clientId, clientSecret).statusCode(200).body("role", equalTo("CLIENT"));
+        requestToken(clientId, clientSecret + "x").statusCode(401);
+
+        given()
+        .when()
+            .delete("/api/clients/" + client.path("id"))
+        .then()
+            .statusCode(204);
+
+        requestToken(clientId, clientSecret).statusCode(401);
+    }
+
+    private static ValidatableResponse requestToken(String clientId, String clientSecret) {
+        return given()
+            .contentType(ContentType.URLENC)
+            .formParam("grant_type", "client_credentials")
+            .formParam("client_id", clientId)
+            .formParam("client_secret", clientSecret)
+        .when()
+            .post("/api/auth/token")
+        .then();
+    }
 }
@@ -5,16 +5,34 @@ import io.quarkus.test.security.TestSecurity;
 import io.quarkus.test.security.jwt.Claim;
 import io.quarkus.test.security.jwt.JwtSecurity;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import jakarta.inject.Inject;
+import no.snabel.service.StubInvoiceTransmitter;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
 public class InvoiceResourceTest {
 
+    @Inject
+    StubInvoiceTransmitter stubTransmitter;
+
     @Test
     @TestSecurity(user = "testuser", roles = "ADMIN")
     @JwtSecurity(claims = {
@@ -159,6 +177,200 @@ public class InvoiceResourceTest {
             .statusCode(200)
             .body("status", equalTo("SENT"))
             .body("sentAt", notNullValue());
+
+        // No PEPPOL receiver, so nothing is queued for transmission
+        given()
+        .when()
+            .get("/api/invoices/" + invoiceId + "/deliveries")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(0));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testSendInvoiceDeliversViaOutbox() throws Exception {
+        String invoiceNumber = "INV-PEPPOL-" + System.currentTimeMillis();
+        Integer invoiceId = createPeppolInvoice(invoiceNumber);
+
+        given()
+        .when()
+            .put("/api/invoices/" + invoiceId + "/send")
+        .then()
+            .statusCode(200)
+            .body("status", equalTo("SENT"));
+
+        Map<String, Object> delivery = awaitDeliveryStatus(invoiceId, "DELIVERED");
+        assertEquals("EHF", delivery.get("channel"));
+        assertEquals(1, delivery.get("attempts"));
+        assertEquals("stub-" + invoiceNumber, delivery.get("messageId"));
+        assertTrue(stubTransmitter.sent().contains(invoiceNumber));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testFailedDeliveryIsRetriedThenDead() throws Exception {
+        String invoiceNumber = "INV-REJECTED-" + System.currentTimeMillis();
+        stubTransmitter.failFor(invoiceNumber);
+        Integer invoiceId = createPeppolInvoice(invoiceNumber);
+
+        given()
+        .when()
+            .put("/api/invoices/" + invoiceId + "/send")
+        .then()
+            .statusCode(200);
+
+        // Test config allows two attempts one second apart
+        Map<String, Object> delivery = awaitDeliveryStatus(invoiceId, "DEAD");
+        assertEquals(2, delivery.get("attempts"));
+        assertTrue(String.valueOf(delivery.get("lastError")).contains("Receiver rejected"));
+        assertFalse(stubTransmitter.sent().contains(invoiceNumber));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testSendingTwiceQueuesOneDelivery() throws Exception {
+        String invoiceNumber = "INV-RESEND-" + System.currentTimeMillis();
+        Integer invoiceId = createPeppolInvoice(invoiceNumber);
+
+        given()
+        .when()
+            .put("/api/invoices/" + invoiceId + "/send")
+        .then()
+            .statusCode(200);
+
+        given()
+        .when()
+            .put("/api/invoices/" + invoiceId + "/send")
+        .then()
+            .statusCode(409)
+            .body("error", containsString("already SENT"));
+
+        awaitDeliveryStatus(invoiceId, "DELIVERED");
+
+        given()
+        .when()
+            .put("/api/invoices/" + invoiceId + "/send")
+        .then()
+            .statusCode(409);
+
+        given()
+        .when()
+            .get("/api/invoices/" + invoiceId + "/deliveries")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(1));
+        assertEquals(1, stubTransmitter.sent().stream().filter(invoiceNumber::equals).count());
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testSendingAgainRequeuesDeadDelivery() throws Exception {
+        String invoiceNumber = "INV-REDRIVE-" + System.currentTimeMillis();
+        stubTransmitter.failFor(invoiceNumber);
+        Integer invoiceId = createPeppolInvoice(invoiceNumber);
+
+        given()
+        .when()
+            .put("/api/invoices/" + invoiceId + "/send")
+        .then()
+            .statusCode(200);
+
+        Map<String, Object> dead = awaitDeliveryStatus(invoiceId, "DEAD");
+        stubTransmitter.recover(invoiceNumber);
+
+        given()
+        .when()
+            .put("/api/invoices/" + invoiceId + "/send")
+        .then()
+            .statusCode(200)
+            .body("status", equalTo("SENT"));
+
+        Map<String, Object> delivered = awaitDeliveryStatus(invoiceId, "DELIVERED");
+        assertNotEquals(dead.get("id"), delivered.get("id"));
+
+        given()
+        .when()
+            .put("/api/invoices/" + invoiceId + "/send")
+        .then()
+            .statusCode(409)
+            .body("deliveryId", equalTo(delivered.get("id")));
+
+        given()
+        .when()
+            .get("/api/invoices/" + invoiceId + "/deliveries")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(2))
+            .body("[1].status", equalTo("DEAD"));
+        assertEquals(1, stubTransmitter.sent().stream().filter(invoiceNumber::equals).count());
+    }
+
+    private Integer createPeppolInvoice(String invoiceNumber) {
+        LocalDate today = LocalDate.now();
+        String createBody = String.format("""
+            {
+                "invoiceNumber": "%s",
+                "invoiceDate": "%s",
+                "dueDate": "%s",
+                "clientName": "PEPPOL Client AS",
+                "clientOrganizationNumber": "987654321",
+                "totalAmount": 100.00
+            }
+            """, invoiceNumber, today, today.plusDays(14));
+
+        return given()
+            .contentType(ContentType.JSON)
+            .body(createBody)
+        .when()
+            .post("/api/invoices")
+        .then()
+            .statusCode(201)
+            .extract()
+            .path("id");
+    }
+
+    /**
+     * Wait for the newest delivery of the invoice to reach {@code status}
+     */
+    private Map<String, Object> awaitDeliveryStatus(Integer invoiceId, String status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (true) {
+            JsonPath deliveries = given()
+            .when()
+                .get("/api/invoices/" + invoiceId + "/deliveries")
+            .then()
+                .statusCode(200)
+                .extract()
+                .jsonPath();
+            if (status.equals(deliveries.getString("[0].status"))) {
+                return deliveries.getMap("[0]");
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Delivery did not reach " + status + ", last seen " + deliveries.getString("[0].status"));
+            }
+            Thread.sleep(200);
+        }
     }
 
     @Test
@@ -205,6 +417,330 @@ public class InvoiceResourceTest {
             .body("paidAt", notNullValue());
     }
 
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testListInvoicesWithCursor() {
+        // Make sure there are more invoices than fit on one page
+        LocalDate today = LocalDate.now();
+        String suffix = String.valueOf(System.currentTimeMillis());
+        for (int i = 0; i < 3; i++) {
+            String createBody = String.format("""
+                {
+                    "invoiceNumber": "INV-PAGE-%s-%d",
+                    "invoiceDate": "%s",
+                    "dueDate": "%s",
+                    "clientName": "Paging Client AS",
+                    "totalAmount": 100.00
+                }
+                """, suffix, i, today.minusDays(i), today.plusDays(14));
+
+            given()
+                .contentType(ContentType.JSON)
+                .body(createBody)
+            .when()
+                .post("/api/invoices")
+            .then()
+                .statusCode(201);
+        }
+
+        // First page
+        JsonPath firstPage = given()
+            .queryParam("cursor", "")
+            .queryParam("limit", 2)
+        .when()
+            .get("/api/invoices")
+        .then()
+            .statusCode(200)
+            .body("items.size()", equalTo(2))
+            .body("next", notNullValue())
+            .extract()
+            .jsonPath();
+
+        String next = firstPage.getString("next");
+        List<Integer> firstPageIds = firstPage.getList("items.id");
+
+        // Second page continues after the first without overlap
+        List<Integer> secondPageIds = given()
+            .queryParam("cursor", next)
+            .queryParam("limit", 2)
+        .when()
+            .get("/api/invoices")
+        .then()
+            .statusCode(200)
+            .body("items.size()", greaterThan(0))
+            .extract()
+            .path("items.id");
+
+        for (Integer id : secondPageIds) {
+            assertFalse(firstPageIds.contains(id));
+        }
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testListInvoicesWithInvalidCursor() {
+        given()
+            .queryParam("cursor", "not-a-cursor")
+        .when()
+            .get("/api/invoices")
+        .then()
+            .statusCode(400);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testExportInvoices() {
+        LocalDate today = LocalDate.now();
+        String createBody = String.format("""
+            {
+                "invoiceNumber": "INV-EXPORT-%d",
+                "invoiceDate": "%s",
+                "dueDate": "%s",
+                "clientName": "Export Client AS",
+                "totalAmount": 100.00
+            }
+            """, System.currentTimeMillis(), today, today.plusDays(14));
+
+        given()
+            .contentType(ContentType.JSON)
+            .body(createBody)
+        .when()
+            .post("/api/invoices")
+        .then()
+            .statusCode(201);
+
+        String body = given()
+        .when()
+            .get("/api/invoices/export")
+        .then()
+            .statusCode(200)
+            .contentType(containsString("application/x-ndjson"))
+            .extract()
+            .asString();
+
+        // One JSON object per line
+        for (String line : body.split("\n")) {
+            if (!line.isBlank()) {
+                assertTrue(line.startsWith("{") && line.endsWith("}"));
+            }
+        }
+        assertTrue(body.contains("Export Client AS"));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testEfakturaBatch() throws Exception {
+        LocalDate today = LocalDate.now();
+        long suffix = System.currentTimeMillis();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            String createBody = String.format("""
+                {
+                    "invoiceNumber": "INV-BATCH-%d-%d",
+                    "invoiceDate": "%s",
+                    "dueDate": "%s",
+                    "clientName": "Batch Client AS",
+                    "totalAmount": 100.00
+                }
+                """, suffix, i, today, today.plusDays(14));
+
+            ids.add(given()
+                .contentType(ContentType.JSON)
+                .body(createBody)
+            .when()
+                .post("/api/invoices")
+            .then()
+                .statusCode(201)
+                .extract()
+                .path("id"));
+        }
+
+        byte[] zip = given()
+            .contentType(ContentType.JSON)
+            .body(Map.of("fromDate", today.toString(), "toDate", today.toString(), "ids", ids))
+        .when()
+            .post("/api/invoices/efaktura/batch")
+        .then()
+            .statusCode(200)
+            .contentType(containsString("application/zip"))
+            .header("Content-Disposition", containsString("efaktura.zip"))
+            .extract()
+            .asByteArray();
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                entries.add(entry.getName());
+                String xml = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                assertTrue(xml.startsWith("<?xml"));
+                assertTrue(xml.contains("Batch Client AS"));
+            }
+        }
+        assertEquals(List.of("efaktura-INV-BATCH-" + suffix + "-0.xml", "efaktura-INV-BATCH-" + suffix + "-1.xml"), entries);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testEfakturaBatchSanitizesEntryNames() throws Exception {
+        LocalDate today = LocalDate.now();
+        long suffix = System.currentTimeMillis();
+        List<Integer> ids = new ArrayList<>();
+        for (String invoiceNumber : List.of("../INV/" + suffix, "../INV:" + suffix)) {
+            ids.add(given()
+                .contentType(ContentType.JSON)
+                .body(Map.of(
+                    "invoiceNumber", invoiceNumber,
+                    "invoiceDate", today.toString(),
+                    "dueDate", today.plusDays(14).toString(),
+                    "clientName", "Batch Client AS",
+                    "totalAmount", 100.00))
+            .when()
+                .post("/api/invoices")
+            .then()
+                .statusCode(201)
+                .extract()
+                .path("id"));
+        }
+
+        byte[] zip = given()
+            .contentType(ContentType.JSON)
+            .body(Map.of("ids", ids))
+        .when()
+            .post("/api/invoices/efaktura/batch")
+        .then()
+            .statusCode(200)
+            .extract()
+            .asByteArray();
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                entries.add(entry.getName());
+            }
+        }
+        // Both numbers sanitize to the same name, so the second entry is told apart by its id
+        assertEquals(List.of(
+            "efaktura-.._INV_" + suffix + ".xml",
+            "efaktura-.._INV_" + suffix + "-" + ids.get(1) + ".xml"), entries);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testEfakturaBatchWithInvalidDateRange() {
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"fromDate\": \"2024-12-31\", \"toDate\": \"2024-01-01\"}")
+        .when()
+            .post("/api/invoices/efaktura/batch")
+        .then()
+            .statusCode(400);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testDownloadDocumentsWithETag() {
+        LocalDate today = LocalDate.now();
+        String createBody = String.format("""
+            {
+                "invoiceNumber": "INV-DOC-%d",
+                "invoiceDate": "%s",
+                "dueDate": "%s",
+                "clientName": "Document Client AS",
+                "totalAmount": 100.00
+            }
+            """, System.currentTimeMillis(), today, today.plusDays(14));
+
+        Integer id = given()
+            .contentType(ContentType.JSON)
+            .body(createBody)
+        .when()
+            .post("/api/invoices")
+        .then()
+            .statusCode(201)
+            .extract()
+            .path("id");
+
+        for (String document : List.of("pdf", "efaktura")) {
+            String etag = given()
+            .when()
+                .get("/api/invoices/" + id + "/" + document)
+            .then()
+                .statusCode(200)
+                .header("ETag", notNullValue())
+                .extract()
+                .header("ETag");
+
+            // Served from the document cache with the same tag
+            given()
+            .when()
+                .get("/api/invoices/" + id + "/" + document)
+            .then()
+                .statusCode(200)
+                .header("ETag", equalTo(etag));
+
+            given()
+                .header("If-None-Match", etag)
+            .when()
+                .get("/api/invoices/" + id + "/" + document)
+            .then()
+                .statusCode(304);
+        }
+
+        String pdfTag = given().when().get("/api/invoices/" + id + "/pdf").then().extract().header("ETag");
+
+        // Changing the invoice gives the document a new tag
+        given()
+        .when()
+            .put("/api/invoices/" + id + "/pay")
+        .then()
+            .statusCode(200);
+
+        given()
+            .header("If-None-Match", pdfTag)
+        .when()
+            .get("/api/invoices/" + id + "/pdf")
+        .then()
+            .statusCode(200)
+            .header("ETag", not(equalTo(pdfTag)));
+    }
+
     @Test
     @TestSecurity(user = "regularuser", roles = "USER")
     @JwtSecurity(claims = {
@@ -231,4 +767,42 @@ public class InvoiceResourceTest {
         .then()
             .statusCode(403);
     }
+
+    @Test
+    @TestSecurity(user = "client_invoices", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:invoices")
+    })
+    public void testClientWithScopeReadsInvoices() {
+        given()
+        .when()
+            .get("/api/invoices")
+        .then()
+            .statusCode(200);
+    }
+
+    @Test
+    @TestSecurity(user = "client_accounts", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:accounts write:invoices")
+    })
+    public void testClientWithoutScopeCannotReadInvoices() {
+        given()
+        .when()
+            .get("/api/invoices")
+        .then()
+            .statusCode(403)
+            .header("WWW-Authenticate", containsString("scope=\"read:invoices\""))
+            .body("error", is("insufficient_scope"));
+
+        given()
+        .when()
+            .get("/api/invoices/export")
+        .then()
+            .statusCode(403);
+    }
 }
@@ -0,0 +1,228 @@
+package no.snabel.resource;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.quarkus.test.security.jwt.Claim;
+import io.quarkus.test.security.jwt.JwtSecurity;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+public class JournalEntryResourceTest {
+
+    private static final String SALE = """
+        {
+            "entryDate": "2025-01-15",
+            "description": "Kontantsalg",
+            "reference": "K-1",
+            "lines": [
+                {"accountNumber": "1900", "debitAmount": 1250.00},
+                {"accountNumber": "3000", "creditAmount": 1000.00},
+                {"accountNumber": "2700", "creditAmount": 250.00, "vatCode": "3"}
+            ]
+        }
+        """;
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testPostJournalEntry() {
+        Integer id = given()
+            .contentType(ContentType.JSON)
+            .body(SALE)
+        .when()
+            .post("/api/journal-entries")
+        .then()
+            .statusCode(201)
+            .body("id", notNullValue())
+            .body("entryNumber", notNullValue())
+            .extract().path("id");
+
+        given()
+        .when()
+            .get("/api/journal-entries/" + id)
+        .then()
+            .statusCode(200)
+            .body("posted", is(true))
+            .body("entryType", equalTo("MANUAL"))
+            .body("lines.size()", equalTo(3))
+            .body("lines[0].lineNumber", equalTo(1))
+            .body("lines[0].debitAmount", equalTo(1250.0f))
+            .body("lines[2].accountId", equalTo(4))
+            .body("lines[2].creditAmount", equalTo(250.0f));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testBatchGetsConsecutiveNumbers() {
+        // More entries than one insert statement takes in the test profile
+        String batch = "[" + String.join(",", Collections.nCopies(120, SALE)) + "]";
+
+        List<String> numbers = given()
+            .contentType(ContentType.JSON)
+            .body(batch)
+        .when()
+            .post("/api/journal-entries/batch")
+        .then()
+            .statusCode(201)
+            .body("size()", equalTo(120))
+            .extract().jsonPath().getList("entryNumber", String.class);
+
+        long first = Long.parseLong(numbers.get(0));
+        for (int i = 0; i < numbers.size(); i++) {
+            assertEquals(first + i, Long.parseLong(numbers.get(i)));
+        }
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testRejectedPostingLeavesNoGap() {
+        long before = Long.parseLong(postSale());
+
+        String unbalanced = SALE.replace("1250.00", "1200.00");
+        given()
+            .contentType(ContentType.JSON)
+            .body(unbalanced)
+        .when()
+            .post("/api/journal-entries")
+        .then()
+            .statusCode(400)
+            .body("error", equalTo("Entry 1: debit 1200.00 does not equal credit 1250.00"));
+
+        // The second entry refers to an account the customer does not have
+        String unknownAccount = "[" + SALE + "," + SALE.replace("\"2700\"", "\"9999\"") + "]";
+        given()
+            .contentType(ContentType.JSON)
+            .body(unknownAccount)
+        .when()
+            .post("/api/journal-entries/batch")
+        .then()
+            .statusCode(400)
+            .body("error", equalTo("Unknown account 9999"));
+
+        assertEquals(before + 1, Long.parseLong(postSale()));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testPostingUpdatesBalances() {
+        double bank = balance(1);
+        double revenue = balance(3);
+        double vat = balance(4);
+
+        given()
+            .contentType(ContentType.JSON)
+            .body("[" + SALE + "," + SALE + "]")
+        .when()
+            .post("/api/journal-entries/batch")
+        .then()
+            .statusCode(201);
+
+        // Debit increases the bank (asset), credit increases revenue and VAT payable
+        assertEquals(bank + 2500.0, balance(1), 0.001);
+        assertEquals(revenue + 2000.0, balance(3), 0.001);
+        assertEquals(vat + 500.0, balance(4), 0.001);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "USER")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "USER")
+    })
+    public void testUserCannotPost() {
+        given()
+            .contentType(ContentType.JSON)
+            .body(SALE)
+        .when()
+            .post("/api/journal-entries")
+        .then()
+            .statusCode(403);
+    }
+
+    private double balance(int accountId) {
+        return given()
+        .when()
+            .get("/api/accounts/" + accountId)
+        .then()
+            .statusCode(200)
+            .extract().jsonPath().getDouble("balance");
+    }
+
+    private String postSale() {
+        return given()
+            .contentType(ContentType.JSON)
+            .body(SALE)
+        .when()
+            .post("/api/journal-entries")
+        .then()
+            .statusCode(201)
+            .extract().path("entryNumber");
+    }
+
+    @Test
+    @TestSecurity(user = "client_journal", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:journal-entries")
+    })
+    public void testClientWithScopeReadsJournalEntries() {
+        given()
+        .when()
+            .get("/api/journal-entries/999999")
+        .then()
+            .statusCode(404);
+    }
+
+    @Test
+    @TestSecurity(user = "client_invoices", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:invoices,write:journal-entries")
+    })
+    public void testClientWithoutScopeCannotReadJournalEntries() {
+        given()
+        .when()
+            .get("/api/journal-entries/999999")
+        .then()
+            .statusCode(403)
+            .header("WWW-Authenticate", containsString("scope=\"read:journal-entries\""));
+
+        given()
+            .contentType(ContentType.JSON)
+            .body("{}")
+        .when()
+            .post("/api/journal-entries")
+        .then()
+            .statusCode(403);
+    }
+}
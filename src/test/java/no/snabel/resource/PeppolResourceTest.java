@@ -0,0 +1,86 @@
+package no.snabel.resource;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.quarkus.test.security.jwt.Claim;
+import io.quarkus.test.security.jwt.JwtSecurity;
+import org.junit.jupiter.api.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+
+@QuarkusTest
+public class PeppolResourceTest {
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testInvalidateEndpoint() {
+        given()
+        .when()
+            .delete("/api/peppol/endpoints/0192:987654321")
+        .then()
+            .statusCode(204);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testInvalidateAllEndpoints() {
+        given()
+        .when()
+            .delete("/api/peppol/endpoints")
+        .then()
+            .statusCode(204);
+    }
+
+    @Test
+    @TestSecurity(user = "regularuser", roles = "USER")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "USER")
+    })
+    public void testUserCannotInvalidateEndpoints() {
+        given()
+        .when()
+            .delete("/api/peppol/endpoints")
+        .then()
+            .statusCode(403);
+    }
+
+    @Test
+    public void testOxalisReadinessIsReported() {
+        // Oxalis is disabled in tests, which must not make the instance unready
+        given()
+        .when()
+            .get("/q/health/ready")
+        .then()
+            .statusCode(200)
+            .body("checks.find { it.name == 'oxalis' }.status", equalTo("UP"))
+            .body("checks.find { it.name == 'oxalis' }.data.state", equalTo("DISABLED"));
+    }
+
+    @Test
+    @TestSecurity(user = "client_all", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:accounts,write:accounts,read:invoices,write:invoices,read:journal-entries,write:journal-entries,read:reports")
+    })
+    public void testClientCannotInvalidateEndpoints() {
+        given()
+        .when()
+            .delete("/api/peppol/endpoints")
+        .then()
+            .statusCode(403);
+    }
+}
@@ -0,0 +1,259 @@
+package no.snabel.resource;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.quarkus.test.security.jwt.Claim;
+import io.quarkus.test.security.jwt.JwtSecurity;
+import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+public class ReportResourceTest {
+
+    // Dated in 2019, before anything the other tests post
+    private static final String SALE = """
+        {
+            "entryDate": "%s",
+            "description": "Kontantsalg",
+            "lines": [
+                {"accountNumber": "1900", "debitAmount": 1250.00},
+                {"accountNumber": "3000", "creditAmount": 1000.00},
+                {"accountNumber": "2700", "creditAmount": 250.00}
+            ]
+        }
+        """;
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testTrialBalanceFollowsPostings() {
+        double january = bank("2019-01-31");
+        double earlyMarch = bank("2019-03-05");
+        double march = bank("2019-03-31");
+
+        post("2019-03-10");
+        assertEquals(january, bank("2019-01-31"), 0.001);
+        assertEquals(earlyMarch, bank("2019-03-05"), 0.001);
+        assertEquals(march + 1250.0, bank("2019-03-31"), 0.001);
+
+        // A back-dated entry moves every later month
+        post("2019-01-20");
+        assertEquals(january + 1250.0, bank("2019-01-31"), 0.001);
+        assertEquals(earlyMarch + 1250.0, bank("2019-03-05"), 0.001);
+        assertEquals(march + 2500.0, bank("2019-03-31"), 0.001);
+
+        // Rebuilding from the ledger gives the same figures
+        given()
+        .when()
+            .post("/api/reports/trial-balance/rebuild")
+        .then()
+            .statusCode(204);
+        assertEquals(january + 1250.0, bank("2019-01-31"), 0.001);
+        assertEquals(march + 2500.0, bank("2019-03-31"), 0.001);
+
+        JsonPath trialBalance = trialBalance("2019-03-31");
+        assertEquals(trialBalance.getDouble("totalDebit"), trialBalance.getDouble("totalCredit"), 0.001);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testRebuildWhilePosting() throws Exception {
+        double february = bank("2019-02-28");
+
+        // Rebuilds and postings queue behind each other instead of deadlocking
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                boolean rebuild = i % 3 == 0;
+                futures.add(executor.submit(() -> {
+                    if (rebuild) {
+                        given().when().post("/api/reports/trial-balance/rebuild").then().statusCode(204);
+                    } else {
+                        post("2019-02-14");
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(february + 8 * 1250.0, bank("2019-02-28"), 0.001);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "USER")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "USER")
+    })
+    public void testInvalidAsOf() {
+        given()
+        .when()
+            .get("/api/reports/trial-balance?asOf=31.03.2019")
+        .then()
+            .statusCode(400);
+
+        given()
+        .when()
+            .post("/api/reports/trial-balance/rebuild")
+        .then()
+            .statusCode(403);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testGeneralLedgerCsv() {
+        post("2018-05-15");
+        post("2018-06-10");
+        post("2018-06-20");
+
+        String csv = given()
+            .accept("text/csv")
+        .when()
+            .get("/api/reports/general-ledger?from=2018-06-01&to=2018-06-30&account=3000")
+        .then()
+            .statusCode(200)
+            .contentType(containsString("text/csv"))
+            .header("Content-Disposition", containsString("hovedbok-2018-06-01-2018-06-30.csv"))
+            .extract().asString();
+
+        String[] lines = csv.split("\n");
+        assertEquals("account_number,account_name,entry_date,entry_number,description,debit,credit,balance", lines[0]);
+        assertEquals(4, lines.length);
+        // The May sale is in the opening balance, the June sales follow with a running balance
+        double opening = balance(lines[1]);
+        assertTrue(lines[1].contains("2018-06-01,,Opening balance"), lines[1]);
+        assertTrue(lines[2].contains(",2018-06-10,"), lines[2]);
+        assertEquals(opening - 1000.0, balance(lines[2]), 0.001);
+        assertEquals(opening - 2000.0, balance(lines[3]), 0.001);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "USER")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "USER")
+    })
+    public void testGeneralLedgerNdjson() {
+        String ndjson = given()
+            .accept("application/x-ndjson")
+        .when()
+            .get("/api/reports/general-ledger?from=2017-01-01&to=2017-12-31")
+        .then()
+            .statusCode(200)
+            .contentType(containsString("application/x-ndjson"))
+            .extract().asString();
+        assertEquals("", ndjson.trim());
+
+        given()
+            .accept("text/csv")
+        .when()
+            .get("/api/reports/general-ledger?from=2018-07-01&to=2018-06-01")
+        .then()
+            .statusCode(400);
+    }
+
+    private static double balance(String csvLine) {
+        return Double.parseDouble(csvLine.substring(csvLine.lastIndexOf(',') + 1));
+    }
+
+    private void post(String entryDate) {
+        given()
+            .contentType(ContentType.JSON)
+            .body(SALE.formatted(entryDate))
+        .when()
+            .post("/api/journal-entries")
+        .then()
+            .statusCode(201);
+    }
+
+    private double bank(String asOf) {
+        JsonPath trialBalance = trialBalance(asOf);
+        Number debit = trialBalance.get("accounts.find { it.accountNumber == '1900' }.debit");
+        return debit != null ? debit.doubleValue() : 0.0;
+    }
+
+    private JsonPath trialBalance(String asOf) {
+        return given()
+        .when()
+            .get("/api/reports/trial-balance?asOf=" + asOf)
+        .then()
+            .statusCode(200)
+            .body("asOf", equalTo(asOf))
+            .extract().jsonPath();
+    }
+
+    @Test
+    @TestSecurity(user = "client_reports", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:reports")
+    })
+    public void testClientWithScopeReadsReports() {
+        given()
+        .when()
+            .get("/api/reports/trial-balance")
+        .then()
+            .statusCode(200);
+    }
+
+    @Test
+    @TestSecurity(user = "client_invoices", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:invoices")
+    })
+    public void testClientWithoutScopeCannotReadReports() {
+        given()
+        .when()
+            .get("/api/reports/trial-balance")
+        .then()
+            .statusCode(403)
+            .header("WWW-Authenticate", containsString("scope=\"read:reports\""));
+
+        given()
+            .accept("text/csv")
+            .queryParam("from", "2018-01-01")
+            .queryParam("to", "2018-12-31")
+        .when()
+            .get("/api/reports/general-ledger")
+        .then()
+            .statusCode(403);
+    }
+}
@@ -0,0 +1,174 @@
+package no.snabel.resource;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.quarkus.test.security.jwt.Claim;
+import io.quarkus.test.security.jwt.JwtSecurity;
+import io.vertx.mutiny.sqlclient.Pool;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+@QuarkusTest
+public class StandardAccountResourceTest {
+
+    // Provisioning runs for a customer of its own, so the accounts of customer 1 stay as the other tests expect
+    private static final String CUSTOMER_SQL = """
+        INSERT INTO customers (id, organization_number, company_name)
+        VALUES (9002, '900200002', 'Kontoplan Test AS')
+        ON CONFLICT DO NOTHING
+        """;
+
+    @Inject
+    Pool pool;
+
+    @Test
+    @TestSecurity(user = "regularuser", roles = "USER")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "USER")
+    })
+    public void testListStandardAccounts() {
+        String etag = given()
+        .when()
+            .get("/api/standard-accounts")
+        .then()
+            .statusCode(200)
+            .header("ETag", notNullValue())
+            .body("size()", greaterThan(0))
+            .body("find { it.accountNumber == '1900' }.accountType", equalTo("ASSET"))
+            .extract().header("ETag");
+
+        given()
+            .header("If-None-Match", etag)
+        .when()
+            .get("/api/standard-accounts")
+        .then()
+            .statusCode(304);
+
+        // Every view of the chart carries the same version
+        given()
+        .when()
+            .get("/api/standard-accounts?class=1")
+        .then()
+            .statusCode(200)
+            .header("ETag", equalTo(etag))
+            .body("accountClass", everyItem(equalTo("1")));
+
+        given()
+        .when()
+            .get("/api/standard-accounts?type=EXPENSE")
+        .then()
+            .statusCode(200)
+            .body("accountType", everyItem(equalTo("EXPENSE")));
+    }
+
+    @Test
+    @TestSecurity(user = "regularuser", roles = "USER")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "USER")
+    })
+    public void testGetStandardAccount() {
+        given()
+        .when()
+            .get("/api/standard-accounts/2700")
+        .then()
+            .statusCode(200)
+            .header("ETag", notNullValue())
+            .body("accountType", equalTo("LIABILITY"));
+
+        given()
+        .when()
+            .get("/api/standard-accounts/0000")
+        .then()
+            .statusCode(404);
+
+        given()
+        .when()
+            .post("/api/accounts/provision")
+        .then()
+            .statusCode(403);
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "9002"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testProvisionStandardChart() {
+        pool.query(CUSTOMER_SQL).execute().await().indefinitely();
+
+        given()
+        .when()
+            .post("/api/accounts/provision")
+        .then()
+            .statusCode(200)
+            .body("created", greaterThanOrEqualTo(0));
+
+        // Accounts the customer has are left alone, so a second run creates nothing
+        given()
+        .when()
+            .post("/api/accounts/provision")
+        .then()
+            .statusCode(200)
+            .body("created", equalTo(0));
+
+        given()
+        .when()
+            .get("/api/accounts/tree")
+        .then()
+            .statusCode(200)
+            .body("find { it.accountNumber == '6300' }", notNullValue());
+    }
+
+    @Test
+    public void testUnauthorizedAccess() {
+        given()
+        .when()
+            .get("/api/standard-accounts")
+        .then()
+            .statusCode(401);
+    }
+
+    @Test
+    @TestSecurity(user = "client_accounts", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:accounts")
+    })
+    public void testClientWithScopeReadsStandardAccounts() {
+        given()
+        .when()
+            .get("/api/standard-accounts/1900")
+        .then()
+            .statusCode(200)
+            .body("accountNumber", is("1900"));
+    }
+
+    @Test
+    @TestSecurity(user = "client_invoices", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:invoices")
+    })
+    public void testClientWithoutScopeCannotReadStandardAccounts() {
+        given()
+        .when()
+            .get("/api/standard-accounts")
+        .then()
+            .statusCode(403)
+            .header("WWW-Authenticate", containsString("scope=\"read:accounts\""));
+    }
+}
@@ -0,0 +1,40 @@
+package no.snabel.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScopeTest {
+
+    @Test
+    void parsesCommaAndSpaceSeparatedScopes() {
+        long scopes = Scope.parse("read:invoices,write:invoices read:reports");
+
+        assertTrue(Scope.READ_INVOICES.in(scopes));
+        assertTrue(Scope.WRITE_INVOICES.in(scopes));
+        assertTrue(Scope.READ_REPORTS.in(scopes));
+        assertFalse(Scope.READ_ACCOUNTS.in(scopes));
+        assertEquals(Scope.READ_INVOICES.bit() | Scope.WRITE_INVOICES.bit() | Scope.READ_REPORTS.bit(), scopes);
+    }
+
+    @Test
+    void ignoresUnknownAndEmptyScopes() {
+        assertEquals(0, Scope.parse(null));
+        assertEquals(0, Scope.parse(""));
+        assertEquals(0, Scope.parse(" , ,"));
+        assertEquals(0, Scope.parse("read:invoice,read:invoicesx,admin"));
+        assertEquals(Scope.READ_ACCOUNTS.bit(), Scope.parse(" read:accounts , unknown:scope"));
+    }
+
+    @Test
+    void everyScopeHasItsOwnBit() {
+        long all = 0;
+        for (Scope scope : Scope.values()) {
+            assertEquals(0, all & scope.bit(), scope.value());
+            assertEquals(scope.bit(), Scope.parse(scope.value()));
+            all |= scope.bit();
+        }
+    }
+}
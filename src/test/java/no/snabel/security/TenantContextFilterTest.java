@@ -0,0 +1,54 @@
+package no.snabel.security;
+
+import no.snabel.security.TenantContextFilter.RequiredScopes;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class TenantContextFilterTest {
+
+    @RequiresScope(Scope.READ_INVOICES)
+    static class InvoiceEndpoints {
+
+        public void list() {
+        }
+
+        @RequiresScope({Scope.READ_INVOICES, Scope.READ_REPORTS})
+        public void report() {
+        }
+    }
+
+    static class UndeclaredEndpoints {
+
+        public void list() {
+        }
+    }
+
+    @Test
+    void methodInheritsClassScopes() throws Exception {
+        RequiredScopes required = RequiredScopes.of(InvoiceEndpoints.class, InvoiceEndpoints.class.getMethod("list"));
+
+        assertEquals(Scope.READ_INVOICES.bit(), required.mask());
+        assertEquals("Bearer error=\"insufficient_scope\", scope=\"read:invoices\"", required.challenge());
+    }
+
+    @Test
+    void methodScopesReplaceClassScopes() throws Exception {
+        RequiredScopes required = RequiredScopes.of(InvoiceEndpoints.class, InvoiceEndpoints.class.getMethod("report"));
+
+        assertEquals(Scope.mask(Scope.READ_INVOICES, Scope.READ_REPORTS), required.mask());
+        // A client with read:invoices alone lacks read:reports
+        assertNotEquals(required.mask(), Scope.READ_INVOICES.bit() & required.mask());
+    }
+
+    @Test
+    void undeclaredEndpointsRefuseEveryClient() throws Exception {
+        RequiredScopes required = RequiredScopes.of(UndeclaredEndpoints.class,
+                UndeclaredEndpoints.class.getMethod("list"));
+        long allScopes = Scope.parse("read:accounts,write:accounts,read:invoices,write:invoices,"
+                + "read:journal-entries,write:journal-entries,read:reports");
+
+        assertNotEquals(required.mask(), allScopes & required.mask());
+    }
+}
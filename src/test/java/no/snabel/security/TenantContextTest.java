@@ -0,0 +1,70 @@
+package no.snabel.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TenantContextTest {
+
+    @Test
+    void readsUserClaims() {
+        TenantContext tenant = new TenantContext();
+        tenant.populate(7, "42", "ADMIN", "testuser", "user", null, null);
+
+        assertEquals(7L, tenant.customerId());
+        assertEquals(42L, tenant.userId());
+        assertEquals("ADMIN", tenant.role());
+        assertEquals("testuser", tenant.username());
+        assertEquals(0, tenant.scopes());
+        assertFalse(tenant.isClient());
+    }
+
+    @Test
+    void readsClientScopes() {
+        TenantContext tenant = new TenantContext();
+        tenant.populate(7L, null, null, "client_abc", "client", null, "read:invoices,write:invoices");
+
+        assertEquals(7L, tenant.customerId());
+        assertNull(tenant.userId());
+        assertTrue(tenant.isClient());
+        assertTrue(tenant.hasScope(Scope.READ_INVOICES));
+        assertTrue(tenant.hasScope(Scope.WRITE_INVOICES));
+        assertFalse(tenant.hasScope(Scope.READ_ACCOUNTS));
+    }
+
+    @Test
+    void prefersCompiledScopeMask() {
+        TenantContext tenant = new TenantContext();
+        tenant.populate(7L, null, null, "client_abc", "client", Scope.READ_REPORTS.bit(), "read:invoices");
+
+        assertTrue(tenant.hasScope(Scope.READ_REPORTS));
+        assertFalse(tenant.hasScope(Scope.READ_INVOICES));
+    }
+
+    @Test
+    void unauthenticatedRequestHasNoTenant() {
+        TenantContext tenant = new TenantContext();
+        tenant.populate(null, null, null, null, null, null, null);
+
+        assertNull(tenant.customerId());
+        assertNull(tenant.userId());
+        assertNull(tenant.role());
+        assertEquals(0, tenant.scopes());
+        assertFalse(tenant.isClient());
+    }
+
+    @Test
+    void cannotBeChangedOnceSet() {
+        TenantContext tenant = new TenantContext();
+        tenant.populate(7L, 1L, "USER", "testuser", "user", null, null);
+
+        assertThrows(IllegalStateException.class,
+                () -> tenant.populate(8L, 1L, "ADMIN", "testuser", "user", null, null));
+        assertEquals(7L, tenant.customerId());
+        assertEquals("USER", tenant.role());
+    }
+}
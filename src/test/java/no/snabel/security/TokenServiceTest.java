@@ -0,0 +1,121 @@
+package no.snabel.security;
+
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TokenServiceTest {
+
+    private static final String ISSUER = "https://snabel.no";
+
+    private TokenService tokenService;
+    private JwtConsumer consumer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        tokenService = new TokenService(ISSUER, 3600, 7200, 600, keyPair.getPrivate());
+        consumer = new JwtConsumerBuilder()
+                .setVerificationKey(keyPair.getPublic())
+                .setExpectedIssuer(ISSUER)
+                .setRequireExpirationTime()
+                .setRequireIssuedAt()
+                .setRequireJwtId()
+                .build();
+    }
+
+    @Test
+    void userTokenCarriesClaims() throws Exception {
+        JwtClaims claims = consumer.processToClaims(tokenService.generateToken(1L, "testuser", 7L, "ADMIN", "web"));
+
+        assertEquals("testuser", claims.getStringClaimValue("upn"));
+        assertEquals(1L, claims.getClaimValue("userId", Long.class));
+        assertEquals(7L, claims.getClaimValue("customerId", Long.class));
+        assertEquals("ADMIN", claims.getStringClaimValue("role"));
+        assertEquals(List.of("ADMIN"), claims.getStringListClaimValue("groups"));
+        assertEquals("web", claims.getStringClaimValue("deviceType"));
+        assertEquals("user", claims.getStringClaimValue("tokenType"));
+        assertEquals(3600, claims.getExpirationTime().getValue() - claims.getIssuedAt().getValue());
+    }
+
+    @Test
+    void appTokenLivesLonger() throws Exception {
+        JwtClaims claims = consumer.processToClaims(tokenService.generateToken(1L, "testuser", 7L, "USER", "app"));
+
+        assertEquals(7200, claims.getExpirationTime().getValue() - claims.getIssuedAt().getValue());
+        assertEquals(List.of("USER"), claims.getStringListClaimValue("groups"));
+    }
+
+    @Test
+    void clientTokenCarriesClaims() throws Exception {
+        JwtClaims claims = consumer.processToClaims(tokenService.generateClientToken("client_abc", 7L, "read write"));
+
+        assertEquals("client_abc", claims.getStringClaimValue("upn"));
+        assertEquals("client_abc", claims.getStringClaimValue("clientId"));
+        assertEquals(7L, claims.getClaimValue("customerId", Long.class));
+        assertEquals("read write", claims.getStringClaimValue("scopes"));
+        assertEquals(0L, claims.getClaimValue("scopeMask", Long.class));
+        assertEquals("client", claims.getStringClaimValue("tokenType"));
+        assertEquals(List.of("CLIENT"), claims.getStringListClaimValue("groups"));
+        assertEquals(600, claims.getExpirationTime().getValue() - claims.getIssuedAt().getValue());
+
+        JwtClaims reader = consumer.processToClaims(
+                tokenService.generateClientToken("client_abc", 7L, "read:invoices,read:reports"));
+        assertEquals(Scope.mask(Scope.READ_INVOICES, Scope.READ_REPORTS),
+                reader.getClaimValue("scopeMask", Long.class));
+
+        JwtClaims withoutScopes = consumer.processToClaims(tokenService.generateClientToken("client_abc", 7L, null));
+        assertNull(withoutScopes.getClaimValue("scopes"));
+    }
+
+    @Test
+    void claimValuesAreEscaped() throws Exception {
+        String username = "ola \"nordmann\"\\\n\tæøå\u0001";
+
+        JwtClaims claims = consumer.processToClaims(tokenService.generateToken(1L, username, 7L, "USER", "web"));
+
+        assertEquals(username, claims.getStringClaimValue("upn"));
+    }
+
+    @Test
+    void tokensSignedOnManyThreadsVerify() {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, 200).parallel().forEach(i -> {
+            try {
+                JwtClaims claims = consumer.processToClaims(
+                        tokenService.generateToken((long) i, "user" + i, 7L, i % 2 == 0 ? "ADMIN" : "USER", "web"));
+                assertEquals("user" + i, claims.getStringClaimValue("upn"));
+                ids.add(claims.getJwtId());
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        assertEquals(200, ids.size());
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = tokenService.generateToken(1L, "testuser", 7L, "USER", "web");
+        String[] parts = token.split("\\.");
+        String forged = tokenService.generateToken(1L, "testuser", 7L, "ADMIN", "web").split("\\.")[1];
+
+        assertThrows(Exception.class, () -> consumer.processToClaims(parts[0] + "." + forged + "." + parts[2]));
+    }
+}
@@ -0,0 +1,115 @@
+package no.snabel.service;
+
+import no.snabel.dto.AccountTreeNode;
+import no.snabel.service.AccountTree.Account;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountTreeTest {
+
+    @Test
+    public void testRollUp() {
+        AccountTree tree = AccountTree.build(List.of(
+                account(1, null, "1"),
+                account(2, 1L, "19"),
+                account(3, 2L, "1900"),
+                account(4, 2L, "1920"),
+                account(5, 1L, "15"),
+                account(6, 5L, "1500"),
+                account(7, null, "3")));
+
+        List<AccountTreeNode> roots = tree.toNodes(Map.of(
+                1L, new BigDecimal("1.00"),
+                3L, new BigDecimal("100.00"),
+                4L, new BigDecimal("50.50"),
+                6L, new BigDecimal("-20.00"),
+                7L, new BigDecimal("300.00")));
+
+        assertEquals(List.of("1", "3"), roots.stream().map(node -> node.accountNumber).toList());
+        AccountTreeNode assets = roots.get(0);
+        assertEquals(new BigDecimal("1.00"), assets.balance);
+        assertEquals(new BigDecimal("131.50"), assets.totalBalance);
+        assertEquals(List.of("19", "15"), assets.children.stream().map(node -> node.accountNumber).toList());
+        assertEquals(new BigDecimal("150.50"), assets.children.get(0).totalBalance);
+        assertEquals(BigDecimal.ZERO, assets.children.get(0).balance);
+        assertEquals(new BigDecimal("-20.00"), assets.children.get(1).totalBalance);
+        assertEquals(new BigDecimal("300.00"), roots.get(1).totalBalance);
+        assertTrue(roots.get(1).children.isEmpty());
+    }
+
+    @Test
+    public void testWithoutBalances() {
+        AccountTree tree = AccountTree.build(List.of(account(1, null, "1"), account(2, 1L, "1900")));
+
+        AccountTreeNode root = tree.toNodes(null).get(0);
+        assertNull(root.balance);
+        assertNull(root.totalBalance);
+        assertEquals("1900", root.children.get(0).accountNumber);
+    }
+
+    @Test
+    public void testChildBeforeParent() {
+        // Accounts come ordered by number, so a parent may well come after its children
+        AccountTree tree = AccountTree.build(List.of(
+                account(10, 12L, "1000"),
+                account(11, 10L, "1001"),
+                account(12, null, "9000")));
+
+        List<AccountTreeNode> roots = tree.toNodes(Map.of(11L, BigDecimal.TEN));
+        assertEquals(1, roots.size());
+        assertEquals(BigDecimal.TEN, roots.get(0).totalBalance);
+        assertEquals("1001", roots.get(0).children.get(0).children.get(0).accountNumber);
+    }
+
+    @Test
+    public void testMissingParentAndCycle() {
+        AccountTree tree = AccountTree.build(List.of(
+                account(1, 99L, "1000"),
+                account(2, 3L, "2000"),
+                account(3, 4L, "2100"),
+                account(4, 2L, "2200")));
+
+        List<AccountTreeNode> roots = tree.toNodes(Map.of(
+                1L, BigDecimal.ONE, 2L, BigDecimal.ONE, 3L, BigDecimal.ONE, 4L, BigDecimal.ONE));
+
+        // Every account appears once and the loop is counted once
+        assertEquals(2, roots.size());
+        assertEquals(BigDecimal.ONE, roots.get(0).totalBalance);
+        assertEquals(new BigDecimal(3), roots.get(1).totalBalance);
+        assertEquals(4, count(roots));
+    }
+
+    @Test
+    public void testDeepHierarchy() {
+        int depth = 100_000;
+        List<Account> chart = new ArrayList<>(depth);
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (long id = 1; id <= depth; id++) {
+            chart.add(account(id, id > 1 ? id - 1 : null, String.valueOf(id)));
+            balances.put(id, BigDecimal.ONE);
+        }
+
+        BigDecimal[] totals = AccountTree.build(chart).rollUp(balances);
+        assertEquals(new BigDecimal(depth), totals[0]);
+        assertEquals(BigDecimal.ONE, totals[depth - 1]);
+    }
+
+    private static int count(List<AccountTreeNode> nodes) {
+        int count = nodes.size();
+        for (AccountTreeNode node : nodes) {
+            count += count(node.children);
+        }
+        return count;
+    }
+
+    private static Account account(long id, Long parentId, String accountNumber) {
+        return new Account(id, parentId, accountNumber, "Konto " + accountNumber, "ASSET", true);
+    }
+}
@@ -0,0 +1,58 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClientCredentialCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ClientCredentialCache cache = new ClientCredentialCache(registry, Duration.ofMinutes(5), 100);
+
+    @Test
+    public void testOnlyTheVerifiedSecretMatches() {
+        cache.put(cache.version(), "client_a", "secret_1", 1L, "read:invoices", null);
+
+        ClientCredentialCache.VerifiedClient client = cache.find("client_a", "secret_1");
+        assertNotNull(client);
+        assertEquals(1L, client.customerId());
+        assertEquals("read:invoices", client.scopes());
+        assertNull(cache.find("client_a", "secret_2"));
+        assertNull(cache.find("client_b", "secret_1"));
+        assertNull(cache.find("client_a", null));
+        assertEquals(2.0, registry.get("cache.gets").tag("cache", "client-credentials").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    public void testInvalidateRevokes() {
+        cache.put(cache.version(), "client_a", "secret_1", 1L, "", null);
+        cache.invalidate("client_a");
+        assertNull(cache.find("client_a", "secret_1"));
+    }
+
+    @Test
+    public void testVerificationStartedBeforeInvalidationIsNotCached() {
+        // A token request read the client, then the client was deactivated before it finished
+        long version = cache.version();
+        cache.invalidate("client_a");
+        cache.put(version, "client_a", "secret_1", 1L, "", null);
+        assertNull(cache.find("client_a", "secret_1"));
+
+        cache.put(cache.version(), "client_a", "secret_1", 1L, "", null);
+        assertNotNull(cache.find("client_a", "secret_1"));
+    }
+
+    @Test
+    public void testExpiredClientIsNotServed() {
+        cache.put(cache.version(), "client_a", "secret_1", 1L, "", LocalDateTime.now().minusSeconds(1));
+        assertNull(cache.find("client_a", "secret_1"));
+
+        cache.put(cache.version(), "client_b", "secret_1", 1L, "", LocalDateTime.now().plusDays(1));
+        assertNotNull(cache.find("client_b", "secret_1"));
+    }
+}
@@ -0,0 +1,105 @@
+package no.snabel.service;
+
+import no.snabel.model.Customer;
+import no.snabel.model.Invoice;
+import no.snabel.service.DocumentCacheService.DocumentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies keying, storage and invalidation of rendered invoice documents.
+ */
+public class DocumentCacheServiceTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private DocumentCacheService cache;
+    private Invoice invoice;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new DocumentCacheService(cacheDir.toString());
+
+        Customer supplier = new Customer();
+        supplier.id = 1L;
+        supplier.updatedAt = LocalDateTime.of(2024, 12, 1, 8, 0);
+
+        invoice = new Invoice();
+        invoice.id = 42L;
+        invoice.customer = supplier;
+        invoice.updatedAt = LocalDateTime.of(2024, 12, 1, 9, 0);
+    }
+
+    @Test
+    public void testKeyFollowsInvoiceAndSupplierChanges() {
+        String pdfKey = cache.key(invoice, DocumentType.PDF);
+        assertEquals(pdfKey, cache.key(invoice, DocumentType.PDF));
+        assertNotEquals(pdfKey, cache.key(invoice, DocumentType.EHF));
+
+        invoice.updatedAt = invoice.updatedAt.plusSeconds(1);
+        String afterInvoiceUpdate = cache.key(invoice, DocumentType.PDF);
+        assertNotEquals(pdfKey, afterInvoiceUpdate);
+
+        invoice.customer.updatedAt = invoice.customer.updatedAt.plusSeconds(1);
+        assertNotEquals(afterInvoiceUpdate, cache.key(invoice, DocumentType.PDF));
+    }
+
+    @Test
+    public void testStoreOnceThenFind() throws IOException {
+        String key = cache.key(invoice, DocumentType.EHF);
+        assertTrue(cache.find(invoice, key, DocumentType.EHF).isEmpty());
+
+        AtomicInteger renders = new AtomicInteger();
+        Path stored = cache.store(invoice, key, DocumentType.EHF, out -> {
+            renders.incrementAndGet();
+            out.write("<Invoice/>".getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertEquals(1, renders.get());
+        assertEquals(stored, cache.find(invoice, key, DocumentType.EHF).orElseThrow());
+        assertEquals("<Invoice/>", Files.readString(stored));
+        assertEquals(key + ".xml", stored.getFileName().toString());
+    }
+
+    @Test
+    public void testStoreRemovesStaleVersions() throws IOException {
+        String oldKey = cache.key(invoice, DocumentType.PDF);
+        Path oldFile = cache.store(invoice, oldKey, DocumentType.PDF, out -> out.write(1));
+        String xmlKey = cache.key(invoice, DocumentType.EHF);
+        Path xmlFile = cache.store(invoice, xmlKey, DocumentType.EHF, out -> out.write(2));
+
+        invoice.updatedAt = invoice.updatedAt.plusMinutes(5);
+        String newKey = cache.key(invoice, DocumentType.PDF);
+        Path newFile = cache.store(invoice, newKey, DocumentType.PDF, out -> out.write(3));
+
+        assertFalse(Files.exists(oldFile));
+        assertTrue(Files.exists(newFile));
+        // Other document types of the same invoice are left alone
+        assertTrue(Files.exists(xmlFile));
+    }
+
+    @Test
+    public void testFailedRenderLeavesNothingBehind() throws IOException {
+        String key = cache.key(invoice, DocumentType.PDF);
+        assertThrows(RuntimeException.class, () -> cache.store(invoice, key, DocumentType.PDF, out -> {
+            out.write(1);
+            throw new IllegalStateException("Render failed");
+        }));
+
+        assertTrue(cache.find(invoice, key, DocumentType.PDF).isEmpty());
+        try (var files = Files.walk(cacheDir)) {
+            assertTrue(files.noneMatch(Files::isRegularFile));
+        }
+    }
+}
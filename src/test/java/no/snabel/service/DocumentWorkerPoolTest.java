@@ -0,0 +1,70 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that document work runs on the bounded pool and that overload is rejected and measured.
+ */
+public class DocumentWorkerPoolTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DocumentWorkerPool pool = new DocumentWorkerPool(registry, 1, 1);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testRunsOnWorkerThread() {
+        String thread = pool.submit(() -> Thread.currentThread().getName())
+                .await().atMost(Duration.ofSeconds(5));
+        assertTrue(thread.startsWith("documents-"), thread);
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // One task occupies the only worker, the next one fills the queue
+        Uni<String> running = pool.submit(() -> {
+            started.countDown();
+            await(release);
+            return "first";
+        });
+        var first = running.subscribe().asCompletionStage();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var second = pool.submit(() -> "second").subscribe().asCompletionStage();
+
+        assertEquals(1, pool.queueDepth());
+        assertEquals(1.0, registry.get("executor.queued").tag("name", "documents").gauge().value());
+
+        Uni<String> third = pool.submit(() -> "third");
+        assertThrows(RejectedExecutionException.class, () -> third.await().atMost(Duration.ofSeconds(5)));
+        assertEquals(1.0, registry.get("snabel.documents.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("first", first.toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertEquals(0, pool.queueDepth());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
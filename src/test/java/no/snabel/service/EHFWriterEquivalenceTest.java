@@ -0,0 +1,137 @@
+package no.snabel.service;
+
+import no.snabel.format.ehf.ubl.InvoiceType;
+import no.snabel.format.ehf.ubl.cac.PeriodType;
+import no.snabel.format.ehf.ubl.writer.InvoiceXmlWriter;
+import no.snabel.format.ehf.ubl.writer.StreamingUBLWriter;
+import no.snabel.format.ehf.ubl.writer.UBLWriter;
+import no.snabel.model.Invoice;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that the streaming EHF writer produces the same bytes as the DOM writer,
+ * and that both writers can be shared between threads.
+ */
+public class EHFWriterEquivalenceTest {
+
+    private final EHFInvoiceService ehfService = new EHFInvoiceService();
+    private InvoiceXmlWriter domWriter;
+    private InvoiceXmlWriter streamingWriter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        domWriter = new UBLWriter();
+        streamingWriter = new StreamingUBLWriter();
+    }
+
+    @Test
+    public void testTypicalInvoices() throws Exception {
+        assertIdentical(TestInvoices.invoice("Test AS", "0192", 1));
+        assertIdentical(TestInvoices.invoice("Test AS", "0192", 200));
+    }
+
+    @Test
+    public void testSpecialCharacters() throws Exception {
+        String text = "Test & <Co> \"AS\" 'x' ÆØÅ € tab\there\nnew\r\nline ]]> \u0085   😀";
+        String attribute = "00&\"<>'\t\n\r92 😀";
+        assertIdentical(TestInvoices.invoice(text, attribute, 3));
+    }
+
+    @Test
+    public void testEmptyAndMissingValues() throws Exception {
+        assertIdentical(TestInvoices.invoice("", "", 1));
+        assertIdentical(TestInvoices.invoice("Test AS", null, 1));
+    }
+
+    @Test
+    public void testMultipleAttributesAndEmptyElements() throws Exception {
+        InvoiceType ublInvoice = ehfService.toUblInvoice(TestInvoices.invoice("Test AS", "0192", 2));
+        ublInvoice.getId().setSchemeID("0088");
+        ublInvoice.getId().setSchemeAgencyID("9");
+        ublInvoice.getInvoiceTypeCode().setListID("UNCL1001");
+        ublInvoice.getInvoiceTypeCode().setName("Commercial invoice");
+        ublInvoice.setInvoicePeriod(new PeriodType());
+        assertIdentical(ublInvoice);
+    }
+
+    @Test
+    public void testAllBmpCharacters() throws Exception {
+        for (int block = 0; block < 0x10000; block += 0x100) {
+            StringBuilder text = new StringBuilder();
+            for (int c = block; c < block + 0x100; c++) {
+                boolean valid = c >= 0x20 ? (c < 0xD800 || c > 0xDFFF) : (c == '\t' || c == '\n' || c == '\r');
+                if (valid) {
+                    text.append((char) c);
+                }
+            }
+            if (text.length() > 0) {
+                assertIdentical(TestInvoices.invoice(text.toString(), text.toString(), 1));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidCharactersRejected() {
+        InvoiceType ublInvoice = ehfService.toUblInvoice(TestInvoices.invoice("Bad \u0001 char", "0192", 1));
+        assertThrows(Exception.class, () -> domWriter.writeToString(ublInvoice));
+        assertThrows(Exception.class, () -> streamingWriter.writeToString(ublInvoice));
+    }
+
+    @Test
+    public void testConcurrentGeneration() throws Exception {
+        List<InvoiceType> invoices = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            InvoiceType ublInvoice = ehfService.toUblInvoice(TestInvoices.invoice("Kunde " + i + " & Co", "0192", 1 + i * 5));
+            invoices.add(ublInvoice);
+            expected.add(streamingWriter.writeToString(ublInvoice));
+        }
+
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 50; n++) {
+                        int index = (offset + n) % invoices.size();
+                        assertEquals(expected.get(index), domWriter.writeToString(invoices.get(index)));
+                        assertEquals(expected.get(index), streamingWriter.writeToString(invoices.get(index)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertIdentical(Invoice invoice) throws Exception {
+        assertIdentical(ehfService.toUblInvoice(invoice));
+    }
+
+    private void assertIdentical(InvoiceType ublInvoice) throws Exception {
+        assertEquals(domWriter.writeToString(ublInvoice), streamingWriter.writeToString(ublInvoice));
+
+        ByteArrayOutputStream domBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream streamingBytes = new ByteArrayOutputStream();
+        domWriter.write(ublInvoice, domBytes);
+        streamingWriter.write(ublInvoice, streamingBytes);
+        assertArrayEquals(domBytes.toByteArray(), streamingBytes.toByteArray());
+    }
+}
@@ -0,0 +1,40 @@
+package no.snabel.service;
+
+import no.snabel.model.Invoice;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that ZIP entry names built from invoice numbers stay flat and safe.
+ */
+public class EfakturaBatchServiceTest {
+
+    @Test
+    public void testKeepsSafeInvoiceNumber() {
+        assertEquals("efaktura-INV-2024.001_A", EfakturaBatchService.entryStem(invoice(7L, "INV-2024.001_A")));
+    }
+
+    @Test
+    public void testReplacesPathAndOtherCharacters() {
+        assertEquals("efaktura-.._.._etc_passwd", EfakturaBatchService.entryStem(invoice(7L, "../../etc/passwd")));
+        assertEquals("efaktura-C__evil_x", EfakturaBatchService.entryStem(invoice(7L, "C:\\evil x")));
+        assertEquals("efaktura-Faktura_nr_12", EfakturaBatchService.entryStem(invoice(7L, "Faktura nr 12")));
+        assertEquals("efaktura-_rsoppgj_r", EfakturaBatchService.entryStem(invoice(7L, "Årsoppgjør")));
+    }
+
+    @Test
+    public void testFallsBackToInvoiceId() {
+        assertEquals("efaktura-7", EfakturaBatchService.entryStem(invoice(7L, "..")));
+        assertEquals("efaktura-7", EfakturaBatchService.entryStem(invoice(7L, "/")));
+        assertEquals("efaktura-7", EfakturaBatchService.entryStem(invoice(7L, "")));
+        assertEquals("efaktura-7", EfakturaBatchService.entryStem(invoice(7L, null)));
+    }
+
+    private static Invoice invoice(Long id, String invoiceNumber) {
+        Invoice invoice = new Invoice();
+        invoice.id = id;
+        invoice.invoiceNumber = invoiceNumber;
+        return invoice;
+    }
+}
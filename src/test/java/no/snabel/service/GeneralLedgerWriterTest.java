@@ -0,0 +1,77 @@
+package no.snabel.service;
+
+import no.snabel.service.GeneralLedgerWriter.Format;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeneralLedgerWriterTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 3, 1);
+
+    @Test
+    public void testRunningBalancePerAccount() {
+        GeneralLedgerWriter writer = new GeneralLedgerWriter(Format.CSV);
+        writer.line("1900", "Bank", 10000, FROM, LocalDate.of(2025, 3, 4), "7", "Salg", 125000, 0);
+        writer.line("1900", "Bank", 10000, FROM, LocalDate.of(2025, 3, 9), "8", "Husleie", 0, 150050);
+        writer.line("3000", "Salgsinntekt", -50000, FROM, LocalDate.of(2025, 3, 4), "7", "Salg", 0, 100000);
+
+        assertEquals("""
+                1900,Bank,2025-03-01,,Opening balance,0.00,0.00,100.00
+                1900,Bank,2025-03-04,7,Salg,1250.00,0.00,1350.00
+                1900,Bank,2025-03-09,8,Husleie,0.00,1500.50,-150.50
+                3000,Salgsinntekt,2025-03-01,,Opening balance,0.00,0.00,-500.00
+                3000,Salgsinntekt,2025-03-04,7,Salg,0.00,1000.00,-1500.00
+                """, drain(writer));
+    }
+
+    @Test
+    public void testBalanceCarriesAcrossDrains() {
+        GeneralLedgerWriter writer = new GeneralLedgerWriter(Format.CSV);
+        writer.line("1900", "Bank", 0, FROM, FROM, "1", "Salg", 5, 0);
+        drain(writer);
+        writer.line("1900", "Bank", 0, FROM, FROM, "2", "Salg", 5, 0);
+
+        assertEquals("1900,Bank,2025-03-01,2,Salg,0.05,0.00,0.10\n", drain(writer));
+        assertEquals("", drain(writer));
+    }
+
+    @Test
+    public void testCsvQuoting() {
+        GeneralLedgerWriter writer = new GeneralLedgerWriter(Format.CSV);
+        writer.line("1900", "Bank, hovedkonto", 0, FROM, FROM, "1", "Faktura \"12\"", 100, 0);
+
+        String[] lines = drain(writer).split("\n");
+        assertEquals("1900,\"Bank, hovedkonto\",2025-03-01,1,\"Faktura \"\"12\"\"\",1.00,0.00,1.00", lines[1]);
+    }
+
+    @Test
+    public void testNdjson() {
+        GeneralLedgerWriter writer = new GeneralLedgerWriter(Format.NDJSON);
+        writer.line("1900", "Bank", 0, FROM, FROM, "1", "Linje 1\n\"sitat\"\\\t\u0001", 0, 99);
+
+        // The last newline is left to the framework, which terminates every stream item
+        assertEquals("""
+                {"accountNumber":"1900","accountName":"Bank","entryDate":"2025-03-01","entryNumber":null,\
+                "description":"Opening balance","debit":0.00,"credit":0.00,"balance":0.00}
+                {"accountNumber":"1900","accountName":"Bank","entryDate":"2025-03-01","entryNumber":"1",\
+                "description":"Linje 1\\n\\"sitat\\"\\\\\\t\\u0001","debit":0.00,"credit":0.99,"balance":-0.99}""",
+                drain(writer));
+    }
+
+    @Test
+    public void testCents() {
+        assertEquals(0, GeneralLedgerWriter.cents(null));
+        assertEquals(123456, GeneralLedgerWriter.cents(new BigDecimal("1234.56")));
+        assertEquals(-5, GeneralLedgerWriter.cents(new BigDecimal("-0.05")));
+        assertThrows(ArithmeticException.class, () -> GeneralLedgerWriter.cents(new BigDecimal("0.001")));
+    }
+
+    private static String drain(GeneralLedgerWriter writer) {
+        return new String(writer.drain(), StandardCharsets.UTF_8);
+    }
+}
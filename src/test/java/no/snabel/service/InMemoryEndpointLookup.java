@@ -0,0 +1,41 @@
+package no.snabel.service;
+
+import network.oxalis.vefa.peppol.common.model.DocumentTypeIdentifier;
+import network.oxalis.vefa.peppol.common.model.Endpoint;
+import network.oxalis.vefa.peppol.common.model.ParticipantIdentifier;
+import network.oxalis.vefa.peppol.common.model.ProcessIdentifier;
+import network.oxalis.vefa.peppol.common.model.TransportProfile;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for the SMP in tests: answers from registered receivers and counts lookups.
+ */
+public class InMemoryEndpointLookup implements EndpointLookup {
+
+    private final Map<ParticipantIdentifier, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    public InMemoryEndpointLookup register(ParticipantIdentifier receiver, String accessPointUrl) {
+        endpoints.put(receiver, Endpoint.of(TransportProfile.AS4, URI.create(accessPointUrl), null));
+        return this;
+    }
+
+    @Override
+    public Endpoint lookup(ParticipantIdentifier receiver, DocumentTypeIdentifier documentType, ProcessIdentifier process)
+            throws Exception {
+        lookups.incrementAndGet();
+        Endpoint endpoint = endpoints.get(receiver);
+        if (endpoint == null) {
+            throw new IllegalStateException("Receiver " + receiver + " is not registered in the SMP");
+        }
+        return endpoint;
+    }
+
+    public int lookups() {
+        return lookups.get();
+    }
+}
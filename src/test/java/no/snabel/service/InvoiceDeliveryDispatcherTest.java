@@ -0,0 +1,30 @@
+package no.snabel.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies the retry schedule of the invoice delivery outbox.
+ */
+public class InvoiceDeliveryDispatcherTest {
+
+    private static final Duration INITIAL = Duration.ofSeconds(30);
+    private static final Duration MAX = Duration.ofHours(1);
+
+    @Test
+    public void testBackoffDoublesPerAttempt() {
+        assertEquals(Duration.ofSeconds(30), InvoiceDeliveryDispatcher.backoff(1, INITIAL, MAX));
+        assertEquals(Duration.ofSeconds(60), InvoiceDeliveryDispatcher.backoff(2, INITIAL, MAX));
+        assertEquals(Duration.ofSeconds(120), InvoiceDeliveryDispatcher.backoff(3, INITIAL, MAX));
+        assertEquals(Duration.ofMinutes(32), InvoiceDeliveryDispatcher.backoff(7, INITIAL, MAX));
+    }
+
+    @Test
+    public void testBackoffIsCapped() {
+        assertEquals(MAX, InvoiceDeliveryDispatcher.backoff(8, INITIAL, MAX));
+        assertEquals(MAX, InvoiceDeliveryDispatcher.backoff(1000, INITIAL, MAX));
+    }
+}
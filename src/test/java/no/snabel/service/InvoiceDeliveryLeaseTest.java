@@ -0,0 +1,99 @@
+package no.snabel.service;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.inject.Inject;
+import no.snabel.service.InvoiceDeliveryDispatcher.ClaimedDelivery;
+import no.snabel.service.PeppolAccessPointService.PeppolSendResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that only the holder of a delivery's current lease can record its outcome.
+ */
+@QuarkusTest
+public class InvoiceDeliveryLeaseTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Inject
+    InvoiceDeliveryDispatcher dispatcher;
+
+    @Inject
+    Pool pool;
+
+    @Test
+    public void testExpiredLeaseCannotRecordDelivery() {
+        LocalDateTime currentLease = LocalDateTime.now().plusMinutes(10).withNano(0);
+        long invoiceId = insertInvoice("INV-LEASE-OK-" + System.nanoTime());
+        long deliveryId = insertInProgressDelivery(invoiceId, 1, currentLease);
+        PeppolSendResult result = new PeppolSendResult();
+        result.messageId = "late";
+
+        // A worker whose lease expired and was handed on
+        dispatcher.markDelivered(new ClaimedDelivery(deliveryId, invoiceId, 1, currentLease.minusMinutes(5)), result)
+                .await().atMost(TIMEOUT);
+        assertEquals("IN_PROGRESS", row(deliveryId).getString("status"));
+
+        dispatcher.markFailed(new ClaimedDelivery(deliveryId, invoiceId, 1, currentLease.minusMinutes(5)),
+                        new RuntimeException("late failure"))
+                .await().atMost(TIMEOUT);
+        assertEquals("IN_PROGRESS", row(deliveryId).getString("status"));
+
+        result.messageId = "current";
+        dispatcher.markDelivered(new ClaimedDelivery(deliveryId, invoiceId, 1, currentLease), result)
+                .await().atMost(TIMEOUT);
+        Row delivered = row(deliveryId);
+        assertEquals("DELIVERED", delivered.getString("status"));
+        assertEquals("current", delivered.getString("message_id"));
+    }
+
+    @Test
+    public void testExpiredLeaseOnLastAttemptIsDead() {
+        // Test config allows two attempts
+        long invoiceId = insertInvoice("INV-LEASE-DEAD-" + System.nanoTime());
+        long deliveryId = insertInProgressDelivery(invoiceId, 2, LocalDateTime.now().minusMinutes(1));
+
+        dispatcher.dispatchDue().await().atMost(TIMEOUT);
+
+        Row dead = row(deliveryId);
+        assertEquals("DEAD", dead.getString("status"));
+        assertEquals(2, dead.getInteger("attempts"));
+        assertTrue(dead.getString("last_error").startsWith("Lease expired during attempt 2"));
+    }
+
+    private long insertInvoice(String invoiceNumber) {
+        return pool.preparedQuery("""
+                        INSERT INTO invoices (customer_id, invoice_number, invoice_date, due_date, client_name)
+                        VALUES (1, $1, $2, $3, 'Lease Test AS') RETURNING id
+                        """)
+                .execute(Tuple.of(invoiceNumber, LocalDate.now(), LocalDate.now().plusDays(14)))
+                .await().atMost(TIMEOUT)
+                .iterator().next().getLong("id");
+    }
+
+    private long insertInProgressDelivery(long invoiceId, int attempts, LocalDateTime lockedUntil) {
+        return pool.preparedQuery("""
+                        INSERT INTO invoice_deliveries (invoice_id, customer_id, channel, status, attempts, locked_until)
+                        VALUES ($1, 1, 'EHF', 'IN_PROGRESS', $2, $3) RETURNING id
+                        """)
+                .execute(Tuple.of(invoiceId, attempts, lockedUntil))
+                .await().atMost(TIMEOUT)
+                .iterator().next().getLong("id");
+    }
+
+    private Row row(long deliveryId) {
+        return pool.preparedQuery("SELECT status, attempts, message_id, last_error FROM invoice_deliveries WHERE id = $1")
+                .execute(Tuple.of(deliveryId))
+                .await().atMost(TIMEOUT)
+                .iterator().next();
+    }
+}
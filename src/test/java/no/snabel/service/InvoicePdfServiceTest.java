@@ -0,0 +1,112 @@
+package no.snabel.service;
+
+import no.snabel.model.Invoice;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the page layout of generated invoice PDFs.
+ */
+public class InvoicePdfServiceTest {
+
+    private final InvoicePdfService pdfService = new InvoicePdfService();
+
+    @Test
+    public void testSinglePageInvoice() throws Exception {
+        try (PDDocument document = Loader.loadPDF(pdfService.generatePdf(TestInvoices.invoice(5)))) {
+            assertEquals(1, document.getNumberOfPages());
+
+            String text = pageText(document, 1);
+            assertTrue(text.contains("FAKTURA"));
+            assertTrue(text.contains("TOTALT:"));
+            assertTrue(text.contains("Side 1"));
+            assertFalse(text.contains("Overføres"));
+        }
+    }
+
+    @Test
+    public void testLargeInvoiceSpansPages() throws Exception {
+        Invoice invoice = TestInvoices.invoice(200);
+        try (PDDocument document = Loader.loadPDF(pdfService.generatePdf(invoice))) {
+            int pages = document.getNumberOfPages();
+            assertTrue(pages > 1, "Expected several pages, got " + pages);
+
+            StringBuilder allText = new StringBuilder();
+            int carriedPages = 0;
+            for (int page = 1; page <= pages; page++) {
+                String text = pageText(document, page);
+                allText.append(text);
+                assertTrue(text.contains("Side " + page));
+                if (page > 1) {
+                    assertTrue(text.contains("Faktura " + TestInvoices.INVOICE_NUMBER + " (forts.)"));
+                }
+                if (text.contains("Overføres")) {
+                    // The table continues on the next page below a repeated header
+                    String next = pageText(document, page + 1);
+                    assertTrue(next.contains("Beskrivelse"));
+                    assertTrue(next.contains("Overført"));
+                    carriedPages++;
+                }
+            }
+            assertTrue(carriedPages > 0);
+
+            // Every line is rendered exactly once, followed by the totals
+            String text = allText.toString();
+            for (int i = 1; i <= 200; i++) {
+                assertEquals(1, countLines(text, i + " Konsulenttjenester.*"), "Line " + i);
+            }
+            assertTrue(text.indexOf("TOTALT:") > text.indexOf("200 Konsulenttjenester"));
+        }
+    }
+
+    @Test
+    public void testCarriedSubtotalMatchesLines() throws Exception {
+        try (PDDocument document = Loader.loadPDF(pdfService.generatePdf(TestInvoices.invoice(200)))) {
+            // Each line is 1,00 x 100,00, so the amount carried to page 2 is 100 x lines on page 1
+            String firstPage = pageText(document, 1);
+            int linesOnFirstPage = countLines(firstPage, "\\d+ Konsulenttjenester.*");
+            assertTrue(linesOnFirstPage > 0);
+            String carried = String.format("%,.2f", new BigDecimal(linesOnFirstPage * 100)).replace(",", " ");
+            assertTrue(firstPage.contains("Overføres " + carried), "Expected carried amount " + carried);
+            assertTrue(pageText(document, 2).contains("Overført " + carried));
+        }
+    }
+
+    @Test
+    public void testStreamingMatchesByteArray() throws Exception {
+        Invoice invoice = TestInvoices.invoice(200);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pdfService.generatePdf(invoice, out);
+
+        try (PDDocument streamed = Loader.loadPDF(out.toByteArray());
+             PDDocument buffered = Loader.loadPDF(pdfService.generatePdf(invoice))) {
+            assertEquals(buffered.getNumberOfPages(), streamed.getNumberOfPages());
+            assertEquals(new PDFTextStripper().getText(buffered), new PDFTextStripper().getText(streamed));
+        }
+    }
+
+    private String pageText(PDDocument document, int page) throws Exception {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setLineSeparator("\n");
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        return stripper.getText(document);
+    }
+
+    private int countLines(String text, String regex) {
+        int count = 0;
+        for (String line : text.split("\n")) {
+            if (line.matches(regex)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,149 @@
+package no.snabel.service;
+
+import no.snabel.dto.JournalEntryRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the double-entry checks made before anything is posted.
+ */
+public class JournalPostingServiceTest {
+
+    @Test
+    public void testBalancedEntryIsValid() {
+        JournalEntryRequest entry = entry(
+                line("1900", "1250.00", null),
+                line("3000", null, "1000"),
+                line("2700", null, "250.000"));
+        assertDoesNotThrow(() -> JournalPostingService.validate(List.of(entry)));
+    }
+
+    @Test
+    public void testUnbalancedEntryIsRejected() {
+        JournalEntryRequest balanced = entry(line("1900", "100", null), line("3000", null, "100"));
+        JournalEntryRequest unbalanced = entry(line("1900", "100.00", null), line("3000", null, "90.00"));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> JournalPostingService.validate(List.of(balanced, unbalanced)));
+        assertEquals("Entry 2: debit 100.00 does not equal credit 90.00", error.getMessage());
+    }
+
+    @Test
+    public void testLineMustBeEitherDebitOrCredit() {
+        assertInvalid("Entry 1: line 2 must have either a debit or a credit amount",
+                entry(line("1900", "100", null), line("3000", "50", "150")));
+        assertInvalid("Entry 1: line 1 must have either a debit or a credit amount",
+                entry(line("1900", null, null), line("3000", null, "0")));
+        assertInvalid("Entry 1: line 1 has a negative amount",
+                entry(line("1900", "-100", null), line("3000", null, "-100")));
+        assertInvalid("Entry 1: line 1 has more than two decimals",
+                entry(line("1900", "100.005", null), line("3000", null, "100.005")));
+        assertInvalid("Entry 1: line 2 has no account",
+                entry(line("1900", "100", null), line(null, null, "100")));
+    }
+
+    @Test
+    public void testEntryHeaderIsRequired() {
+        JournalEntryRequest single = entry(line("1900", "100", null));
+        assertInvalid("Entry 1: at least two lines are required", single);
+
+        JournalEntryRequest undated = entry(line("1900", "100", null), line("3000", null, "100"));
+        undated.entryDate = null;
+        assertInvalid("Entry 1: entryDate is required", undated);
+
+        JournalEntryRequest unknownType = entry(line("1900", "100", null), line("3000", null, "100"));
+        unknownType.entryType = "IMPORT";
+        assertInvalid("Entry 1: unknown entryType IMPORT", unknownType);
+
+        assertThrows(IllegalArgumentException.class, () -> JournalPostingService.validate(List.of()));
+    }
+
+    @Test
+    public void testAccountsAreResolvedFromCachedIds() {
+        Map<String, Long> accountIds = Map.of("1900", 1L, "3000", 3L, "2700", 4L, "1600", 2L);
+        JournalEntryRequest sale = entry(line("1900", "125", null), line("3000", null, "100"), line("2700", null, "25"));
+
+        assertEquals(Map.of("1900", 1L, "3000", 3L, "2700", 4L),
+                JournalPostingService.resolveAccounts(accountIds, List.of(sale)));
+
+        JournalEntryRequest unknown = entry(line("1900", "100", null), line("9999", null, "100"));
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> JournalPostingService.resolveAccounts(accountIds, List.of(sale, unknown)));
+        assertEquals("Unknown account 9999", error.getMessage());
+    }
+
+    @Test
+    public void testAccountTotalsAreAggregatedInIdOrder() {
+        Map<String, Long> accounts = Map.of("1900", 1L, "1600", 2L, "3000", 3L, "2700", 4L);
+        List<JournalEntryRequest> entries = List.of(
+                entry(line("3000", null, "1000"), line("2700", null, "250"), line("1900", "1250", null)),
+                entry(line("1600", "500", null), line("3000", null, "500")),
+                entry(line("1900", "500", null), line("1600", null, "500")));
+
+        SortedMap<Long, BigDecimal[]> totals = JournalPostingService.accountTotals(entries, accounts);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), List.copyOf(totals.keySet()));
+        assertAmounts("1750", "0", totals.get(1L));
+        assertAmounts("500", "500", totals.get(2L));
+        assertAmounts("0", "1500", totals.get(3L));
+        assertAmounts("0", "250", totals.get(4L));
+    }
+
+    @Test
+    public void testPeriodTotalsAreGroupedByMonth() {
+        Map<String, Long> accounts = Map.of("1900", 1L, "3000", 3L);
+        JournalEntryRequest january = entry(line("1900", "100", null), line("3000", null, "100"));
+        JournalEntryRequest lateJanuary = entry(line("1900", "50", null), line("3000", null, "50"));
+        lateJanuary.entryDate = LocalDate.of(2025, 1, 31);
+        JournalEntryRequest march = entry(line("3000", "20", null), line("1900", null, "20"));
+        march.entryDate = LocalDate.of(2025, 3, 1);
+
+        List<PeriodBalanceService.Movement> movements =
+                JournalPostingService.periodTotals(List.of(march, january, lateJanuary), accounts);
+
+        assertEquals(4, movements.size());
+        assertMovement(1L, "2025-01-01", "150", "0", movements.get(0));
+        assertMovement(1L, "2025-03-01", "0", "20", movements.get(1));
+        assertMovement(3L, "2025-01-01", "0", "150", movements.get(2));
+        assertMovement(3L, "2025-03-01", "20", "0", movements.get(3));
+    }
+
+    private static void assertMovement(Long accountId, String period, String debit, String credit,
+                                       PeriodBalanceService.Movement movement) {
+        assertEquals(accountId, movement.accountId());
+        assertEquals(LocalDate.parse(period), movement.period());
+        assertAmounts(debit, credit, new BigDecimal[] {movement.debit(), movement.credit()});
+    }
+
+    private static void assertAmounts(String debit, String credit, BigDecimal[] total) {
+        assertEquals(0, new BigDecimal(debit).compareTo(total[0]), "debit " + total[0]);
+        assertEquals(0, new BigDecimal(credit).compareTo(total[1]), "credit " + total[1]);
+    }
+
+    private static void assertInvalid(String message, JournalEntryRequest entry) {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> JournalPostingService.validate(List.of(entry)));
+        assertEquals(message, error.getMessage());
+    }
+
+    private static JournalEntryRequest entry(JournalEntryRequest.Line... lines) {
+        JournalEntryRequest entry = new JournalEntryRequest();
+        entry.entryDate = LocalDate.of(2025, 1, 15);
+        entry.description = "Kontantsalg";
+        entry.lines = List.of(lines);
+        return entry;
+    }
+
+    private static JournalEntryRequest.Line line(String account, String debit, String credit) {
+        return new JournalEntryRequest.Line(account,
+                debit != null ? new BigDecimal(debit) : null,
+                credit != null ? new BigDecimal(credit) : null);
+    }
+}
@@ -0,0 +1,103 @@
+package no.snabel.service;
+
+import network.oxalis.outbound.OxalisOutboundComponent;
+import no.snabel.service.OxalisBootstrap.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that Oxalis initialization stays out of application startup, measured against a
+ * component that takes as long to build as a real Guice graph with keystore loading.
+ */
+public class OxalisBootstrapTest {
+
+    private static final Duration COMPONENT_INIT = Duration.ofMillis(800);
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    @Test
+    public void testBackgroundInitDoesNotDelayStartup() {
+        // Previously the component was built while constructing the bean
+        long eager = measure(() -> slowComponent().get());
+
+        long start = System.nanoTime();
+        OxalisBootstrap bootstrap = new OxalisBootstrap(true, "background", slowComponent());
+        bootstrap.onStart(null);
+        long startup = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertTrue(eager >= COMPONENT_INIT.toMillis(), "eager init took " + eager + " ms");
+        assertTrue(startup < COMPONENT_INIT.toMillis() / 4, "startup took " + startup + " ms");
+        assertEquals(State.STARTING, bootstrap.state());
+        assertTrue(bootstrap.isAvailable());
+
+        bootstrap.component().await().atMost(Duration.ofSeconds(5));
+        assertEquals(State.READY, bootstrap.state());
+        assertTrue(bootstrap.initTime().compareTo(COMPONENT_INIT) >= 0);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void testLazyInitOnFirstUse() {
+        OxalisBootstrap bootstrap = new OxalisBootstrap(true, "lazy", slowComponent());
+        bootstrap.onStart(null);
+        assertEquals(State.NOT_STARTED, bootstrap.state());
+        assertEquals(0, created.get());
+
+        bootstrap.component().await().atMost(Duration.ofSeconds(5));
+        bootstrap.component().await().atMost(Duration.ofSeconds(5));
+        assertEquals(State.READY, bootstrap.state());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void testFailedInitIsFinal() {
+        OxalisBootstrap bootstrap = new OxalisBootstrap(true, "lazy", () -> {
+            created.incrementAndGet();
+            throw new IllegalStateException("Keystore not found");
+        });
+
+        assertThrows(IllegalStateException.class, () -> bootstrap.component().await().atMost(Duration.ofSeconds(5)));
+        assertThrows(IllegalStateException.class, () -> bootstrap.component().await().atMost(Duration.ofSeconds(5)));
+        assertEquals(State.FAILED, bootstrap.state());
+        assertEquals("Keystore not found", bootstrap.failure().getMessage());
+        assertFalse(bootstrap.isAvailable());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void testDisabled() {
+        OxalisBootstrap bootstrap = new OxalisBootstrap(false, "background", slowComponent());
+        bootstrap.onStart(null);
+
+        assertEquals(State.DISABLED, bootstrap.state());
+        assertFalse(bootstrap.isAvailable());
+        assertThrows(UnsupportedOperationException.class, () -> bootstrap.component().await().indefinitely());
+        assertEquals(0, created.get());
+    }
+
+    /**
+     * Stands in for the Oxalis component, which cannot be built without an Oxalis home
+     */
+    private Supplier<OxalisOutboundComponent> slowComponent() {
+        return () -> {
+            created.incrementAndGet();
+            try {
+                Thread.sleep(COMPONENT_INIT.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        };
+    }
+
+    private static long measure(Runnable runnable) {
+        long start = System.nanoTime();
+        runnable.run();
+        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+    }
+}
@@ -0,0 +1,73 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.elytron.security.common.BcryptUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that bcrypt runs on the bounded pool, that a login burst beyond its capacity is
+ * rejected rather than queued, and that the time spent is recorded.
+ */
+public class PasswordHasherTest {
+
+    private static final String HASH = BcryptUtil.bcryptHash("snabeltann");
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PasswordHasher hasher = new PasswordHasher(registry, 1, 2);
+
+    @AfterEach
+    public void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue(hasher.matches("snabeltann", HASH).await().atMost(Duration.ofSeconds(5)));
+        assertFalse(hasher.matches("feil", HASH).await().atMost(Duration.ofSeconds(5)));
+
+        String hash = hasher.hash("hemmelig").await().atMost(Duration.ofSeconds(5));
+        assertTrue(BcryptUtil.matches("hemmelig", hash));
+
+        assertEquals(2, registry.get("snabel.auth.hash.duration").tag("operation", "verify").timer().count());
+        assertEquals(1, registry.get("snabel.auth.hash.duration").tag("operation", "hash").timer().count());
+        assertEquals(3, registry.get("snabel.auth.hash.wait").timer().count());
+        assertTrue(registry.get("snabel.auth.hash.duration").tag("operation", "verify").timer()
+                .totalTime(TimeUnit.MICROSECONDS) > 0);
+    }
+
+    @Test
+    public void testBurstIsRejectedBeyondCapacity() throws Exception {
+        // One check runs, two wait, the rest are turned away at once
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            checks.add(hasher.matches("snabeltann", HASH).subscribe().asCompletionStage());
+        }
+
+        int verified = 0;
+        int rejected = 0;
+        for (CompletableFuture<Boolean> check : checks) {
+            try {
+                assertTrue(check.get(10, TimeUnit.SECONDS));
+                verified++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(RejectedExecutionException.class, e.getCause());
+                rejected++;
+            }
+        }
+        assertEquals(3, verified);
+        assertEquals(3, rejected);
+        assertEquals(3.0, registry.get("snabel.auth.rejected").counter().count());
+        assertEquals(0, hasher.queueDepth());
+    }
+}
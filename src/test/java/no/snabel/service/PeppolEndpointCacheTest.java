@@ -0,0 +1,136 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import network.oxalis.api.lang.OxalisTransmissionException;
+import network.oxalis.api.lookup.LookupService;
+import network.oxalis.vefa.peppol.common.model.DocumentTypeIdentifier;
+import network.oxalis.vefa.peppol.common.model.Endpoint;
+import network.oxalis.vefa.peppol.common.model.Header;
+import network.oxalis.vefa.peppol.common.model.ParticipantIdentifier;
+import network.oxalis.vefa.peppol.common.model.ProcessIdentifier;
+import network.oxalis.vefa.peppol.common.model.Scheme;
+import no.snabel.service.PeppolEndpointCache.EndpointNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies caching, negative caching, expiry and invalidation of PEPPOL receiver endpoints.
+ */
+public class PeppolEndpointCacheTest {
+
+    private static final ParticipantIdentifier KNOWN = PeppolAccessPointService.parseParticipantId("987654321", "0192");
+    private static final ParticipantIdentifier UNKNOWN = PeppolAccessPointService.parseParticipantId("0192:111111111", null);
+    private static final DocumentTypeIdentifier INVOICE = DocumentTypeIdentifier.of(
+            "urn:oasis:names:specification:ubl:schema:xsd:Invoice-2::Invoice##"
+                    + "urn:cen.eu:en16931:2017#compliant#urn:fdc:peppol.eu:2017:poacc:billing:3.0::2.1",
+            Scheme.of("busdox-docid-qns"));
+    private static final DocumentTypeIdentifier CREDIT_NOTE = DocumentTypeIdentifier.of(
+            "urn:oasis:names:specification:ubl:schema:xsd:CreditNote-2::CreditNote##"
+                    + "urn:cen.eu:en16931:2017#compliant#urn:fdc:peppol.eu:2017:poacc:billing:3.0::2.1",
+            Scheme.of("busdox-docid-qns"));
+    private static final ProcessIdentifier BILLING = ProcessIdentifier.of(
+            "urn:fdc:peppol.eu:2017:poacc:billing:01:1.0", Scheme.of("cenbii-procid-ubl"));
+    private static final ProcessIdentifier SELFBILLING = ProcessIdentifier.of(
+            "urn:fdc:peppol.eu:2017:poacc:selfbilling:01:1.0", Scheme.of("cenbii-procid-ubl"));
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final InMemoryEndpointLookup smp = new InMemoryEndpointLookup()
+            .register(KNOWN, "https://ap.example.no/as4");
+
+    @Test
+    public void testResolvedEndpointIsCached() {
+        PeppolEndpointCache cache = new PeppolEndpointCache(registry, Duration.ofHours(1), Duration.ofMinutes(5), 100);
+
+        Endpoint first = cache.resolve(KNOWN, INVOICE, BILLING, smp);
+        Endpoint second = cache.resolve(KNOWN, INVOICE, BILLING, smp);
+
+        assertEquals("https://ap.example.no/as4", first.getAddress().toString());
+        assertSame(first, second);
+        assertEquals(1, smp.lookups());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "peppol-endpoints").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "peppol-endpoints").tag("result", "miss").functionCounter().count());
+
+        // Document type and process are part of the key
+        cache.resolve(KNOWN, CREDIT_NOTE, BILLING, smp);
+        assertEquals(2, smp.lookups());
+        cache.resolve(KNOWN, INVOICE, SELFBILLING, smp);
+        assertEquals(3, smp.lookups());
+    }
+
+    @Test
+    public void testOxalisLooksUpThroughCache() throws Exception {
+        PeppolEndpointCache cache = new PeppolEndpointCache(registry, Duration.ofHours(1), Duration.ofMinutes(5), 100);
+        LookupService oxalisSmp = header -> {
+            try {
+                return smp.lookup(header.getReceiver(), header.getDocumentType(), header.getProcess());
+            } catch (Exception e) {
+                throw new OxalisTransmissionException(e.getMessage(), e);
+            }
+        };
+        LookupService lookup = new CachedEndpointLookupService(oxalisSmp, cache);
+
+        Header known = Header.newInstance().receiver(KNOWN).documentType(INVOICE).process(BILLING);
+        assertEquals("https://ap.example.no/as4", lookup.lookup(known).getAddress().toString());
+        lookup.lookup(known);
+        assertEquals(1, smp.lookups());
+
+        // Failures reach Oxalis as transmission errors and are cached negatively
+        Header unknown = Header.newInstance().receiver(UNKNOWN).documentType(INVOICE).process(BILLING);
+        assertThrows(OxalisTransmissionException.class, () -> lookup.lookup(unknown));
+        assertThrows(OxalisTransmissionException.class, () -> lookup.lookup(unknown));
+        assertEquals(2, smp.lookups());
+    }
+
+    @Test
+    public void testFailedLookupIsCachedNegatively() {
+        PeppolEndpointCache cache = new PeppolEndpointCache(registry, Duration.ofHours(1), Duration.ofMinutes(5), 100);
+
+        assertThrows(EndpointNotFoundException.class, () -> cache.resolve(UNKNOWN, INVOICE, BILLING, smp));
+        assertThrows(EndpointNotFoundException.class, () -> cache.resolve(UNKNOWN, INVOICE, BILLING, smp));
+        assertEquals(1, smp.lookups());
+
+        // Once registered, the receiver is found after invalidation
+        smp.register(UNKNOWN, "https://other-ap.example.no/as4");
+        cache.invalidate(UNKNOWN);
+        assertEquals("https://other-ap.example.no/as4", cache.resolve(UNKNOWN, INVOICE, BILLING, smp).getAddress().toString());
+        assertEquals(2, smp.lookups());
+    }
+
+    @Test
+    public void testEntriesExpire() throws InterruptedException {
+        PeppolEndpointCache cache = new PeppolEndpointCache(registry, Duration.ofMillis(200), Duration.ofMillis(50), 100);
+
+        cache.resolve(KNOWN, INVOICE, BILLING, smp);
+        assertThrows(EndpointNotFoundException.class, () -> cache.resolve(UNKNOWN, INVOICE, BILLING, smp));
+        assertEquals(2, smp.lookups());
+
+        // The negative entry expires first
+        Thread.sleep(100);
+        cache.resolve(KNOWN, INVOICE, BILLING, smp);
+        assertThrows(EndpointNotFoundException.class, () -> cache.resolve(UNKNOWN, INVOICE, BILLING, smp));
+        assertEquals(3, smp.lookups());
+
+        Thread.sleep(200);
+        cache.resolve(KNOWN, INVOICE, BILLING, smp);
+        assertEquals(4, smp.lookups());
+    }
+
+    @Test
+    public void testInvalidation() {
+        PeppolEndpointCache cache = new PeppolEndpointCache(registry, Duration.ofHours(1), Duration.ofMinutes(5), 100);
+        cache.resolve(KNOWN, INVOICE, BILLING, smp);
+        cache.resolve(KNOWN, CREDIT_NOTE, BILLING, smp);
+        assertThrows(EndpointNotFoundException.class, () -> cache.resolve(UNKNOWN, INVOICE, BILLING, smp));
+        assertEquals(3, cache.size());
+
+        // All document types of the receiver are dropped, other receivers are kept
+        cache.invalidate(KNOWN);
+        assertEquals(1, cache.size());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+}
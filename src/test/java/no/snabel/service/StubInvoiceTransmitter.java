@@ -0,0 +1,58 @@
+package no.snabel.service;
+
+import io.quarkus.test.Mock;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import no.snabel.model.Invoice;
+import no.snabel.service.PeppolAccessPointService.PeppolSendResult;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local stand-in for the PEPPOL access point in tests. Accepts every invoice
+ * except those registered with {@link #failFor(String)} until {@link #recover(String)},
+ * and records what was sent.
+ */
+@Mock
+@ApplicationScoped
+public class StubInvoiceTransmitter implements InvoiceTransmitter {
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public Uni<PeppolSendResult> sendInvoice(Invoice invoice) {
+        if (failing.contains(invoice.invoiceNumber)) {
+            return Uni.createFrom().failure(new RuntimeException("Receiver rejected " + invoice.invoiceNumber));
+        }
+        sent.add(invoice.invoiceNumber);
+
+        PeppolSendResult result = new PeppolSendResult();
+        result.success = true;
+        result.messageId = "stub-" + invoice.invoiceNumber;
+        result.protocol = "AS4";
+        result.timestamp = LocalDateTime.now();
+        return Uni.createFrom().item(result);
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    public void failFor(String invoiceNumber) {
+        failing.add(invoiceNumber);
+    }
+
+    public void recover(String invoiceNumber) {
+        failing.remove(invoiceNumber);
+    }
+
+    public List<String> sent() {
+        return sent;
+    }
+}
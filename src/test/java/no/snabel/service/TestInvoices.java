@@ -0,0 +1,102 @@
+package no.snabel.service;
+
+import no.snabel.model.Customer;
+import no.snabel.model.Invoice;
+import no.snabel.model.InvoiceLine;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+/**
+ * Unsaved invoices for tests and benchmarks that render documents without a database.
+ */
+public final class TestInvoices {
+
+    public static final String INVOICE_NUMBER = "TEST-2024-001";
+
+    private TestInvoices() {
+    }
+
+    /**
+     * Invoice from Test AS with {@code lineCount} lines of 1,00 x 100,00 at 25 % VAT
+     */
+    public static Invoice invoice(int lineCount) {
+        Customer supplier = new Customer();
+        supplier.id = 1L;
+        supplier.organizationNumber = "123456789";
+        supplier.companyName = "Test AS";
+        supplier.address = "Testveien 1";
+        supplier.postalCode = "0001";
+        supplier.city = "Oslo";
+        supplier.country = "Norge";
+        supplier.email = "test@test.no";
+        supplier.phone = "+47 12345678";
+        supplier.bankAccount = "12345678901";
+
+        Invoice invoice = new Invoice();
+        invoice.id = 1L;
+        invoice.customer = supplier;
+        invoice.invoiceNumber = INVOICE_NUMBER;
+        invoice.invoiceDate = LocalDate.of(2024, 12, 1);
+        invoice.dueDate = LocalDate.of(2024, 12, 31);
+        invoice.clientName = "Test Client AS";
+        invoice.clientOrganizationNumber = "987654321";
+        invoice.clientAddress = "Kundeveien 2";
+        invoice.clientPostalCode = "0002";
+        invoice.clientCity = "Oslo";
+        invoice.paymentTerms = "30 dager";
+        invoice.paymentReference = "1234567890128";
+        invoice.lines = new ArrayList<>();
+
+        for (int i = 1; i <= lineCount; i++) {
+            InvoiceLine line = new InvoiceLine();
+            line.invoice = invoice;
+            line.lineNumber = i;
+            line.description = "Konsulenttjenester, leveranse " + i;
+            line.quantity = new BigDecimal("1.00");
+            line.unitPrice = new BigDecimal("100.00");
+            line.vatRate = new BigDecimal("25.00");
+            invoice.lines.add(line);
+        }
+        return total(invoice);
+    }
+
+    /**
+     * Invoice with {@code text} in every free text field and {@code scheme} in the coded fields,
+     * for exercising escaping. Every third line is at 15 % VAT.
+     */
+    public static Invoice invoice(String text, String scheme, int lineCount) {
+        Invoice invoice = invoice(lineCount);
+        invoice.customer.companyName = text;
+        invoice.customer.address = text;
+        invoice.customer.endpointScheme = scheme;
+        invoice.clientAddress = text;
+        invoice.currency = scheme;
+        invoice.status = "SENT";
+        for (InvoiceLine line : invoice.lines) {
+            line.description = text + " " + line.lineNumber;
+            line.itemName = line.lineNumber % 2 == 0 ? "" : text;
+            line.unitCode = scheme;
+            if (line.lineNumber % 3 == 0) {
+                line.vatRate = new BigDecimal("15.00");
+            }
+        }
+        return total(invoice);
+    }
+
+    private static Invoice total(Invoice invoice) {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        BigDecimal vat = BigDecimal.ZERO;
+        for (InvoiceLine line : invoice.lines) {
+            line.lineTotal = line.unitPrice.multiply(line.quantity);
+            line.vatAmount = line.lineTotal.multiply(line.vatRate).movePointLeft(2);
+            subtotal = subtotal.add(line.lineTotal);
+            vat = vat.add(line.vatAmount);
+        }
+        invoice.subtotal = subtotal;
+        invoice.vatAmount = vat;
+        invoice.totalAmount = subtotal.add(vat);
+        return invoice;
+    }
+}